@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.model.NotificationPreference;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Benchmarks {@link NotificationServiceManager#processNotifications} with stub channels
+ * that deliver instantly, so the result is the manager's own overhead: grouping by owner,
+ * coalescing, fan-out to both channels, status aggregation and metrics. The
+ * {@code digestWindow} parameter compares one batch per notification with one digest per
+ * owner. Provider latency is covered by {@code NotificationThroughputBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationServiceManagerBenchmark {
+
+	private static final int PETS_PER_OWNER = 4;
+
+	@Param({ "100" })
+	private int notifications;
+
+	@Param({ "PT0S", "PT24H" })
+	private String digestWindow;
+
+	private NotificationServiceManager manager;
+
+	private List<NotificationSchedule> schedules;
+
+	private List<Owner> owners;
+
+	@Setup
+	public void setup() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		this.manager = new NotificationServiceManager(
+				List.of(new StubNotificationService(NotificationChannel.EMAIL),
+						new StubNotificationService(NotificationChannel.SMS)),
+				new NotificationRetryPolicy(5, Duration.ofMinutes(1), 2.0, Duration.ofHours(1), 0.2),
+				new NotificationCoalescer(Duration.parse(this.digestWindow)), Duration.ofSeconds(30),
+				new NotificationMetrics(registry), mock(NotificationStatusWriter.class, withSettings().stubOnly()),
+				new NotificationCircuitBreakers(registry, 20, 10, 50, 80, Duration.ofSeconds(10), Duration.ofMinutes(1),
+						3));
+
+		this.schedules = new ArrayList<>(this.notifications);
+		this.owners = new ArrayList<>();
+		LocalDateTime scheduledTime = LocalDateTime.of(2024, 1, 1, 9, 0);
+		Owner owner = null;
+		for (int i = 0; i < this.notifications; i++) {
+			if (i % PETS_PER_OWNER == 0) {
+				owner = new Owner();
+				owner.setId(this.owners.size() + 1);
+				owner.setNotificationPreference(NotificationPreference.BOTH);
+				this.owners.add(owner);
+			}
+			Pet pet = new Pet();
+			pet.setId(i + 1);
+			pet.setName("Pet " + pet.getId());
+			owner.getPets().add(pet);
+			Visit visit = new Visit();
+			visit.setDate(LocalDate.of(2024, 1, 2));
+			NotificationSchedule schedule = new NotificationSchedule();
+			schedule.setPet(pet);
+			schedule.setVisit(visit);
+			schedule.setScheduledTime(scheduledTime.plusMinutes(i));
+			schedule.setNotificationPreference(NotificationPreference.BOTH);
+			this.schedules.add(schedule);
+		}
+	}
+
+	@Benchmark
+	public int processNotifications() {
+		// Delivered channels are not repeated, so start every invocation from pending
+		for (NotificationSchedule schedule : this.schedules) {
+			schedule.setStatus(NotificationStatus.PENDING);
+			schedule.setChannelStatus(NotificationChannel.EMAIL, NotificationStatus.PENDING);
+			schedule.setChannelStatus(NotificationChannel.SMS, NotificationStatus.PENDING);
+			schedule.setAttemptCount(0);
+		}
+		return this.manager.processNotifications(this.schedules, this.owners);
+	}
+
+	/**
+	 * {@link NotificationService} stub that delivers every notification successfully.
+	 */
+	private static class StubNotificationService implements NotificationService {
+
+		private final NotificationChannel channel;
+
+		StubNotificationService(NotificationChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public NotificationChannel getChannel() {
+			return this.channel;
+		}
+
+		@Override
+		public DeliveryResult sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
+			return DeliveryResult.success();
+		}
+
+		@Override
+		public boolean canHandle(NotificationSchedule notificationSchedule, Owner owner) {
+			return true;
+		}
+
+	}
+
+}
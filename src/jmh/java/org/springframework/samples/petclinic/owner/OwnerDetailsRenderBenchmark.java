@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+/**
+ * Benchmarks rendering {@code owners/ownerDetails.html}, including the layout, with the
+ * parsed templates cached as they are in production. The engine is configured like Spring
+ * Boot's, from the same templates and message bundle, and renders into a string for a
+ * mock request so no server is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OwnerDetailsRenderBenchmark {
+
+	@Param({ "1", "10" })
+	private int pets;
+
+	private SpringTemplateEngine templateEngine;
+
+	private WebContext context;
+
+	@Setup
+	public void setup() {
+		ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+		templateResolver.setPrefix("templates/");
+		templateResolver.setSuffix(".html");
+		templateResolver.setTemplateMode(TemplateMode.HTML);
+		templateResolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		templateResolver.setCacheable(true);
+		ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+		messageSource.setBasename("messages/messages");
+		messageSource.setDefaultEncoding(StandardCharsets.UTF_8.name());
+		this.templateEngine = new SpringTemplateEngine();
+		this.templateEngine.setTemplateResolver(templateResolver);
+		this.templateEngine.setMessageSource(messageSource);
+
+		MockServletContext servletContext = new MockServletContext();
+		MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/owners/1");
+		this.context = new WebContext(JakartaServletWebApplication.buildApplication(servletContext)
+			.buildExchange(request, new MockHttpServletResponse()), Locale.ENGLISH);
+		this.context.setVariable("owner", owner());
+	}
+
+	@Benchmark
+	public String render() {
+		StringWriter writer = new StringWriter(8192);
+		this.templateEngine.process("owners/ownerDetails", this.context, writer);
+		return writer.toString();
+	}
+
+	private Owner owner() {
+		Owner owner = new Owner();
+		owner.setId(1);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		PetType cat = new PetType();
+		cat.setName("cat");
+		for (int i = 1; i <= this.pets; i++) {
+			Pet pet = new Pet();
+			pet.setId(i);
+			pet.setName("Pet " + i);
+			pet.setType(cat);
+			pet.setBirthDate(LocalDate.of(2020, 1, 1).plusDays(i));
+			for (int j = 1; j <= 2; j++) {
+				Visit visit = new Visit();
+				visit.setId(i * 10 + j);
+				visit.setDate(LocalDate.of(2024, 1, j));
+				visit.setDescription("Checkup " + j);
+				pet.addVisit(visit);
+			}
+			owner.getPets().add(pet);
+		}
+		return owner;
+	}
+
+}
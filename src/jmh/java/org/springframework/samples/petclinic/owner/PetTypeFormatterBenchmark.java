@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.lang.reflect.Proxy;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link PetTypeFormatter#parse}, which binds the pet type of every pet form
+ * submission. The repository is a proxy that returns the six pet types of the sample
+ * data, so the benchmark measures the formatter rather than the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetTypeFormatterBenchmark {
+
+	private PetTypeFormatter formatter;
+
+	@Setup
+	public void setup() {
+		List<PetType> petTypes = List.of(petType("bird"), petType("cat"), petType("dog"), petType("hamster"),
+				petType("lizard"), petType("snake"));
+		OwnerRepository owners = (OwnerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { OwnerRepository.class }, (proxy, method, args) -> {
+					if (method.getName().equals("findPetTypes")) {
+						return petTypes;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		this.formatter = new PetTypeFormatter(owners);
+	}
+
+	@Benchmark
+	public PetType parseFirst() throws ParseException {
+		return this.formatter.parse("bird", Locale.ENGLISH);
+	}
+
+	@Benchmark
+	public PetType parseLast() throws ParseException {
+		return this.formatter.parse("snake", Locale.ENGLISH);
+	}
+
+	private static PetType petType(String name) {
+		PetType petType = new PetType();
+		petType.setName(name);
+		return petType;
+	}
+
+}
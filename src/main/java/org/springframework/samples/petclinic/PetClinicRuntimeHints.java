@@ -16,22 +16,68 @@
 
 package org.springframework.samples.petclinic;
 
+import java.util.List;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
 import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.NotificationPreference;
 import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.notification.NotificationSchedule;
+import org.springframework.samples.petclinic.notification.NotificationStatus;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.vet.Specialty;
 import org.springframework.samples.petclinic.vet.Vet;
 
+import com.twilio.exception.RestException;
+import com.twilio.rest.api.v2010.account.Message;
+
 public class PetClinicRuntimeHints implements RuntimeHintsRegistrar {
 
+	/**
+	 * Jakarta Mail instantiates its transports and the data content handlers of its
+	 * {@code mailcap} by name.
+	 */
+	private static final List<String> MAIL_CLASSES = List.of("com.sun.mail.smtp.SMTPTransport",
+			"com.sun.mail.smtp.SMTPSSLTransport", "com.sun.mail.handlers.text_plain", "com.sun.mail.handlers.text_html",
+			"com.sun.mail.handlers.text_xml", "com.sun.mail.handlers.multipart_mixed",
+			"com.sun.mail.handlers.message_rfc822");
+
 	@Override
 	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
 		hints.resources().registerPattern("db/*"); // https://github.com/spring-projects/spring-boot/issues/32654
 		hints.resources().registerPattern("messages/*");
 		hints.resources().registerPattern("mysql-default-conf");
 		hints.serialization().registerType(BaseEntity.class);
+		hints.serialization().registerType(NamedEntity.class);
 		hints.serialization().registerType(Person.class);
+		hints.serialization().registerType(Owner.class);
+		hints.serialization().registerType(Pet.class);
+		hints.serialization().registerType(PetType.class);
+		hints.serialization().registerType(Visit.class);
 		hints.serialization().registerType(Vet.class);
+		hints.serialization().registerType(Specialty.class);
+		hints.serialization().registerType(NotificationSchedule.class);
+		hints.serialization().registerType(NotificationPreference.class);
+		hints.serialization().registerType(NotificationStatus.class);
+		// Jakarta Mail reads its providers, address and charset maps and mailcap from
+		// these
+		hints.resources().registerPattern("META-INF/javamail.*");
+		hints.resources().registerPattern("META-INF/mailcap*");
+		hints.resources().registerPattern("META-INF/mimetypes.default");
+		for (String mailClass : MAIL_CLASSES) {
+			hints.reflection().registerType(TypeReference.of(mailClass), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+		}
+		// The Twilio SDK binds its JSON responses with Jackson
+		new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), Message.class,
+				RestException.class);
 	}
 
 }
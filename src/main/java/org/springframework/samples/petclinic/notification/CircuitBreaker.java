@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-based circuit breaker. While {@link State#CLOSED} it records the outcome of the
+ * latest {@code windowSize} calls and opens once at least {@code minimumCalls} have been
+ * recorded and either the failure rate or the rate of calls slower than
+ * {@code slowCallDuration} reaches its threshold. An {@link State#OPEN} breaker rejects
+ * every call for {@code openDuration}, then lets {@code halfOpenCalls} probe calls
+ * through: if their rates stay below the thresholds the breaker closes again, otherwise
+ * it reopens.
+ */
+final class CircuitBreaker {
+
+	private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	private static final byte FAILED = 1;
+
+	private static final byte SLOW = 2;
+
+	enum State {
+
+		CLOSED, OPEN, HALF_OPEN
+
+	}
+
+	private final String name;
+
+	private final int minimumCalls;
+
+	private final double failureRateThreshold;
+
+	private final double slowCallRateThreshold;
+
+	private final long slowCallNanos;
+
+	private final long openNanos;
+
+	private final int halfOpenCalls;
+
+	private final LongSupplier nanoClock;
+
+	// Outcomes of the latest calls, as FAILED and SLOW flags in a ring
+	private final byte[] outcomes;
+
+	private int position;
+
+	private int calls;
+
+	private int failedCalls;
+
+	private int slowCalls;
+
+	private State state = State.CLOSED;
+
+	private long openedAt;
+
+	private int probesLeft;
+
+	/**
+	 * Create a breaker.
+	 * @param name the name used when logging state transitions
+	 * @param windowSize the number of latest calls whose outcome is considered
+	 * @param minimumCalls the number of calls to record before the breaker may open
+	 * @param failureRateThreshold the failure rate, in percent, that opens the breaker
+	 * @param slowCallRateThreshold the rate of slow calls, in percent, that opens the
+	 * breaker
+	 * @param slowCallDuration how long a call may take before it counts as slow
+	 * @param openDuration how long an open breaker rejects calls
+	 * @param halfOpenCalls the number of probe calls let through after the open duration
+	 * @param nanoClock the time source, in nanoseconds
+	 */
+	CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+			double slowCallRateThreshold, Duration slowCallDuration, Duration openDuration, int halfOpenCalls,
+			LongSupplier nanoClock) {
+		if (windowSize < 1 || halfOpenCalls < 1 || halfOpenCalls > windowSize) {
+			throw new IllegalArgumentException("Window size and half-open calls must be positive, "
+					+ "and the window must hold the half-open calls");
+		}
+		this.name = name;
+		this.outcomes = new byte[windowSize];
+		this.minimumCalls = Math.min(Math.max(minimumCalls, 1), windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallNanos = slowCallDuration.toNanos();
+		this.openNanos = openDuration.toNanos();
+		this.halfOpenCalls = halfOpenCalls;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Ask for permission to make a call. Every permitted call must be followed by
+	 * {@link #onResult} or {@link #release}.
+	 * @return {@code false} if the call must not be made
+	 */
+	synchronized boolean tryAcquire() {
+		if (this.state == State.OPEN) {
+			if (this.nanoClock.getAsLong() - this.openedAt < this.openNanos) {
+				return false;
+			}
+			transitionTo(State.HALF_OPEN);
+		}
+		if (this.state == State.HALF_OPEN) {
+			if (this.probesLeft == 0) {
+				return false;
+			}
+			this.probesLeft--;
+		}
+		return true;
+	}
+
+	/**
+	 * Record the outcome of a permitted call.
+	 * @param success whether the call succeeded
+	 * @param durationNanos how long the call took
+	 */
+	synchronized void onResult(boolean success, long durationNanos) {
+		if (this.state == State.OPEN) {
+			// Permitted before the breaker opened; its outcome is already accounted for
+			return;
+		}
+		record((byte) ((success ? 0 : FAILED) | ((durationNanos >= this.slowCallNanos) ? SLOW : 0)));
+		if (this.state == State.HALF_OPEN) {
+			if (this.calls >= this.halfOpenCalls) {
+				transitionTo(thresholdsExceeded() ? State.OPEN : State.CLOSED);
+			}
+		}
+		else if (this.calls >= this.minimumCalls && thresholdsExceeded()) {
+			transitionTo(State.OPEN);
+		}
+	}
+
+	/**
+	 * Give back the permission for a call that never reached the provider, e.g. because
+	 * the recipient had no address. Nothing is recorded, so such calls neither open nor
+	 * close the breaker.
+	 */
+	synchronized void release() {
+		if (this.state == State.HALF_OPEN && this.probesLeft < this.halfOpenCalls) {
+			this.probesLeft++;
+		}
+	}
+
+	/**
+	 * How long a rejected call should wait before it is tried again.
+	 */
+	synchronized Duration retryDelay() {
+		if (this.state == State.OPEN) {
+			long remaining = this.openNanos - (this.nanoClock.getAsLong() - this.openedAt);
+			return Duration.ofNanos(Math.max(remaining, 0));
+		}
+		// Half-open with every probe taken; try again once the probes had their chance
+		return Duration.ofNanos(this.openNanos);
+	}
+
+	synchronized State getState() {
+		return this.state;
+	}
+
+	/**
+	 * The current state along with the rates over the recorded calls.
+	 */
+	synchronized Snapshot snapshot() {
+		return new Snapshot(this.state, this.calls, rate(this.failedCalls), rate(this.slowCalls));
+	}
+
+	private void record(byte outcome) {
+		if (this.calls == this.outcomes.length) {
+			byte evicted = this.outcomes[this.position];
+			this.failedCalls -= evicted & FAILED;
+			this.slowCalls -= (evicted & SLOW) >> 1;
+		}
+		else {
+			this.calls++;
+		}
+		this.outcomes[this.position] = outcome;
+		this.position = (this.position + 1) % this.outcomes.length;
+		this.failedCalls += outcome & FAILED;
+		this.slowCalls += (outcome & SLOW) >> 1;
+	}
+
+	private boolean thresholdsExceeded() {
+		return rate(this.failedCalls) >= this.failureRateThreshold
+				|| rate(this.slowCalls) >= this.slowCallRateThreshold;
+	}
+
+	private double rate(int count) {
+		return (this.calls > 0) ? 100.0 * count / this.calls : 0;
+	}
+
+	private void transitionTo(State newState) {
+		if (newState == State.OPEN) {
+			logger.warn("Circuit breaker {} opened: {}% of {} calls failed, {}% were slow", this.name,
+					Math.round(rate(this.failedCalls)), this.calls, Math.round(rate(this.slowCalls)));
+			this.openedAt = this.nanoClock.getAsLong();
+		}
+		else {
+			logger.info("Circuit breaker {} is now {}", this.name, newState);
+		}
+		this.state = newState;
+		this.probesLeft = this.halfOpenCalls;
+		this.position = 0;
+		this.calls = 0;
+		this.failedCalls = 0;
+		this.slowCalls = 0;
+	}
+
+	/**
+	 * Point-in-time view of a breaker.
+	 *
+	 * @param state the current state
+	 * @param bufferedCalls the number of calls recorded since the last transition
+	 * @param failureRate the percentage of recorded calls that failed
+	 * @param slowCallRate the percentage of recorded calls that were slow
+	 */
+	record Snapshot(State state, int bufferedCalls, double failureRate, double slowCallRate) {
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A notification template parsed once into alternating literal text and argument
+ * references, so that rendering is a straight sequence of appends. Only <code>{n}</code>
+ * placeholders are interpreted; unlike {@link java.text.MessageFormat} apostrophes are
+ * plain text, so translations can use them without escaping.
+ */
+final class CompiledTemplate {
+
+	private final String[] literals;
+
+	private final int[] arguments;
+
+	private CompiledTemplate(String[] literals, int[] arguments) {
+		this.literals = literals;
+		this.arguments = arguments;
+	}
+
+	static CompiledTemplate compile(String pattern) {
+		List<String> literals = new ArrayList<>();
+		List<Integer> arguments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			int end = (c == '{') ? pattern.indexOf('}', i) : -1;
+			if (end > i + 1 && isDigits(pattern, i + 1, end)) {
+				literals.add(literal.toString());
+				literal.setLength(0);
+				arguments.add(Integer.parseInt(pattern, i + 1, end, 10));
+				i = end + 1;
+			}
+			else {
+				literal.append(c);
+				i++;
+			}
+		}
+		literals.add(literal.toString());
+		return new CompiledTemplate(literals.toArray(new String[0]),
+				arguments.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * Appends the rendered template to the given buffer. Temporal arguments are written
+	 * with the given formatter, missing arguments are left as their placeholder.
+	 */
+	void renderTo(StringBuilder out, DateTimeFormatter dateFormatter, Object... args) {
+		for (int i = 0; i < this.arguments.length; i++) {
+			out.append(this.literals[i]);
+			int index = this.arguments[i];
+			Object arg = (index < args.length) ? args[index] : null;
+			if (arg instanceof TemporalAccessor temporal) {
+				dateFormatter.formatTo(temporal, out);
+			}
+			else if (arg != null) {
+				out.append(arg);
+			}
+			else if (index >= args.length) {
+				out.append('{').append(index).append('}');
+			}
+		}
+		out.append(this.literals[this.arguments.length]);
+	}
+
+	private static boolean isDigits(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isDigit(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
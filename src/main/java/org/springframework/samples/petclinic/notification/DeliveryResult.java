@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+/**
+ * Outcome of sending a notification or digest through one {@link NotificationService}.
+ * Services report the outcome instead of updating the schedules they were given; the
+ * {@link NotificationServiceManager} applies it once the delivery has completed, so a
+ * send that only finishes after its channel timed out cannot overwrite the recorded
+ * failure.
+ *
+ * @param outcome whether the message was sent, failed at the provider, or could not be
+ * addressed
+ * @param error why the message was not sent, or {@code null} if it was
+ */
+public record DeliveryResult(Outcome outcome, String error) {
+
+	private static final DeliveryResult SUCCESS = new DeliveryResult(Outcome.SENT, null);
+
+	/**
+	 * Returns the result of a successful send.
+	 * @return the shared successful result
+	 */
+	public static DeliveryResult success() {
+		return SUCCESS;
+	}
+
+	/**
+	 * Returns the result of a send that the provider failed or rejected. Such failures
+	 * count towards opening the channel's circuit breaker.
+	 * @param error why the message was not sent
+	 * @return the failed result
+	 */
+	public static DeliveryResult failure(String error) {
+		return new DeliveryResult(Outcome.FAILED, error);
+	}
+
+	/**
+	 * Returns the result of a message that was never handed to the provider because the
+	 * owner cannot be reached on the channel, e.g. has no email address. This says
+	 * nothing about the health of the provider and is kept out of its circuit breaker.
+	 * @param error why the message could not be addressed
+	 * @return the undeliverable result
+	 */
+	public static DeliveryResult undeliverable(String error) {
+		return new DeliveryResult(Outcome.UNDELIVERABLE, error);
+	}
+
+	/**
+	 * Whether the message was sent.
+	 * @return {@code true} if the outcome is {@link Outcome#SENT}
+	 */
+	public boolean sent() {
+		return this.outcome == Outcome.SENT;
+	}
+
+	/**
+	 * The possible outcomes of a send.
+	 */
+	public enum Outcome {
+
+		/**
+		 * The message was handed to the provider
+		 */
+		SENT,
+
+		/**
+		 * The provider failed or rejected the message
+		 */
+		FAILED,
+
+		/**
+		 * The owner has no address on the channel, so the provider was not called
+		 */
+		UNDELIVERABLE
+
+	}
+
+}
@@ -15,13 +15,18 @@
  */
 package org.springframework.samples.petclinic.notification;
 
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.samples.petclinic.model.NotificationPreference;
 import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -36,11 +41,13 @@ import jakarta.mail.internet.MimeMessage;
 
 /**
  * Implementation of NotificationService that sends email notifications using JavaMail.
+ * Asynchronous sends run on a bounded pool of
+ * {@code petclinic.notification.email.max-concurrency} threads.
  *
  * @author Claude
  */
 @Service
-public class EmailNotificationService implements NotificationService {
+public class EmailNotificationService implements NotificationService, DisposableBean, SmartLifecycle {
 
 	private static final Logger logger = LoggerFactory.getLogger(EmailNotificationService.class);
 
@@ -59,18 +66,75 @@ public class EmailNotificationService implements NotificationService {
 	@Value("${petclinic.notification.from-email:noreply@petclinic.org}")
 	private String fromEmail;
 
+	private final NotificationTemplateEngine templateEngine;
+
+	private final ThreadPoolTaskExecutor executor;
+
+	private final NotificationMetrics metrics;
+
+	public EmailNotificationService(NotificationTemplateEngine templateEngine,
+			@Value("${petclinic.notification.email.max-concurrency:4}") int maxConcurrency,
+			NotificationMetrics metrics) {
+		this.templateEngine = templateEngine;
+		this.metrics = metrics;
+		this.executor = new ThreadPoolTaskExecutor();
+		this.executor.setCorePoolSize(maxConcurrency);
+		this.executor.setMaxPoolSize(maxConcurrency);
+		this.executor.setThreadNamePrefix("mail-send-");
+		this.executor.setWaitForTasksToCompleteOnShutdown(true);
+		this.executor.initialize();
+	}
+
 	@Override
-	public boolean sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
+	public DeliveryResult sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
 		if (!canHandle(notificationSchedule, owner)) {
 			logger.debug("Email notification service cannot handle this notification for owner: {}", owner.getId());
-			return false;
+			return DeliveryResult.undeliverable("Email notification service cannot handle this notification");
 		}
 
+		// Create subject line based on pet name and visit type
+		String subject = this.templateEngine.render(NotificationTemplate.EMAIL_SUBJECT, notificationSchedule, owner);
+
+		// Use the message from notification schedule or create a default one
+		String messageBody = notificationSchedule.getMessage();
+		if (!StringUtils.hasText(messageBody)) {
+			messageBody = this.templateEngine.render(NotificationTemplate.EMAIL_BODY, notificationSchedule, owner);
+		}
+
+		return send(List.of(notificationSchedule), owner, subject, messageBody);
+	}
+
+	@Override
+	public CompletableFuture<DeliveryResult> sendNotificationAsync(NotificationSchedule notificationSchedule,
+			Owner owner) {
+		return CompletableFuture.supplyAsync(() -> sendNotification(notificationSchedule, owner), this.executor);
+	}
+
+	@Override
+	public CompletableFuture<DeliveryResult> sendDigestAsync(List<NotificationSchedule> notificationSchedules,
+			Owner owner) {
+		return CompletableFuture.supplyAsync(() -> sendDigest(notificationSchedules, owner), this.executor);
+	}
+
+	@Override
+	public DeliveryResult sendDigest(List<NotificationSchedule> notificationSchedules, Owner owner) {
+		String subject = this.templateEngine.render(NotificationTemplate.EMAIL_DIGEST_SUBJECT, notificationSchedules,
+				owner);
+		String messageBody = this.templateEngine.renderDigest(NotificationTemplate.EMAIL_DIGEST_HEADER,
+				NotificationTemplate.EMAIL_DIGEST_ITEM, NotificationTemplate.EMAIL_DIGEST_FOOTER, notificationSchedules,
+				owner);
+		return send(notificationSchedules, owner, subject, messageBody);
+	}
+
+	/**
+	 * Sends one email covering the given schedules.
+	 */
+	private DeliveryResult send(List<NotificationSchedule> notificationSchedules, Owner owner, String subject,
+			String messageBody) {
 		String email = owner.getEmail();
 		if (!StringUtils.hasText(email)) {
 			logger.warn("Cannot send email notification: owner {} has no email address", owner.getId());
-			notificationSchedule.setStatus(NotificationStatus.FAILED);
-			return false;
+			return DeliveryResult.undeliverable("Owner has no email address");
 		}
 
 		try {
@@ -87,37 +151,38 @@ public class EmailNotificationService implements NotificationService {
 				}
 			});
 
-			Message message = new MimeMessage(session);
+			MimeMessage message = new MimeMessage(session);
 			message.setFrom(new InternetAddress(fromEmail));
 			message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email));
+			message.setSubject(subject, "UTF-8");
+			message.setText(messageBody, "UTF-8");
 
-			// Create subject line based on pet name and visit type
-			String petName = notificationSchedule.getPet().getName();
-			String visitDesc = notificationSchedule.getVisit().getDescription();
-			message.setSubject("Pet Clinic Reminder: " + petName + "'s " + visitDesc);
-
-			// Use the message from notification schedule or create a default one
-			String messageBody = notificationSchedule.getMessage();
-			if (!StringUtils.hasText(messageBody)) {
-				messageBody = createDefaultMessage(notificationSchedule, owner);
+			long start = System.nanoTime();
+			try {
+				Transport.send(message);
+				this.metrics.recordProviderCall(NotificationChannel.EMAIL, true, System.nanoTime() - start);
+			}
+			catch (MessagingException e) {
+				this.metrics.recordProviderCall(NotificationChannel.EMAIL, false, System.nanoTime() - start);
+				throw e;
 			}
 
-			message.setText(messageBody);
-
-			Transport.send(message);
-
-			notificationSchedule.setStatus(NotificationStatus.SENT);
-			logger.info("Email notification sent successfully to {}", email);
-			return true;
+			logger.info("Email notification covering {} visit(s) sent successfully to {}", notificationSchedules.size(),
+					email);
+			return DeliveryResult.success();
 
 		}
 		catch (MessagingException e) {
 			logger.error("Failed to send email notification to {}: {}", email, e.getMessage());
-			notificationSchedule.setStatus(NotificationStatus.FAILED);
-			return false;
+			return DeliveryResult.failure(e.getMessage());
 		}
 	}
 
+	@Override
+	public NotificationChannel getChannel() {
+		return NotificationChannel.EMAIL;
+	}
+
 	@Override
 	public boolean canHandle(NotificationSchedule notificationSchedule, Owner owner) {
 		NotificationPreference preference = notificationSchedule.getNotificationPreference();
@@ -130,17 +195,37 @@ public class EmailNotificationService implements NotificationService {
 	}
 
 	/**
-	 * Creates a default notification message if one isn't provided
+	 * Resumes sending after {@link #stop}.
+	 */
+	@Override
+	public void start() {
+		this.executor.start();
+	}
+
+	/**
+	 * Pauses sending, e.g. for a CRaC checkpoint: queued messages wait until
+	 * {@link #start}.
 	 */
-	private String createDefaultMessage(NotificationSchedule notificationSchedule, Owner owner) {
-		String petName = notificationSchedule.getPet().getName();
-		String ownerName = owner.getFirstName() + " " + owner.getLastName();
-		String visitDate = notificationSchedule.getVisit().getDate().toString();
-		String visitDesc = notificationSchedule.getVisit().getDescription();
-
-		return "Dear " + ownerName + ",\n\n" + "This is a reminder that your pet " + petName + " has a " + visitDesc
-				+ " scheduled on " + visitDate + ".\n\n" + "Please contact us if you need to reschedule.\n\n"
-				+ "Regards,\nThe Pet Clinic Team";
+	@Override
+	public void stop() {
+		this.executor.stop();
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		this.executor.stop(callback);
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.executor.isRunning();
+	}
+
+	@Override
+	public void destroy() {
+		// Paused threads would otherwise wait for a start that never comes
+		this.executor.start();
+		this.executor.shutdown();
 	}
 
 }
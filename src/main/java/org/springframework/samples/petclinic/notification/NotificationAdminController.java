@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Operational endpoints for the notification subsystem.
+ */
+@Controller
+class NotificationAdminController {
+
+	/**
+	 * The states a schedule may be requeued from. Pending, sent and skipped schedules are
+	 * left alone, so a requeue cannot resend a delivered notification or restart one that
+	 * is being sent.
+	 */
+	static final Set<NotificationStatus> REQUEUEABLE = EnumSet.of(NotificationStatus.FAILED,
+			NotificationStatus.DEAD_LETTER);
+
+	private final NotificationScheduleRepository schedules;
+
+	public NotificationAdminController(NotificationScheduleRepository schedules) {
+		this.schedules = schedules;
+	}
+
+	/**
+	 * Requeues failed or dead-lettered notifications for immediate delivery, resetting
+	 * their retry metadata. Either those of the given schedule ids that are failed or
+	 * dead-lettered or, if no ids are given, every schedule in the given state are
+	 * requeued.
+	 * @param status the state to requeue from, {@link NotificationStatus#FAILED} or
+	 * {@link NotificationStatus#DEAD_LETTER} (the default)
+	 * @param ids optional ids of the schedules to requeue
+	 * @return the number of requeued schedules
+	 * @throws ResponseStatusException with status 400 for any other state
+	 */
+	@PostMapping("/admin/notifications/requeue")
+	public @ResponseBody Map<String, Integer> requeue(
+			@RequestParam(defaultValue = "DEAD_LETTER") NotificationStatus status,
+			@RequestParam(required = false) List<Integer> ids) {
+		if (!REQUEUEABLE.contains(status)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Only " + REQUEUEABLE + " notifications can be requeued, not " + status);
+		}
+		LocalDateTime now = LocalDateTime.now();
+		int requeued = (ids == null || ids.isEmpty())
+				? this.schedules.requeueByStatus(status, NotificationStatus.PENDING, now)
+				: this.schedules.requeueByIds(ids, REQUEUEABLE, NotificationStatus.PENDING, now);
+		return Map.of("requeued", requeued);
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges for the notification backlog: {@code petclinic.notifications.backlog} is the
+ * number of pending or failed notifications that are due, for their first attempt or a
+ * retry, and {@code petclinic.notifications.oldest.due.age} how long the oldest of them
+ * has been due. Notifications scheduled for later are not counted, so that the backlog
+ * follows the delivery lag rather than the number of upcoming visits. The values are
+ * refreshed every {@code petclinic.notification.metrics.backlog-refresh} rather than
+ * queried on each scrape.
+ */
+@Component
+public class NotificationBacklogMetrics {
+
+	private static final Set<NotificationStatus> BACKLOG = EnumSet.of(NotificationStatus.PENDING,
+			NotificationStatus.FAILED);
+
+	private final NotificationScheduleRepository schedules;
+
+	private final AtomicLong backlog = new AtomicLong();
+
+	private final AtomicLong oldestDueAgeSeconds = new AtomicLong();
+
+	public NotificationBacklogMetrics(NotificationScheduleRepository schedules, MeterRegistry registry) {
+		this.schedules = schedules;
+		Gauge.builder("petclinic.notifications.backlog", this.backlog, AtomicLong::get)
+			.description("Due notifications waiting for their first attempt or a retry")
+			.register(registry);
+		Gauge.builder("petclinic.notifications.oldest.due.age", this.oldestDueAgeSeconds, AtomicLong::get)
+			.description("How long the oldest waiting notification has been due")
+			.baseUnit("seconds")
+			.register(registry);
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.notification.metrics.backlog-refresh:PT15S}")
+	public void refresh() {
+		LocalDateTime now = LocalDateTime.now();
+		this.backlog.set(this.schedules.countDue(BACKLOG, now));
+		LocalDateTime earliestDue = this.schedules.findEarliestDueTime(BACKLOG);
+		long age = (earliestDue != null) ? Duration.between(earliestDue, now).toSeconds() : 0;
+		// A notification scheduled in the future is not overdue yet
+		this.oldestDueAgeSeconds.set(Math.max(age, 0));
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint, at {@code /actuator/notificationcircuits}, that reports the state of
+ * the circuit breaker guarding each notification channel.
+ */
+@Component
+@Endpoint(id = "notificationcircuits")
+public class NotificationCircuitBreakerEndpoint {
+
+	private final NotificationCircuitBreakers circuitBreakers;
+
+	public NotificationCircuitBreakerEndpoint(NotificationCircuitBreakers circuitBreakers) {
+		this.circuitBreakers = circuitBreakers;
+	}
+
+	@ReadOperation
+	public Map<NotificationChannel, CircuitDescriptor> circuits() {
+		Map<NotificationChannel, CircuitDescriptor> circuits = new EnumMap<>(NotificationChannel.class);
+		this.circuitBreakers.snapshots()
+			.forEach((channel, snapshot) -> circuits.put(channel, CircuitDescriptor.of(snapshot)));
+		return circuits;
+	}
+
+	@ReadOperation
+	public CircuitDescriptor circuit(@Selector NotificationChannel channel) {
+		return CircuitDescriptor.of(this.circuitBreakers.get(channel).snapshot());
+	}
+
+	/**
+	 * The state of one channel's circuit breaker, with the failure and slow-call rates in
+	 * percent over the calls recorded since its last transition.
+	 */
+	public record CircuitDescriptor(String state, int bufferedCalls, double failureRate, double slowCallRate) {
+
+		static CircuitDescriptor of(CircuitBreaker.Snapshot snapshot) {
+			return new CircuitDescriptor(snapshot.state().name(), snapshot.bufferedCalls(), snapshot.failureRate(),
+					snapshot.slowCallRate());
+		}
+
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link CircuitBreaker} per {@link NotificationChannel}, and so per
+ * {@link NotificationService} implementation, configured by the
+ * {@code petclinic.notification.circuit-breaker.*} properties. While a channel's breaker
+ * is open, {@link NotificationServiceManager} defers notifications for that channel
+ * instead of waiting for a provider that is down.
+ * <p>
+ * The state of each breaker is published as the
+ * {@code petclinic.notifications.circuit.state} gauge, which is 1 for the current
+ * {@code state} tag of each {@code channel} and 0 otherwise, and through the
+ * {@link NotificationCircuitBreakerEndpoint}.
+ */
+@Component
+public class NotificationCircuitBreakers {
+
+	private final Map<NotificationChannel, CircuitBreaker> breakers = new EnumMap<>(NotificationChannel.class);
+
+	public NotificationCircuitBreakers(MeterRegistry registry,
+			@Value("${petclinic.notification.circuit-breaker.window-size:20}") int windowSize,
+			@Value("${petclinic.notification.circuit-breaker.minimum-calls:10}") int minimumCalls,
+			@Value("${petclinic.notification.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+			@Value("${petclinic.notification.circuit-breaker.slow-call-rate-threshold:80}") double slowCallRateThreshold,
+			@Value("${petclinic.notification.circuit-breaker.slow-call-duration:10s}") Duration slowCallDuration,
+			@Value("${petclinic.notification.circuit-breaker.open-duration:1m}") Duration openDuration,
+			@Value("${petclinic.notification.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+		for (NotificationChannel channel : NotificationChannel.values()) {
+			CircuitBreaker breaker = new CircuitBreaker(channel.name(), windowSize, minimumCalls, failureRateThreshold,
+					slowCallRateThreshold, slowCallDuration, openDuration, halfOpenCalls, System::nanoTime);
+			this.breakers.put(channel, breaker);
+			for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+				Gauge.builder("petclinic.notifications.circuit.state", breaker, b -> (b.getState() == state) ? 1 : 0)
+					.description("Whether the channel's circuit breaker is in the given state")
+					.tag("channel", channel.name())
+					.tag("state", state.name())
+					.register(registry);
+			}
+		}
+	}
+
+	/**
+	 * Returns the breaker guarding the given channel.
+	 */
+	CircuitBreaker get(NotificationChannel channel) {
+		return this.breakers.get(channel);
+	}
+
+	/**
+	 * Returns a snapshot of every breaker.
+	 */
+	Map<NotificationChannel, CircuitBreaker.Snapshot> snapshots() {
+		Map<NotificationChannel, CircuitBreaker.Snapshot> snapshots = new EnumMap<>(NotificationChannel.class);
+		this.breakers.forEach((channel, breaker) -> snapshots.put(channel, breaker.snapshot()));
+		return snapshots;
+	}
+
+}
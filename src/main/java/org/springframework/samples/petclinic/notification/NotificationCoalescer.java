@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Groups one owner's pending notifications into batches that are sent as a single digest
+ * per channel, so that an owner with several pets due at once receives one message
+ * instead of one per visit. A batch holds every notification scheduled within
+ * {@code petclinic.notification.digest.window} of the batch's earliest one; a zero window
+ * turns coalescing off.
+ */
+@Component
+public class NotificationCoalescer {
+
+	private static final Comparator<NotificationSchedule> BY_SCHEDULED_TIME = Comparator
+		.comparing(NotificationSchedule::getScheduledTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	private final Duration window;
+
+	public NotificationCoalescer(@Value("${petclinic.notification.digest.window:24h}") Duration window) {
+		this.window = window;
+	}
+
+	/**
+	 * Splits the notifications of a single owner into batches.
+	 * @param notificationSchedules the owner's notifications, in any order
+	 * @return the batches, each ordered by scheduled time
+	 */
+	public List<List<NotificationSchedule>> coalesce(List<NotificationSchedule> notificationSchedules) {
+		List<List<NotificationSchedule>> batches = new ArrayList<>();
+		if (this.window.isZero() || this.window.isNegative() || notificationSchedules.size() < 2) {
+			for (NotificationSchedule notificationSchedule : notificationSchedules) {
+				batches.add(List.of(notificationSchedule));
+			}
+			return batches;
+		}
+
+		List<NotificationSchedule> sorted = new ArrayList<>(notificationSchedules);
+		sorted.sort(BY_SCHEDULED_TIME);
+		List<NotificationSchedule> batch = new ArrayList<>();
+		LocalDateTime batchEnd = null;
+		for (NotificationSchedule notificationSchedule : sorted) {
+			LocalDateTime scheduledTime = notificationSchedule.getScheduledTime();
+			if (batchEnd != null && scheduledTime != null && scheduledTime.isAfter(batchEnd)) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+				batchEnd = null;
+			}
+			if (batchEnd == null && scheduledTime != null) {
+				batchEnd = scheduledTime.plus(this.window);
+			}
+			batch.add(notificationSchedule);
+		}
+		batches.add(batch);
+		return batches;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.notification.NotificationScheduleRepository.ScheduledTime;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.system.ReadReplicas;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends pending notifications at their scheduled time. Rather than polling the table for
+ * every future reminder, the schedules due within the next
+ * {@code petclinic.notification.wheel.horizon} are loaded into a {@link TimingWheel}
+ * every {@code petclinic.notification.wheel.refresh-interval}, and the wheel fires each
+ * one within a tick of its scheduled time. Only ids and times are kept in memory, and at
+ * most {@code petclinic.notification.wheel.max-loaded} of them, so memory follows the
+ * loaded horizon rather than the whole backlog.
+ * <p>
+ * The store remains the source of truth: the wheel is rebuilt from it at startup and by
+ * {@link #resync()}. Every instance of the application loads the same schedules, so each
+ * batch of fired ones is {@link NotificationScheduleRepository#claim claimed} before it
+ * is sent, and only the schedules claimed by this instance are sent here; those already
+ * sent or claimed elsewhere are skipped. Failed sends are left to
+ * {@link NotificationRetryScheduler}.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.notification.wheel.enabled", matchIfMissing = true)
+public class NotificationDispatchScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationDispatchScheduler.class);
+
+	private static final Set<NotificationStatus> DISPATCHABLE = EnumSet.of(NotificationStatus.PENDING);
+
+	private final NotificationScheduleRepository schedules;
+
+	private final OwnerRepository owners;
+
+	private final NotificationServiceManager notificationServiceManager;
+
+	private final TransactionTemplate reads;
+
+	private final long tickMillis;
+
+	private final int wheelSize;
+
+	private final Duration horizon;
+
+	private final int maxLoaded;
+
+	private final int batchSize;
+
+	private final Duration claimTimeout;
+
+	private final Object monitor = new Object();
+
+	private TimingWheel<Integer> wheel;
+
+	private final Set<Integer> loaded = new HashSet<>();
+
+	private final List<Integer> overdue = new ArrayList<>();
+
+	public NotificationDispatchScheduler(NotificationScheduleRepository schedules, OwnerRepository owners,
+			NotificationServiceManager notificationServiceManager, PlatformTransactionManager transactionManager,
+			@Value("${petclinic.notification.wheel.tick:PT1S}") Duration tick,
+			@Value("${petclinic.notification.wheel.size:60}") int wheelSize,
+			@Value("${petclinic.notification.wheel.horizon:PT1H}") Duration horizon,
+			@Value("${petclinic.notification.wheel.refresh-interval:PT5M}") Duration refreshInterval,
+			@Value("${petclinic.notification.wheel.max-loaded:10000}") int maxLoaded,
+			@Value("${petclinic.notification.wheel.batch-size:100}") int batchSize,
+			@Value("${petclinic.notification.claim-timeout:PT10M}") Duration claimTimeout) {
+		if (horizon.compareTo(refreshInterval) <= 0) {
+			throw new IllegalArgumentException(
+					"Notification horizon " + horizon + " must be longer than the refresh interval " + refreshInterval);
+		}
+		this.schedules = schedules;
+		this.owners = owners;
+		this.notificationServiceManager = notificationServiceManager;
+		// Read-only: the outcomes are written back in bulk by the
+		// NotificationStatusWriter
+		this.reads = new TransactionTemplate(transactionManager);
+		this.reads.setReadOnly(true);
+		this.tickMillis = tick.toMillis();
+		this.wheelSize = wheelSize;
+		this.horizon = horizon;
+		this.maxLoaded = maxLoaded;
+		this.batchSize = batchSize;
+		this.claimTimeout = claimTimeout;
+		this.wheel = new TimingWheel<>(this.tickMillis, wheelSize, System.currentTimeMillis());
+	}
+
+	/**
+	 * Discards the wheel and reloads the horizon from the store, e.g. on startup.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void resync() {
+		synchronized (this.monitor) {
+			this.wheel = new TimingWheel<>(this.tickMillis, this.wheelSize, System.currentTimeMillis());
+			this.loaded.clear();
+			this.overdue.clear();
+		}
+		refresh();
+	}
+
+	/**
+	 * Loads schedules that have come within the horizon since the last refresh.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.notification.wheel.refresh-interval:PT5M}",
+			initialDelayString = "${petclinic.notification.wheel.refresh-interval:PT5M}")
+	public void refresh() {
+		List<ScheduledTime> upcoming;
+		// A lagging replica would still show the schedules sent since as pending
+		ReadReplicas.pinToPrimary();
+		try {
+			upcoming = this.schedules.findScheduledUntil(NotificationStatus.PENDING,
+					LocalDateTime.now().plus(this.horizon), PageRequest.of(0, this.maxLoaded));
+		}
+		finally {
+			ReadReplicas.release();
+		}
+		int added = 0;
+		synchronized (this.monitor) {
+			for (ScheduledTime scheduled : upcoming) {
+				if (this.loaded.size() >= this.maxLoaded) {
+					break;
+				}
+				if (this.loaded.add(scheduled.getId())) {
+					added++;
+					if (!this.wheel.add(scheduled.getId(), toEpochMilli(scheduled.getScheduledTime()))) {
+						this.overdue.add(scheduled.getId());
+					}
+				}
+			}
+		}
+		if (added > 0) {
+			logger.debug("Loaded {} upcoming notifications, {} waiting", added, this.loaded.size());
+		}
+	}
+
+	/**
+	 * Sends the notifications whose scheduled time has come.
+	 * @return number of successfully sent notifications
+	 */
+	@Scheduled(fixedRateString = "${petclinic.notification.wheel.tick:PT1S}")
+	public int dispatchDueNotifications() {
+		List<Integer> dueIds = new ArrayList<>();
+		synchronized (this.monitor) {
+			dueIds.addAll(this.overdue);
+			this.overdue.clear();
+			this.wheel.poll(System.currentTimeMillis(), dueIds::add);
+			// Forgotten as soon as fired. The NotificationStatusWriter commits the
+			// outcome before processNotifications returns; an id that a refresh reloads
+			// in the meantime is fired again but not claimed, as the primary no
+			// longer has it pending, and a failed send is left to the retry scheduler.
+			dueIds.forEach(this.loaded::remove);
+		}
+		if (dueIds.isEmpty()) {
+			return 0;
+		}
+
+		int claimed = 0;
+		int sent = 0;
+		// Claims are only visible on the primary until replicated
+		ReadReplicas.pinToPrimary();
+		try {
+			for (int start = 0; start < dueIds.size(); start += this.batchSize) {
+				List<Integer> batch = dueIds.subList(start, Math.min(start + this.batchSize, dueIds.size()));
+				String claimId = UUID.randomUUID().toString();
+				LocalDateTime now = LocalDateTime.now();
+				// Skips schedules sent, requeued, cancelled or claimed elsewhere since
+				// they were loaded
+				int batchClaimed = this.schedules.claim(batch, DISPATCHABLE, claimId, now, now.plus(this.claimTimeout));
+				if (batchClaimed > 0) {
+					claimed += batchClaimed;
+					sent += this.reads.execute(status -> send(batch, claimId));
+				}
+			}
+		}
+		finally {
+			ReadReplicas.release();
+		}
+		logger.info("Dispatched {} scheduled notifications, {} claimed, {} sent", dueIds.size(), claimed, sent);
+		return sent;
+	}
+
+	private int send(List<Integer> ids, String claimId) {
+		List<NotificationSchedule> due = this.schedules.findAllById(ids)
+			.stream()
+			.filter(schedule -> claimId.equals(schedule.getClaimId()))
+			.toList();
+		Set<Integer> petIds = due.stream().map(schedule -> schedule.getPet().getId()).collect(Collectors.toSet());
+		List<Owner> petOwners = this.owners.findByPetIds(petIds);
+		return this.notificationServiceManager.processNotifications(due, petOwners);
+	}
+
+	private static long toEpochMilli(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for the notification subsystem, published through the {@code metrics}
+ * actuator endpoint:
+ * <ul>
+ * <li>{@code petclinic.notifications} counts notifications per {@code channel} and
+ * {@code outcome}. Skipped notifications are tagged with channel {@code NONE}.
+ * Notifications deferred by an open circuit breaker have outcome {@code DEFERRED}, and
+ * those whose owner has no address on the channel have outcome {@code UNDELIVERABLE}</li>
+ * <li>{@code petclinic.notifications.delivery} times each channel delivery from dispatch
+ * to completion, including time queued behind the channel's concurrency and rate
+ * limits</li>
+ * <li>{@code petclinic.notifications.provider} is a histogram of the latency of the
+ * provider call itself (SMTP or Twilio)</li>
+ * <li>{@code petclinic.notifications.batch} times sending one batch across all
+ * channels</li>
+ * </ul>
+ * All meters are registered up front so lookups on the send path do not allocate.
+ */
+@Component
+public class NotificationMetrics {
+
+	private static final String NONE = "NONE";
+
+	private static final String DEFERRED = "DEFERRED";
+
+	private static final String UNDELIVERABLE = "UNDELIVERABLE";
+
+	private final Map<NotificationChannel, Map<NotificationStatus, Counter>> channelCounters = new EnumMap<>(
+			NotificationChannel.class);
+
+	private final Counter skippedCounter;
+
+	private final Map<NotificationChannel, Counter> deferredCounters = new EnumMap<>(NotificationChannel.class);
+
+	private final Map<NotificationChannel, Counter> undeliverableCounters = new EnumMap<>(NotificationChannel.class);
+
+	private final Map<NotificationChannel, Map<NotificationStatus, Timer>> deliveryTimers = new EnumMap<>(
+			NotificationChannel.class);
+
+	private final Map<NotificationChannel, Timer> providerSuccessTimers = new EnumMap<>(NotificationChannel.class);
+
+	private final Map<NotificationChannel, Timer> providerErrorTimers = new EnumMap<>(NotificationChannel.class);
+
+	private final Timer batchTimer;
+
+	public NotificationMetrics(MeterRegistry registry) {
+		for (NotificationChannel channel : NotificationChannel.values()) {
+			Map<NotificationStatus, Counter> counters = new EnumMap<>(NotificationStatus.class);
+			Map<NotificationStatus, Timer> timers = new EnumMap<>(NotificationStatus.class);
+			for (NotificationStatus outcome : new NotificationStatus[] { NotificationStatus.SENT,
+					NotificationStatus.FAILED }) {
+				counters.put(outcome, notificationCounter(registry, channel.name(), outcome.name()));
+				timers.put(outcome,
+						Timer.builder("petclinic.notifications.delivery")
+							.description("Time to deliver a notification or digest through one channel")
+							.tag("channel", channel.name())
+							.tag("outcome", outcome.name())
+							.register(registry));
+			}
+			this.channelCounters.put(channel, counters);
+			this.deferredCounters.put(channel, notificationCounter(registry, channel.name(), DEFERRED));
+			this.undeliverableCounters.put(channel, notificationCounter(registry, channel.name(), UNDELIVERABLE));
+			this.deliveryTimers.put(channel, timers);
+			this.providerSuccessTimers.put(channel, providerTimer(registry, channel, "success"));
+			this.providerErrorTimers.put(channel, providerTimer(registry, channel, "error"));
+		}
+		this.skippedCounter = notificationCounter(registry, NONE, NotificationStatus.SKIPPED.name());
+		this.batchTimer = Timer.builder("petclinic.notifications.batch")
+			.description("Time to send one batch of notifications for an owner across all channels")
+			.register(registry);
+	}
+
+	private static Counter notificationCounter(MeterRegistry registry, String channel, String outcome) {
+		return Counter.builder("petclinic.notifications")
+			.description("Notifications by channel and outcome")
+			.tag("channel", channel)
+			.tag("outcome", outcome)
+			.register(registry);
+	}
+
+	private static Timer providerTimer(MeterRegistry registry, NotificationChannel channel, String outcome) {
+		return Timer.builder("petclinic.notifications.provider")
+			.description("Latency of the notification provider call")
+			.tag("channel", channel.name())
+			.tag("outcome", outcome)
+			.publishPercentileHistogram()
+			.register(registry);
+	}
+
+	/**
+	 * Count notifications that reached the given outcome on a channel.
+	 * @param channel the channel that attempted delivery
+	 * @param outcome {@link NotificationStatus#SENT} or {@link NotificationStatus#FAILED}
+	 * @param count the number of notifications
+	 */
+	public void recordOutcome(NotificationChannel channel, NotificationStatus outcome, int count) {
+		this.channelCounters.get(channel).get(outcome).increment(count);
+	}
+
+	/**
+	 * Count notifications skipped because their owner opted out.
+	 * @param count the number of notifications
+	 */
+	public void recordSkipped(int count) {
+		this.skippedCounter.increment(count);
+	}
+
+	/**
+	 * Count notifications deferred because the channel's circuit breaker was open.
+	 * @param channel the channel that was not attempted
+	 * @param count the number of notifications
+	 */
+	public void recordDeferred(NotificationChannel channel, int count) {
+		this.deferredCounters.get(channel).increment(count);
+	}
+
+	/**
+	 * Count notifications that were not sent because the owner has no address on the
+	 * channel. These are counted apart from provider failures.
+	 * @param channel the channel that could not be used
+	 * @param count the number of notifications
+	 */
+	public void recordUndeliverable(NotificationChannel channel, int count) {
+		this.undeliverableCounters.get(channel).increment(count);
+	}
+
+	/**
+	 * Record the time one channel took to deliver, from dispatch to completion.
+	 * @param channel the channel
+	 * @param outcome {@link NotificationStatus#SENT} or {@link NotificationStatus#FAILED}
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	public void recordDelivery(NotificationChannel channel, NotificationStatus outcome, long nanos) {
+		this.deliveryTimers.get(channel).get(outcome).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Record the latency of one provider call.
+	 * @param channel the channel whose provider was called
+	 * @param success whether the provider accepted the message
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	public void recordProviderCall(NotificationChannel channel, boolean success, long nanos) {
+		Timer timer = success ? this.providerSuccessTimers.get(channel) : this.providerErrorTimers.get(channel);
+		timer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Record the time taken to send one batch across all channels.
+	 * @param nanos the elapsed time in nanoseconds
+	 */
+	public void recordBatch(long nanos) {
+		this.batchTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides what happens to a {@link NotificationSchedule} after a failed delivery attempt.
+ * Failures are retried with exponential backoff plus random jitter, so that a provider
+ * outage does not cause every reminder to be retried at the same instant. Once
+ * {@code petclinic.notification.retry.max-attempts} attempts have been made the schedule
+ * is moved to {@link NotificationStatus#DEAD_LETTER}.
+ */
+@Component
+public class NotificationRetryPolicy {
+
+	private static final int MAX_ERROR_LENGTH = 1024;
+
+	private final int maxAttempts;
+
+	private final Duration initialDelay;
+
+	private final double multiplier;
+
+	private final Duration maxDelay;
+
+	private final double jitter;
+
+	public NotificationRetryPolicy(@Value("${petclinic.notification.retry.max-attempts:5}") int maxAttempts,
+			@Value("${petclinic.notification.retry.initial-delay:1m}") Duration initialDelay,
+			@Value("${petclinic.notification.retry.multiplier:2.0}") double multiplier,
+			@Value("${petclinic.notification.retry.max-delay:1h}") Duration maxDelay,
+			@Value("${petclinic.notification.retry.jitter:0.2}") double jitter) {
+		this.maxAttempts = maxAttempts;
+		this.initialDelay = initialDelay;
+		this.multiplier = multiplier;
+		this.maxDelay = maxDelay;
+		this.jitter = Math.min(Math.max(jitter, 0), 1);
+	}
+
+	/**
+	 * Records a failed delivery attempt, either scheduling the next attempt or moving the
+	 * schedule to the dead-letter state when no attempts are left.
+	 * @param schedule the schedule whose latest attempt failed
+	 * @param now the current time
+	 */
+	public void onFailure(NotificationSchedule schedule, LocalDateTime now) {
+		schedule.setLastError(truncate(schedule.getLastError()));
+		if (schedule.getAttemptCount() >= this.maxAttempts) {
+			schedule.setStatus(NotificationStatus.DEAD_LETTER);
+			schedule.setNextAttemptTime(null);
+			return;
+		}
+		schedule.setStatus(NotificationStatus.FAILED);
+		schedule.setNextAttemptTime(now.plus(backoff(schedule.getAttemptCount())));
+	}
+
+	/**
+	 * Moves a schedule straight to the dead-letter state, for failures that no amount of
+	 * retrying will fix.
+	 * @param schedule the schedule to give up on
+	 * @param reason why delivery is impossible
+	 */
+	public void deadLetter(NotificationSchedule schedule, String reason) {
+		schedule.setStatus(NotificationStatus.DEAD_LETTER);
+		schedule.setNextAttemptTime(null);
+		schedule.setLastError(truncate(reason));
+	}
+
+	/**
+	 * Postpones a schedule that could not be attempted, e.g. because its provider's
+	 * circuit breaker is open. The postponement does not count as an attempt.
+	 * @param schedule the schedule to postpone
+	 * @param until when to try again
+	 * @param reason why the schedule was not attempted
+	 */
+	public void defer(NotificationSchedule schedule, LocalDateTime until, String reason) {
+		schedule.setStatus(NotificationStatus.FAILED);
+		schedule.setNextAttemptTime(until);
+		schedule.setLastError(truncate(reason));
+	}
+
+	/**
+	 * Returns the delay before the next attempt, after the given number of attempts.
+	 */
+	Duration backoff(int attempts) {
+		return backoff(attempts, ThreadLocalRandom.current().nextDouble());
+	}
+
+	Duration backoff(int attempts, double random) {
+		double base = this.initialDelay.toMillis() * Math.pow(this.multiplier, Math.max(0, attempts - 1));
+		double capped = Math.min(base, this.maxDelay.toMillis());
+		// Spread retries uniformly over [1 - jitter, 1 + jitter] of the nominal delay
+		double jittered = capped * (1 - this.jitter + 2 * this.jitter * random);
+		return Duration.ofMillis(Math.round(jittered));
+	}
+
+	public int getMaxAttempts() {
+		return this.maxAttempts;
+	}
+
+	private static String truncate(String error) {
+		return (error != null && error.length() > MAX_ERROR_LENGTH) ? error.substring(0, MAX_ERROR_LENGTH) : error;
+	}
+
+}
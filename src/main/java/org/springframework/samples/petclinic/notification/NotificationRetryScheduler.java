@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.system.ReadReplicas;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically re-sends notifications whose next attempt time has passed: failed
+ * deliveries waiting out their backoff, and schedules requeued through
+ * {@link NotificationAdminController}. Like the {@link NotificationDispatchScheduler}, it
+ * {@link NotificationScheduleRepository#claim claims} each batch before sending it, so
+ * that only one instance of the application retries a notification.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.notification.retry.enabled", matchIfMissing = true)
+public class NotificationRetryScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationRetryScheduler.class);
+
+	private static final Set<NotificationStatus> RETRYABLE = EnumSet.of(NotificationStatus.PENDING,
+			NotificationStatus.FAILED);
+
+	private final NotificationScheduleRepository schedules;
+
+	private final OwnerRepository owners;
+
+	private final NotificationServiceManager notificationServiceManager;
+
+	private final TransactionTemplate reads;
+
+	private final int batchSize;
+
+	private final Duration claimTimeout;
+
+	public NotificationRetryScheduler(NotificationScheduleRepository schedules, OwnerRepository owners,
+			NotificationServiceManager notificationServiceManager, PlatformTransactionManager transactionManager,
+			@Value("${petclinic.notification.retry.batch-size:100}") int batchSize,
+			@Value("${petclinic.notification.claim-timeout:PT10M}") Duration claimTimeout) {
+		this.schedules = schedules;
+		this.owners = owners;
+		this.notificationServiceManager = notificationServiceManager;
+		// Read-only: the outcomes are written back in bulk by the
+		// NotificationStatusWriter
+		this.reads = new TransactionTemplate(transactionManager);
+		this.reads.setReadOnly(true);
+		this.batchSize = batchSize;
+		this.claimTimeout = claimTimeout;
+	}
+
+	/**
+	 * Sends one batch of due notifications.
+	 * @return number of successfully sent notifications
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.notification.retry.poll-interval:PT30S}",
+			initialDelayString = "${petclinic.notification.retry.poll-interval:PT30S}")
+	public int retryDueNotifications() {
+		// A lagging replica would still show the schedules sent since as due, and the
+		// claims are only visible on the primary until replicated
+		ReadReplicas.pinToPrimary();
+		try {
+			LocalDateTime now = LocalDateTime.now();
+			List<Integer> dueIds = this.schedules.findIdsDueForAttempt(RETRYABLE, now,
+					PageRequest.of(0, this.batchSize));
+			if (dueIds.isEmpty()) {
+				return 0;
+			}
+			String claimId = UUID.randomUUID().toString();
+			if (this.schedules.claim(dueIds, RETRYABLE, claimId, now, now.plus(this.claimTimeout)) == 0) {
+				return 0;
+			}
+			return this.reads.execute(status -> retry(dueIds, claimId));
+		}
+		finally {
+			ReadReplicas.release();
+		}
+	}
+
+	private int retry(List<Integer> ids, String claimId) {
+		List<NotificationSchedule> due = this.schedules.findAllById(ids)
+			.stream()
+			.filter(schedule -> claimId.equals(schedule.getClaimId()))
+			.toList();
+		Set<Integer> petIds = due.stream().map(schedule -> schedule.getPet().getId()).collect(Collectors.toSet());
+		List<Owner> petOwners = this.owners.findByPetIds(petIds);
+		int sent = this.notificationServiceManager.processNotifications(due, petOwners);
+		logger.info("Retried {} due notifications, {} sent", due.size(), sent);
+		return sent;
+	}
+
+}
@@ -69,6 +69,30 @@ public class NotificationSchedule extends BaseEntity {
 	@Column(name = "message")
 	private String message;
 
+	@Column(name = "email_status")
+	@Enumerated(EnumType.STRING)
+	private NotificationStatus emailStatus;
+
+	@Column(name = "sms_status")
+	@Enumerated(EnumType.STRING)
+	private NotificationStatus smsStatus;
+
+	@Column(name = "attempt_count")
+	private int attemptCount;
+
+	@Column(name = "next_attempt_time")
+	@DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+	private LocalDateTime nextAttemptTime;
+
+	@Column(name = "last_error")
+	private String lastError;
+
+	@Column(name = "claim_id")
+	private String claimId;
+
+	@Column(name = "claimed_until")
+	private LocalDateTime claimedUntil;
+
 	/**
 	 * Creates a new instance of NotificationSchedule with default status as PENDING
 	 */
@@ -92,6 +116,10 @@ public class NotificationSchedule extends BaseEntity {
 		this.scheduledTime = scheduledTime;
 	}
 
+	/**
+	 * Return the overall status of this notification, aggregated over its channels by
+	 * {@link NotificationServiceManager}.
+	 */
 	public NotificationStatus getStatus() {
 		return this.status;
 	}
@@ -124,4 +152,58 @@ public class NotificationSchedule extends BaseEntity {
 		this.message = message;
 	}
 
+	public int getAttemptCount() {
+		return this.attemptCount;
+	}
+
+	public void setAttemptCount(int attemptCount) {
+		this.attemptCount = attemptCount;
+	}
+
+	public LocalDateTime getNextAttemptTime() {
+		return this.nextAttemptTime;
+	}
+
+	public void setNextAttemptTime(LocalDateTime nextAttemptTime) {
+		this.nextAttemptTime = nextAttemptTime;
+	}
+
+	public String getLastError() {
+		return this.lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	/**
+	 * Return the claim under which an instance is sending this notification, see
+	 * {@link NotificationScheduleRepository#claim}.
+	 */
+	public String getClaimId() {
+		return this.claimId;
+	}
+
+	public LocalDateTime getClaimedUntil() {
+		return this.claimedUntil;
+	}
+
+	/**
+	 * Return the delivery status of this notification on the given channel, or null if it
+	 * has not been attempted on that channel.
+	 */
+	public NotificationStatus getChannelStatus(NotificationChannel channel) {
+		return switch (channel) {
+			case EMAIL -> this.emailStatus;
+			case SMS -> this.smsStatus;
+		};
+	}
+
+	public void setChannelStatus(NotificationChannel channel, NotificationStatus status) {
+		switch (channel) {
+			case EMAIL -> this.emailStatus = status;
+			case SMS -> this.smsStatus = status;
+		}
+	}
+
 }
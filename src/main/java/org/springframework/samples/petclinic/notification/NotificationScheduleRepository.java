@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository class for {@link NotificationSchedule} domain objects.
+ */
+public interface NotificationScheduleRepository extends JpaRepository<NotificationSchedule, Integer> {
+
+	/**
+	 * Retrieve the ids of unclaimed schedules in one of the given states whose next
+	 * attempt is due.
+	 * @param statuses the states to consider
+	 * @param now the current time
+	 * @param pageable limits how many schedules are loaded at once
+	 * @return the ids of due schedules, oldest first
+	 */
+	@Query("SELECT schedule.id FROM NotificationSchedule schedule WHERE schedule.status IN :statuses "
+			+ "AND schedule.nextAttemptTime <= :now "
+			+ "AND (schedule.claimedUntil IS NULL OR schedule.claimedUntil < :now) ORDER BY schedule.nextAttemptTime")
+	List<Integer> findIdsDueForAttempt(@Param("statuses") Collection<NotificationStatus> statuses,
+			@Param("now") LocalDateTime now, Pageable pageable);
+
+	/**
+	 * Claim those of the given schedules that are in one of the given states, due and not
+	 * claimed already, so that only the caller sends them even when several instances of
+	 * the application load the same schedules. The claim is committed before this
+	 * returns, and is released when the outcome is written by the
+	 * {@link NotificationStatusWriter} or, should the caller never get that far, when it
+	 * expires.
+	 * @param ids the schedules to claim
+	 * @param statuses the states to claim from
+	 * @param claimId identifies this claim among those of every instance
+	 * @param now the current time
+	 * @param until when the claim expires
+	 * @return the number of claimed schedules
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE NotificationSchedule schedule SET schedule.claimId = :claimId, schedule.claimedUntil = :until "
+			+ "WHERE schedule.id IN :ids AND schedule.status IN :statuses "
+			+ "AND (schedule.nextAttemptTime IS NULL OR schedule.nextAttemptTime <= :now) "
+			+ "AND (schedule.claimedUntil IS NULL OR schedule.claimedUntil < :now)")
+	int claim(@Param("ids") Collection<Integer> ids, @Param("statuses") Collection<NotificationStatus> statuses,
+			@Param("claimId") String claimId, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+	/**
+	 * Retrieve the id and time of pending schedules awaiting their first attempt that are
+	 * due by the given time.
+	 * @param pending the pending state
+	 * @param until the end of the horizon to load
+	 * @param pageable limits how many schedules are loaded at once
+	 * @return due schedules, earliest first
+	 */
+	@Query("SELECT schedule.id AS id, schedule.scheduledTime AS scheduledTime FROM NotificationSchedule schedule "
+			+ "WHERE schedule.status = :pending AND schedule.nextAttemptTime IS NULL "
+			+ "AND schedule.scheduledTime <= :until ORDER BY schedule.scheduledTime")
+	List<ScheduledTime> findScheduledUntil(@Param("pending") NotificationStatus pending,
+			@Param("until") LocalDateTime until, Pageable pageable);
+
+	/**
+	 * Count the schedules in one of the given states that are due by the given time,
+	 * either for their first attempt or for a retry.
+	 * @param statuses the states to count
+	 * @param now the current time
+	 * @return the number of due schedules
+	 */
+	@Query("SELECT COUNT(schedule) FROM NotificationSchedule schedule WHERE schedule.status IN :statuses "
+			+ "AND ((schedule.nextAttemptTime IS NULL AND schedule.scheduledTime <= :now) "
+			+ "OR schedule.nextAttemptTime <= :now)")
+	long countDue(@Param("statuses") Collection<NotificationStatus> statuses, @Param("now") LocalDateTime now);
+
+	/**
+	 * Retrieve the earliest time at which a schedule in one of the given states is due,
+	 * either for its first attempt or for a retry.
+	 * @param statuses the states to consider
+	 * @return the earliest due time, or {@code null} if no schedule matches
+	 */
+	@Query("SELECT MIN(COALESCE(schedule.nextAttemptTime, schedule.scheduledTime)) FROM NotificationSchedule schedule "
+			+ "WHERE schedule.status IN :statuses")
+	LocalDateTime findEarliestDueTime(@Param("statuses") Collection<NotificationStatus> statuses);
+
+	/**
+	 * Requeue every schedule in the given state for immediate delivery, resetting its
+	 * retry metadata.
+	 * @param status the state to requeue from, typically
+	 * {@link NotificationStatus#DEAD_LETTER}
+	 * @param pending the state to requeue to
+	 * @param now the time of the next attempt
+	 * @return the number of requeued schedules
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE NotificationSchedule schedule SET schedule.status = :pending, schedule.attemptCount = 0, "
+			+ "schedule.lastError = NULL, schedule.nextAttemptTime = :now WHERE schedule.status = :status")
+	int requeueByStatus(@Param("status") NotificationStatus status, @Param("pending") NotificationStatus pending,
+			@Param("now") LocalDateTime now);
+
+	/**
+	 * Requeue those of the given schedules that are in one of the given states for
+	 * immediate delivery, resetting their retry metadata. Schedules in any other state
+	 * are left unchanged.
+	 * @param ids the schedules to requeue
+	 * @param statuses the states to requeue from, typically
+	 * {@link NotificationStatus#FAILED} and {@link NotificationStatus#DEAD_LETTER}
+	 * @param pending the state to requeue to
+	 * @param now the time of the next attempt
+	 * @return the number of requeued schedules
+	 */
+	@Transactional
+	@Modifying
+	@Query("UPDATE NotificationSchedule schedule SET schedule.status = :pending, schedule.attemptCount = 0, "
+			+ "schedule.lastError = NULL, schedule.nextAttemptTime = :now "
+			+ "WHERE schedule.id IN :ids AND schedule.status IN :statuses")
+	int requeueByIds(@Param("ids") Collection<Integer> ids, @Param("statuses") Collection<NotificationStatus> statuses,
+			@Param("pending") NotificationStatus pending, @Param("now") LocalDateTime now);
+
+	/**
+	 * When a schedule is due, without loading the schedule itself.
+	 */
+	interface ScheduledTime {
+
+		Integer getId();
+
+		LocalDateTime getScheduledTime();
+
+	}
+
+}
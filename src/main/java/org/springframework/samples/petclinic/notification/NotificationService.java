@@ -15,6 +15,9 @@
  */
 package org.springframework.samples.petclinic.notification;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.samples.petclinic.owner.Owner;
 
 /**
@@ -25,6 +28,15 @@ import org.springframework.samples.petclinic.owner.Owner;
  */
 public interface NotificationService {
 
+	/**
+	 * Returns the channel this service delivers notifications through. Services return
+	 * their outcome as a {@link DeliveryResult} and leave the schedules untouched;
+	 * {@link NotificationServiceManager} records it as the status of this channel and
+	 * aggregates the overall status.
+	 * @return the channel of this service
+	 */
+	NotificationChannel getChannel();
+
 	/**
 	 * Sends a notification based on the provided NotificationSchedule. The implementation
 	 * should determine how to send the notification based on Owner preferences and the
@@ -32,9 +44,55 @@ public interface NotificationService {
 	 * @param notificationSchedule the notification schedule containing message and timing
 	 * information
 	 * @param owner the pet owner who should receive the notification
-	 * @return true if the notification was sent successfully, false otherwise
+	 * @return the outcome of the send
+	 */
+	DeliveryResult sendNotification(NotificationSchedule notificationSchedule, Owner owner);
+
+	/**
+	 * Asynchronous variant of {@link #sendNotification(NotificationSchedule, Owner)}. The
+	 * default implementation sends synchronously on the calling thread; services backed
+	 * by a non-blocking or pooled transport override it.
+	 * @param notificationSchedule the notification schedule containing message and timing
+	 * information
+	 * @param owner the pet owner who should receive the notification
+	 * @return a future completing with the outcome of the send
+	 */
+	default CompletableFuture<DeliveryResult> sendNotificationAsync(NotificationSchedule notificationSchedule,
+			Owner owner) {
+		return CompletableFuture.completedFuture(sendNotification(notificationSchedule, owner));
+	}
+
+	/**
+	 * Sends a single digest message covering several notifications for the same owner,
+	 * all of which this service can handle. The outcome applies to every one of the given
+	 * schedules. The default implementation sends every notification separately and
+	 * reports the first failure, if any.
+	 * @param notificationSchedules the notifications to coalesce, at least one
+	 * @param owner the pet owner who should receive the digest
+	 * @return the outcome of the send
+	 */
+	default DeliveryResult sendDigest(List<NotificationSchedule> notificationSchedules, Owner owner) {
+		DeliveryResult result = DeliveryResult.success();
+		for (NotificationSchedule notificationSchedule : notificationSchedules) {
+			DeliveryResult single = sendNotification(notificationSchedule, owner);
+			if (result.sent() && !single.sent()) {
+				result = single;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Asynchronous variant of {@link #sendDigest(List, Owner)}. The default
+	 * implementation sends synchronously on the calling thread.
+	 * @param notificationSchedules the notifications to coalesce, at least one
+	 * @param owner the pet owner who should receive the digest
+	 * @return a future completing with the outcome of the send
 	 */
-	boolean sendNotification(NotificationSchedule notificationSchedule, Owner owner);
+	default CompletableFuture<DeliveryResult> sendDigestAsync(List<NotificationSchedule> notificationSchedules,
+			Owner owner) {
+		return CompletableFuture.completedFuture(sendDigest(notificationSchedules, owner));
+	}
 
 	/**
 	 * Checks if this notification service can handle the given notification preference.
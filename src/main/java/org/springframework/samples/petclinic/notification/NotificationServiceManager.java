@@ -15,13 +15,28 @@
  */
 package org.springframework.samples.petclinic.notification;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.samples.petclinic.model.NotificationPreference;
 import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.stereotype.Service;
 
 /**
@@ -37,16 +52,43 @@ public class NotificationServiceManager {
 
 	private final List<NotificationService> notificationServices;
 
+	private final NotificationRetryPolicy retryPolicy;
+
+	private final NotificationCoalescer coalescer;
+
+	private final Duration channelTimeout;
+
+	private final NotificationMetrics metrics;
+
+	private final NotificationStatusWriter statusWriter;
+
+	private final NotificationCircuitBreakers circuitBreakers;
+
 	@Autowired
-	public NotificationServiceManager(List<NotificationService> notificationServices) {
+	public NotificationServiceManager(List<NotificationService> notificationServices,
+			NotificationRetryPolicy retryPolicy, NotificationCoalescer coalescer,
+			@Value("${petclinic.notification.channel-timeout:30s}") Duration channelTimeout,
+			NotificationMetrics metrics, NotificationStatusWriter statusWriter,
+			NotificationCircuitBreakers circuitBreakers) {
 		this.notificationServices = notificationServices;
+		this.retryPolicy = retryPolicy;
+		this.coalescer = coalescer;
+		this.channelTimeout = channelTimeout;
+		this.metrics = metrics;
+		this.statusWriter = statusWriter;
+		this.circuitBreakers = circuitBreakers;
 	}
 
 	/**
-	 * Sends a notification using the appropriate service(s) based on owner preferences.
+	 * Sends a notification using the appropriate service(s) based on owner preferences. A
+	 * failed attempt is handed to the {@link NotificationRetryPolicy}, which either
+	 * schedules a retry or dead-letters the notification. A notification whose channels
+	 * are all behind an open circuit breaker is deferred without counting an attempt. The
+	 * outcome is written back through the {@link NotificationStatusWriter} before this
+	 * method returns.
 	 * @param notificationSchedule the notification to send
 	 * @param owner the owner to notify
-	 * @return true if at least one notification was sent successfully
+	 * @return true if the notification was sent on every channel it asks for
 	 */
 	public boolean sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
 		if (owner == null) {
@@ -59,68 +101,215 @@ public class NotificationServiceManager {
 			return false;
 		}
 
-		// Skip if owner has opted out of notifications
-		if (owner.getNotificationPreference() == NotificationPreference.NONE) {
-			logger.info("Owner {} has opted out of notifications", owner.getId());
-			notificationSchedule.setStatus(NotificationStatus.SKIPPED);
-			return false;
-		}
+		boolean sent = sendBatch(List.of(notificationSchedule), owner) > 0;
+		this.statusWriter.flush();
+		return sent;
+	}
 
-		boolean anySuccess = false;
+	/**
+	 * Process all pending notifications in the schedule. Notifications for the same owner
+	 * that fall within the digest window are coalesced into one message per channel; each
+	 * notification's status is still updated individually. The outcomes are written back
+	 * in bulk through the {@link NotificationStatusWriter} and committed before this
+	 * method returns.
+	 * @param notificationSchedules list of pending notification schedules
+	 * @param owners the owners of the scheduled pets
+	 * @return number of notifications sent on every channel they ask for
+	 */
+	public int processNotifications(List<NotificationSchedule> notificationSchedules, List<Owner> owners) {
+		Map<Integer, Owner> ownersByPetId = indexOwnersByPetId(owners);
+		Map<Owner, List<NotificationSchedule>> schedulesByOwner = new LinkedHashMap<>();
+
+		for (NotificationSchedule schedule : notificationSchedules) {
+			// Find the owner for this pet
+			Owner owner = ownersByPetId.get(schedule.getPet().getId());
 
-		// Try each notification service that can handle this notification
-		for (NotificationService service : notificationServices) {
-			if (service.canHandle(notificationSchedule, owner)) {
-				boolean success = service.sendNotification(notificationSchedule, owner);
-				anySuccess = anySuccess || success;
+			if (owner != null) {
+				schedulesByOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(schedule);
+			}
+			else {
+				logger.warn("Could not find owner for pet ID: {}", schedule.getPet().getId());
+				this.retryPolicy.deadLetter(schedule, "Could not find owner for pet ID: " + schedule.getPet().getId());
+				this.statusWriter.record(schedule);
 			}
 		}
 
-		if (!anySuccess) {
-			logger.warn("No notification services were able to successfully send the notification");
-			notificationSchedule.setStatus(NotificationStatus.FAILED);
+		int sentCount = 0;
+		for (Map.Entry<Owner, List<NotificationSchedule>> entry : schedulesByOwner.entrySet()) {
+			for (List<NotificationSchedule> batch : this.coalescer.coalesce(entry.getValue())) {
+				sentCount += sendBatch(batch, entry.getKey());
+			}
 		}
 
-		return anySuccess;
+		// Sent notifications are only reported once their state is durable
+		this.statusWriter.flush();
+		return sentCount;
 	}
 
 	/**
-	 * Process all pending notifications in the schedule.
-	 * @param notificationSchedules list of pending notification schedules
-	 * @return number of successfully sent notifications
+	 * Sends a batch of notifications for one owner, as a digest per channel when the
+	 * batch holds more than one notification. All channels are dispatched concurrently
+	 * and awaited for at most the channel timeout; a notification counts as
+	 * {@link NotificationStatus#SENT} once every channel it asks for has delivered it.
+	 * Channels whose circuit breaker is open are not called, and notifications that were
+	 * only waiting on such channels are deferred until the breaker lets calls through.
+	 * The status of each channel is kept on the notification, so that a retry only goes
+	 * to the channels that have not delivered it yet.
+	 * @return number of notifications in the batch now {@link NotificationStatus#SENT}
 	 */
-	public int processNotifications(List<NotificationSchedule> notificationSchedules, List<Owner> owners) {
-		int sentCount = 0;
+	private int sendBatch(List<NotificationSchedule> batch, Owner owner) {
+		// Skip if owner has opted out of notifications
+		if (owner.getNotificationPreference() == NotificationPreference.NONE) {
+			logger.info("Owner {} has opted out of notifications", owner.getId());
+			for (NotificationSchedule schedule : batch) {
+				schedule.setStatus(NotificationStatus.SKIPPED);
+			}
+			this.metrics.recordSkipped(batch.size());
+			this.statusWriter.recordAll(batch);
+			return 0;
+		}
 
-		for (NotificationSchedule schedule : notificationSchedules) {
-			// Find the owner for this pet
-			Owner owner = findOwnerForPet(schedule.getPet().getId(), owners);
+		long start = System.nanoTime();
 
-			if (owner != null) {
-				boolean sent = sendNotification(schedule, owner);
-				if (sent) {
-					sentCount++;
+		// Fan out to every notification service that can handle these notifications,
+		// unless the provider behind it is failing and its circuit breaker is open
+		List<CompletableFuture<Boolean>> deliveries = new ArrayList<>();
+		Set<NotificationSchedule> attempted = new HashSet<>();
+		Map<NotificationChannel, Duration> rejected = new EnumMap<>(NotificationChannel.class);
+		for (NotificationService service : this.notificationServices) {
+			NotificationChannel channel = service.getChannel();
+			List<NotificationSchedule> handled = new ArrayList<>(batch.size());
+			for (NotificationSchedule schedule : batch) {
+				// A channel that delivered on an earlier attempt is not repeated on retry
+				if (service.canHandle(schedule, owner)
+						&& schedule.getChannelStatus(channel) != NotificationStatus.SENT) {
+					handled.add(schedule);
 				}
 			}
+			if (handled.isEmpty()) {
+				continue;
+			}
+			CircuitBreaker circuitBreaker = this.circuitBreakers.get(channel);
+			if (circuitBreaker.tryAcquire()) {
+				attempted.addAll(handled);
+				deliveries.add(deliver(service, handled, owner, circuitBreaker));
+			}
 			else {
-				logger.warn("Could not find owner for pet ID: {}", schedule.getPet().getId());
+				rejected.put(channel, circuitBreaker.retryDelay());
+				this.metrics.recordDeferred(channel, handled.size());
+			}
+		}
+		CompletableFuture.allOf(deliveries.toArray(new CompletableFuture<?>[0])).join();
+
+		// Aggregate the per-channel outcomes into each notification's overall status
+		LocalDateTime now = LocalDateTime.now();
+		int sentCount = 0;
+		for (NotificationSchedule schedule : batch) {
+			boolean requested = false;
+			boolean allSent = true;
+			List<NotificationChannel> shortCircuited = new ArrayList<>(1);
+			Duration deferral = Duration.ZERO;
+			for (NotificationService service : this.notificationServices) {
+				if (service.canHandle(schedule, owner)) {
+					boolean sent = schedule.getChannelStatus(service.getChannel()) == NotificationStatus.SENT;
+					requested = true;
+					allSent &= sent;
+					Duration delay = rejected.get(service.getChannel());
+					if (!sent && delay != null) {
+						shortCircuited.add(service.getChannel());
+						deferral = (delay.compareTo(deferral) > 0) ? delay : deferral;
+					}
+				}
+			}
+			if (requested && !allSent && !attempted.contains(schedule)) {
+				// Every channel still to deliver is short-circuited; no attempt was made
+				this.retryPolicy.defer(schedule, now.plus(deferral),
+						"Deferred while the circuit breaker is open for " + shortCircuited);
+				continue;
+			}
+			schedule.setAttemptCount(schedule.getAttemptCount() + 1);
+			if (requested && allSent) {
+				schedule.setStatus(NotificationStatus.SENT);
+				schedule.setNextAttemptTime(null);
+				sentCount++;
+			}
+			else {
+				logger
+					.warn("Notification services were not able to successfully send the notification on every channel");
 				schedule.setStatus(NotificationStatus.FAILED);
+				this.retryPolicy.onFailure(schedule, now);
 			}
 		}
 
+		this.statusWriter.recordAll(batch);
+		this.metrics.recordBatch(System.nanoTime() - start);
 		return sentCount;
 	}
 
 	/**
-	 * Helper method to find the owner for a given pet ID
+	 * Sends the given notifications through one channel, failing the channel for all of
+	 * them if the service throws or does not answer within the channel timeout. The
+	 * outcome is recorded on the schedules only here, when the timed delivery completes;
+	 * a send that completes after its timeout is not waited for and its result is
+	 * discarded, so it cannot change schedules that were already handed on as failed.
+	 * Only provider failures, exceptions and timeouts are reported to the channel's
+	 * circuit breaker; notifications the owner cannot be reached for on the channel are
+	 * counted as undeliverable instead.
 	 */
-	private Owner findOwnerForPet(Integer petId, List<Owner> owners) {
+	private CompletableFuture<Boolean> deliver(NotificationService service, List<NotificationSchedule> handled,
+			Owner owner, CircuitBreaker circuitBreaker) {
+		NotificationChannel channel = service.getChannel();
+		long start = System.nanoTime();
+		CompletableFuture<DeliveryResult> delivery;
+		try {
+			delivery = (handled.size() == 1) ? service.sendNotificationAsync(handled.get(0), owner)
+					: service.sendDigestAsync(handled, owner);
+		}
+		catch (RuntimeException ex) {
+			delivery = CompletableFuture.failedFuture(ex);
+		}
+		// Copied so that the timeout fails this attempt without completing the service's
+		// own future
+		return delivery.copy().orTimeout(this.channelTimeout.toMillis(), TimeUnit.MILLISECONDS).exceptionally(ex -> {
+			Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+			return DeliveryResult.failure((cause instanceof TimeoutException)
+					? channel + " delivery timed out after " + this.channelTimeout.toMillis() + "ms"
+					: cause.getMessage());
+		}).thenApply(result -> {
+			long elapsed = System.nanoTime() - start;
+			NotificationStatus outcome = result.sent() ? NotificationStatus.SENT : NotificationStatus.FAILED;
+			if (!result.sent()) {
+				logger.error("Failed to send {} notification to owner {}: {}", channel, owner.getId(), result.error());
+			}
+			for (NotificationSchedule schedule : handled) {
+				schedule.setChannelStatus(channel, outcome);
+				if (!result.sent()) {
+					schedule.setLastError(result.error());
+				}
+			}
+			if (result.outcome() == DeliveryResult.Outcome.UNDELIVERABLE) {
+				// A missing address is a data problem, not a provider failure
+				circuitBreaker.release();
+				this.metrics.recordUndeliverable(channel, handled.size());
+				return false;
+			}
+			circuitBreaker.onResult(result.sent(), elapsed);
+			this.metrics.recordDelivery(channel, outcome, elapsed);
+			this.metrics.recordOutcome(channel, outcome, handled.size());
+			return result.sent();
+		});
+	}
+
+	private static Map<Integer, Owner> indexOwnersByPetId(List<Owner> owners) {
+		Map<Integer, Owner> ownersByPetId = new HashMap<>();
 		for (Owner owner : owners) {
-			if (owner.getPet(petId) != null) {
-				return owner;
+			for (Pet pet : owner.getPets()) {
+				if (!pet.isNew()) {
+					ownersByPetId.put(pet.getId(), owner);
+				}
 			}
 		}
-		return null;
+		return ownersByPetId;
 	}
 
 }
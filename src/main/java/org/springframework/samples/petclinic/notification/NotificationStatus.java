@@ -33,13 +33,19 @@ public enum NotificationStatus {
 	SENT,
 
 	/**
-	 * Notification delivery has failed
+	 * The last delivery attempt has failed; the notification is retried at its next
+	 * attempt time
 	 */
 	FAILED,
 
 	/**
 	 * Notification was skipped (e.g., due to owner preferences)
 	 */
-	SKIPPED
+	SKIPPED,
+
+	/**
+	 * Notification delivery has failed permanently after exhausting its retry attempts
+	 */
+	DEAD_LETTER
 
 }
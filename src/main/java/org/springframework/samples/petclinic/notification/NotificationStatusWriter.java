@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Buffers the delivery state of sent notifications and writes it back in bulk, instead of
+ * one UPDATE per notification. Notifications that ended in the same state, typically a
+ * whole batch of SENT or SKIPPED ones, are written by a single
+ * {@code UPDATE ... WHERE id IN (...)}; the rest, such as failures with their own retry
+ * time, go out as one JDBC batch.
+ * <p>
+ * The buffer is flushed once it holds
+ * {@code petclinic.notification.status-writer.batch-size} notifications, every
+ * {@code petclinic.notification.status-writer.max-delay}, and whenever {@link #flush()}
+ * is called. {@link #flush()} returns only after the states are committed in a
+ * transaction of their own, so callers flush before reporting a notification as sent.
+ * Notifications that were never persisted are ignored. Writing the state of a
+ * notification also releases its claim, see {@link NotificationScheduleRepository#claim}.
+ */
+@Component
+public class NotificationStatusWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationStatusWriter.class);
+
+	private static final String UPDATE = "UPDATE notification_schedules SET status = :status, "
+			+ "email_status = :emailStatus, sms_status = :smsStatus, attempt_count = :attemptCount, "
+			+ "next_attempt_time = :nextAttemptTime, last_error = :lastError, claim_id = NULL, claimed_until = NULL "
+			+ "WHERE id IN (:ids)";
+
+	// Keeps IN lists well below the bind parameter limits of every supported database
+	private static final int MAX_IN_LIST = 1000;
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int batchSize;
+
+	private final Map<Integer, StatusUpdate> buffer = new LinkedHashMap<>();
+
+	/**
+	 * Held from taking the buffered states until they are committed, so that only one
+	 * flush writes at a time.
+	 */
+	private final Object flushLock = new Object();
+
+	public NotificationStatusWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			@Value("${petclinic.notification.status-writer.batch-size:500}") int batchSize) {
+		this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Buffer the current state of the given notifications, replacing any state buffered
+	 * for them earlier.
+	 * @param notificationSchedules the notifications to write back
+	 */
+	public void recordAll(Collection<NotificationSchedule> notificationSchedules) {
+		boolean full;
+		synchronized (this.buffer) {
+			for (NotificationSchedule schedule : notificationSchedules) {
+				if (!schedule.isNew()) {
+					this.buffer.put(schedule.getId(), StatusUpdate.of(schedule));
+				}
+			}
+			full = this.buffer.size() >= this.batchSize;
+		}
+		if (full) {
+			flush();
+		}
+	}
+
+	/**
+	 * Buffer the current state of the given notification.
+	 * @param notificationSchedule the notification to write back
+	 */
+	public void record(NotificationSchedule notificationSchedule) {
+		recordAll(List.of(notificationSchedule));
+	}
+
+	/**
+	 * Write every buffered state and commit it. Waits for any flush in progress on
+	 * another thread, such as the scheduled one, so that the states buffered before the
+	 * call are committed when it returns.
+	 * @return the number of notifications written by this call
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.notification.status-writer.max-delay:PT1S}")
+	public int flush() {
+		synchronized (this.flushLock) {
+			List<StatusUpdate> updates;
+			synchronized (this.buffer) {
+				if (this.buffer.isEmpty()) {
+					return 0;
+				}
+				updates = new ArrayList<>(this.buffer.values());
+				this.buffer.clear();
+			}
+			try {
+				int statements = this.transactionTemplate.execute(status -> write(updates));
+				logger.debug("Wrote {} notification states in {} statements", updates.size(), statements);
+				return updates.size();
+			}
+			catch (RuntimeException ex) {
+				// Keep the states for the next flush unless newer ones were buffered
+				// meanwhile
+				synchronized (this.buffer) {
+					for (StatusUpdate update : updates) {
+						this.buffer.putIfAbsent(update.id(), update);
+					}
+				}
+				throw ex;
+			}
+		}
+	}
+
+	private int write(List<StatusUpdate> updates) {
+		Map<StatusUpdate.State, List<Integer>> idsByState = new LinkedHashMap<>();
+		for (StatusUpdate update : updates) {
+			idsByState.computeIfAbsent(update.state(), key -> new ArrayList<>()).add(update.id());
+		}
+
+		int statements = 0;
+		List<MapSqlParameterSource> singles = new ArrayList<>();
+		for (Map.Entry<StatusUpdate.State, List<Integer>> entry : idsByState.entrySet()) {
+			List<Integer> ids = entry.getValue();
+			if (ids.size() == 1) {
+				singles.add(entry.getKey().toParameters(ids));
+				continue;
+			}
+			for (int start = 0; start < ids.size(); start += MAX_IN_LIST) {
+				this.jdbcTemplate.update(UPDATE,
+						entry.getKey().toParameters(ids.subList(start, Math.min(start + MAX_IN_LIST, ids.size()))));
+				statements++;
+			}
+		}
+		if (!singles.isEmpty()) {
+			this.jdbcTemplate.batchUpdate(UPDATE, singles.toArray(new MapSqlParameterSource[0]));
+			statements++;
+		}
+		return statements;
+	}
+
+	private record StatusUpdate(Integer id, State state) {
+
+		static StatusUpdate of(NotificationSchedule schedule) {
+			return new StatusUpdate(schedule.getId(),
+					new State(schedule.getStatus(), schedule.getChannelStatus(NotificationChannel.EMAIL),
+							schedule.getChannelStatus(NotificationChannel.SMS), schedule.getAttemptCount(),
+							schedule.getNextAttemptTime(), schedule.getLastError()));
+		}
+
+		private record State(NotificationStatus status, NotificationStatus emailStatus, NotificationStatus smsStatus,
+				int attemptCount, LocalDateTime nextAttemptTime, String lastError) {
+
+			MapSqlParameterSource toParameters(List<Integer> ids) {
+				// Nullable columns carry their SQL type so that nulls bind on every
+				// database
+				return new MapSqlParameterSource().addValue("status", name(this.status), Types.VARCHAR)
+					.addValue("emailStatus", name(this.emailStatus), Types.VARCHAR)
+					.addValue("smsStatus", name(this.smsStatus), Types.VARCHAR)
+					.addValue("attemptCount", this.attemptCount)
+					.addValue("nextAttemptTime",
+							(this.nextAttemptTime != null) ? Timestamp.valueOf(this.nextAttemptTime) : null,
+							Types.TIMESTAMP)
+					.addValue("lastError", this.lastError, Types.VARCHAR)
+					.addValue("ids", ids);
+			}
+
+			private static String name(NotificationStatus status) {
+				return (status != null) ? status.name() : null;
+			}
+
+		}
+
+	}
+
+}
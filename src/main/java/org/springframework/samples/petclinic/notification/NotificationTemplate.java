@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+/**
+ * The notification texts that are rendered from the message bundles, one per channel and
+ * message part. Templates may reference these arguments:
+ * <ul>
+ * <li><code>{0}</code> the owner's first name</li>
+ * <li><code>{1}</code> the owner's last name</li>
+ * <li><code>{2}</code> the pet's name</li>
+ * <li><code>{3}</code> the visit description</li>
+ * <li><code>{4}</code> the visit date, formatted for the owner's locale</li>
+ * <li><code>{5}</code> the number of visits the message covers</li>
+ * </ul>
+ * Digest messages are rendered as a header, one item per visit and a footer; headers and
+ * footers see the arguments of the first visit.
+ *
+ * @see NotificationTemplateEngine
+ */
+public enum NotificationTemplate {
+
+	EMAIL_SUBJECT("notification.email.subject"),
+
+	EMAIL_BODY("notification.email.body"),
+
+	SMS_BODY("notification.sms.body"),
+
+	EMAIL_DIGEST_SUBJECT("notification.email.digest.subject"),
+
+	EMAIL_DIGEST_HEADER("notification.email.digest.header"),
+
+	EMAIL_DIGEST_ITEM("notification.email.digest.item"),
+
+	EMAIL_DIGEST_FOOTER("notification.email.digest.footer"),
+
+	SMS_DIGEST_HEADER("notification.sms.digest.header"),
+
+	SMS_DIGEST_ITEM("notification.sms.digest.item"),
+
+	SMS_DIGEST_FOOTER("notification.sms.digest.footer");
+
+	private final String messageCode;
+
+	NotificationTemplate(String messageCode) {
+		this.messageCode = messageCode;
+	}
+
+	public String getMessageCode() {
+		return this.messageCode;
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Renders localized notification texts. At startup every {@link NotificationTemplate} is
+ * looked up in each locale that has a message bundle and compiled once; rendering then
+ * only appends into a per-thread buffer that is reused across messages. The locale comes
+ * from {@link Owner#getPreferredLanguage()}, falling back to the language only and then
+ * to English.
+ */
+@Component
+public class NotificationTemplateEngine {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationTemplateEngine.class);
+
+	private static final int MAX_RETAINED_BUFFER = 8 * 1024;
+
+	private final Map<String, LocaleTemplates> templatesByLanguageTag = new HashMap<>();
+
+	private final LocaleTemplates defaultTemplates;
+
+	private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+	public NotificationTemplateEngine(MessageSource messageSource,
+			@Value("${spring.messages.basename:messages/messages}") String basename) {
+		this.defaultTemplates = new LocaleTemplates(messageSource, Locale.ENGLISH);
+		for (Locale locale : findBundleLocales(basename)) {
+			this.templatesByLanguageTag.put(locale.toLanguageTag(), new LocaleTemplates(messageSource, locale));
+		}
+		logger.debug("Compiled notification templates for locales {}", this.templatesByLanguageTag.keySet());
+	}
+
+	/**
+	 * Renders a template for the given notification in the owner's preferred language.
+	 * @param template the template to render
+	 * @param schedule the notification being sent
+	 * @param owner the owner receiving it
+	 * @return the rendered text
+	 */
+	public String render(NotificationTemplate template, NotificationSchedule schedule, Owner owner) {
+		LocaleTemplates templates = resolve(owner.getPreferredLanguage());
+		StringBuilder buffer = acquireBuffer();
+		renderTo(buffer, templates, template, schedule, owner, 1);
+		return releaseBuffer(buffer);
+	}
+
+	/**
+	 * Renders a digest covering several notifications for the same owner: the header, the
+	 * item template once per notification and the footer.
+	 * @param header the template opening the message
+	 * @param item the template rendered for each notification
+	 * @param footer the template closing the message
+	 * @param schedules the notifications covered by the digest, must not be empty
+	 * @param owner the owner receiving it
+	 * @return the rendered text
+	 */
+	public String renderDigest(NotificationTemplate header, NotificationTemplate item, NotificationTemplate footer,
+			List<NotificationSchedule> schedules, Owner owner) {
+		LocaleTemplates templates = resolve(owner.getPreferredLanguage());
+		int count = schedules.size();
+		StringBuilder buffer = acquireBuffer();
+		renderTo(buffer, templates, header, schedules.get(0), owner, count);
+		for (NotificationSchedule schedule : schedules) {
+			renderTo(buffer, templates, item, schedule, owner, count);
+		}
+		renderTo(buffer, templates, footer, schedules.get(0), owner, count);
+		return releaseBuffer(buffer);
+	}
+
+	/**
+	 * Renders a single template in the owner's preferred language for a digest covering
+	 * the given number of notifications, e.g. a digest subject line.
+	 */
+	public String render(NotificationTemplate template, List<NotificationSchedule> schedules, Owner owner) {
+		LocaleTemplates templates = resolve(owner.getPreferredLanguage());
+		StringBuilder buffer = acquireBuffer();
+		renderTo(buffer, templates, template, schedules.get(0), owner, schedules.size());
+		return releaseBuffer(buffer);
+	}
+
+	private void renderTo(StringBuilder buffer, LocaleTemplates templates, NotificationTemplate template,
+			NotificationSchedule schedule, Owner owner, int count) {
+		templates.get(template)
+			.renderTo(buffer, templates.dateFormatter, owner.getFirstName(), owner.getLastName(),
+					schedule.getPet().getName(), schedule.getVisit().getDescription(), schedule.getVisit().getDate(),
+					count);
+	}
+
+	private StringBuilder acquireBuffer() {
+		StringBuilder buffer = this.buffers.get();
+		buffer.setLength(0);
+		return buffer;
+	}
+
+	private String releaseBuffer(StringBuilder buffer) {
+		String text = buffer.toString();
+		if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+			// Don't let one unusually long message pin a large buffer to the thread
+			this.buffers.remove();
+		}
+		return text;
+	}
+
+	private LocaleTemplates resolve(String languageTag) {
+		if (!StringUtils.hasText(languageTag)) {
+			return this.defaultTemplates;
+		}
+		LocaleTemplates templates = this.templatesByLanguageTag.get(languageTag);
+		if (templates == null) {
+			Locale locale = Locale.forLanguageTag(languageTag.replace('_', '-'));
+			templates = this.templatesByLanguageTag.get(locale.toLanguageTag());
+			if (templates == null) {
+				templates = this.templatesByLanguageTag.get(locale.getLanguage());
+			}
+		}
+		return (templates != null) ? templates : this.defaultTemplates;
+	}
+
+	private static Iterable<Locale> findBundleLocales(String basename) {
+		Map<String, Locale> locales = new HashMap<>();
+		String prefix = StringUtils.getFilename(basename) + "_";
+		try {
+			Resource[] bundles = new PathMatchingResourcePatternResolver()
+				.getResources("classpath*:" + basename + "_*.properties");
+			for (Resource bundle : bundles) {
+				String filename = bundle.getFilename();
+				if (filename != null && filename.startsWith(prefix)) {
+					String tag = filename.substring(prefix.length(), filename.length() - ".properties".length());
+					Locale locale = Locale.forLanguageTag(tag.replace('_', '-'));
+					locales.put(locale.toLanguageTag(), locale);
+				}
+			}
+		}
+		catch (IOException ex) {
+			logger.warn("Could not list message bundles for {}, using default notification templates only", basename,
+					ex);
+		}
+		return locales.values();
+	}
+
+	/**
+	 * The compiled templates and date format of one locale.
+	 */
+	private static final class LocaleTemplates {
+
+		private final Map<NotificationTemplate, CompiledTemplate> templates = new EnumMap<>(NotificationTemplate.class);
+
+		private final DateTimeFormatter dateFormatter;
+
+		LocaleTemplates(MessageSource messageSource, Locale locale) {
+			for (NotificationTemplate template : NotificationTemplate.values()) {
+				String pattern = messageSource.getMessage(template.getMessageCode(), null, locale);
+				this.templates.put(template, CompiledTemplate.compile(pattern));
+			}
+			this.dateFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG).withLocale(locale);
+		}
+
+		CompiledTemplate get(NotificationTemplate template) {
+			return this.templates.get(template);
+		}
+
+	}
+
+}
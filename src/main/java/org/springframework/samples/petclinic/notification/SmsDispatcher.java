@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends SMS messages through an {@link SmsGateway} on a bounded pool of worker threads.
+ * At most {@code petclinic.notification.sms.max-concurrency} messages are in flight at
+ * once, and a token bucket keeps the send rate within the provider's per-number
+ * throughput ({@code petclinic.notification.sms.rate-per-second}, 1 message per second
+ * for a standard Twilio long code).
+ */
+@Component
+public class SmsDispatcher implements DisposableBean, SmartLifecycle {
+
+	private final SmsGateway gateway;
+
+	private final ThreadPoolTaskExecutor executor;
+
+	private final TokenBucket rateLimiter;
+
+	private final NotificationMetrics metrics;
+
+	@Autowired
+	public SmsDispatcher(SmsGateway gateway,
+			@Value("${petclinic.notification.sms.max-concurrency:4}") int maxConcurrency,
+			@Value("${petclinic.notification.sms.rate-per-second:1}") double ratePerSecond,
+			@Value("${petclinic.notification.sms.burst:1}") int burst, NotificationMetrics metrics) {
+		this.gateway = gateway;
+		this.metrics = metrics;
+		this.executor = new ThreadPoolTaskExecutor();
+		this.executor.setCorePoolSize(maxConcurrency);
+		this.executor.setMaxPoolSize(maxConcurrency);
+		this.executor.setThreadNamePrefix("sms-dispatch-");
+		this.executor.setWaitForTasksToCompleteOnShutdown(true);
+		this.executor.initialize();
+		// A non-positive rate disables rate limiting, e.g. for a stub gateway
+		this.rateLimiter = ratePerSecond > 0 ? new TokenBucket(ratePerSecond, burst) : null;
+	}
+
+	/**
+	 * Queues a message for delivery.
+	 * @param to the recipient phone number in E.164 format
+	 * @param body the message text
+	 * @return a future completing with the provider-reported status, or exceptionally
+	 * with the provider's exception if the send failed
+	 */
+	public CompletableFuture<String> dispatch(String to, String body) {
+		return CompletableFuture.supplyAsync(() -> {
+			acquirePermit();
+			long start = System.nanoTime();
+			try {
+				String status = this.gateway.send(to, body);
+				this.metrics.recordProviderCall(NotificationChannel.SMS, true, System.nanoTime() - start);
+				return status;
+			}
+			catch (RuntimeException ex) {
+				this.metrics.recordProviderCall(NotificationChannel.SMS, false, System.nanoTime() - start);
+				throw ex;
+			}
+		}, this.executor);
+	}
+
+	private void acquirePermit() {
+		if (this.rateLimiter == null) {
+			return;
+		}
+		try {
+			this.rateLimiter.acquire();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(ex);
+		}
+	}
+
+	/**
+	 * Resumes sending after {@link #stop}.
+	 */
+	@Override
+	public void start() {
+		this.executor.start();
+	}
+
+	/**
+	 * Pauses sending, e.g. for a CRaC checkpoint: queued messages wait until
+	 * {@link #start}.
+	 */
+	@Override
+	public void stop() {
+		this.executor.stop();
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		this.executor.stop(callback);
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.executor.isRunning();
+	}
+
+	@Override
+	public void destroy() {
+		// Paused threads would otherwise wait for a start that never comes
+		this.executor.start();
+		this.executor.shutdown();
+	}
+
+}
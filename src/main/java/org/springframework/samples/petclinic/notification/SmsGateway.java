@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+/**
+ * Abstraction over the provider that actually delivers SMS messages. Keeping the provider
+ * behind this interface lets {@link SmsDispatcher} own concurrency and rate limiting, and
+ * lets tests replace Twilio with a local stub.
+ */
+public interface SmsGateway {
+
+	/**
+	 * Sends a single SMS message. Implementations are expected to be thread-safe, as the
+	 * dispatcher calls them from several worker threads at once.
+	 * @param to the recipient phone number in E.164 format
+	 * @param body the message text
+	 * @return the provider-reported delivery status of the message
+	 * @throws com.twilio.exception.TwilioException if the provider rejects the message
+	 */
+	String send(String to, String body);
+
+}
@@ -15,21 +15,21 @@
  */
 package org.springframework.samples.petclinic.notification;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.samples.petclinic.model.NotificationPreference;
 import org.springframework.samples.petclinic.owner.Owner;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
-import com.twilio.exception.TwilioException;
-
 /**
  * Implementation of NotificationService that sends SMS notifications using Twilio.
+ * Messages are handed to the {@link SmsDispatcher}, which applies the configured
+ * concurrency and rate limits.
  *
  * @author Claude
  */
@@ -38,62 +38,82 @@ public class SmsNotificationService implements NotificationService {
 
 	private static final Logger logger = LoggerFactory.getLogger(SmsNotificationService.class);
 
-	@Value("${twilio.account.sid:accountSid}")
-	private String accountSid;
+	private final SmsDispatcher smsDispatcher;
 
-	@Value("${twilio.auth.token:authToken}")
-	private String authToken;
+	private final NotificationTemplateEngine templateEngine;
+
+	public SmsNotificationService(SmsDispatcher smsDispatcher, NotificationTemplateEngine templateEngine) {
+		this.smsDispatcher = smsDispatcher;
+		this.templateEngine = templateEngine;
+	}
 
-	@Value("${twilio.phone.number:+15551234567}")
-	private String twilioPhoneNumber;
+	@Override
+	public DeliveryResult sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
+		return sendNotificationAsync(notificationSchedule, owner).join();
+	}
 
 	@Override
-	public boolean sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
+	public CompletableFuture<DeliveryResult> sendNotificationAsync(NotificationSchedule notificationSchedule,
+			Owner owner) {
 		if (!canHandle(notificationSchedule, owner)) {
 			logger.debug("SMS notification service cannot handle this notification for owner: {}", owner.getId());
-			return false;
+			return CompletableFuture.completedFuture(
+					DeliveryResult.undeliverable("SMS notification service cannot handle this notification"));
 		}
 
-		String phoneNumber = owner.getTelephone();
-		if (!StringUtils.hasText(phoneNumber)) {
-			logger.warn("Cannot send SMS notification: owner {} has no phone number", owner.getId());
-			notificationSchedule.setStatus(NotificationStatus.FAILED);
-			return false;
+		// Use the message from notification schedule or create a default one
+		String messageBody = notificationSchedule.getMessage();
+		if (!StringUtils.hasText(messageBody)) {
+			messageBody = this.templateEngine.render(NotificationTemplate.SMS_BODY, notificationSchedule, owner);
 		}
 
-		try {
-			// Initialize Twilio client
-			Twilio.init(accountSid, authToken);
+		return send(List.of(notificationSchedule), owner, messageBody);
+	}
 
-			// Format phone number (assuming US for simplicity - in production, handle
-			// international formats)
-			String formattedPhoneNumber = "+1" + phoneNumber;
+	@Override
+	public DeliveryResult sendDigest(List<NotificationSchedule> notificationSchedules, Owner owner) {
+		return sendDigestAsync(notificationSchedules, owner).join();
+	}
 
-			// Use the message from notification schedule or create a default one
-			String messageBody = notificationSchedule.getMessage();
-			if (!StringUtils.hasText(messageBody)) {
-				messageBody = createDefaultMessage(notificationSchedule, owner);
-			}
+	@Override
+	public CompletableFuture<DeliveryResult> sendDigestAsync(List<NotificationSchedule> notificationSchedules,
+			Owner owner) {
+		String messageBody = this.templateEngine.renderDigest(NotificationTemplate.SMS_DIGEST_HEADER,
+				NotificationTemplate.SMS_DIGEST_ITEM, NotificationTemplate.SMS_DIGEST_FOOTER, notificationSchedules,
+				owner);
+		return send(notificationSchedules, owner, messageBody);
+	}
 
-			// Send the SMS
-			Message twilioMessage = Message
-				.creator(new PhoneNumber(formattedPhoneNumber), new PhoneNumber(twilioPhoneNumber), messageBody)
-				.create();
+	/**
+	 * Dispatches one SMS covering the given schedules.
+	 */
+	private CompletableFuture<DeliveryResult> send(List<NotificationSchedule> notificationSchedules, Owner owner,
+			String messageBody) {
+		String phoneNumber = owner.getTelephone();
+		if (!StringUtils.hasText(phoneNumber)) {
+			logger.warn("Cannot send SMS notification: owner {} has no phone number", owner.getId());
+			return CompletableFuture.completedFuture(DeliveryResult.undeliverable("Owner has no phone number"));
+		}
 
-			// Check the message status
-			String status = twilioMessage.getStatus().toString();
-			logger.info("SMS sent with status: {} to {}", status, phoneNumber);
+		// Format phone number (assuming US for simplicity - in production, handle
+		// international formats)
+		String formattedPhoneNumber = "+1" + phoneNumber;
 
-			// Update notification status
-			notificationSchedule.setStatus(NotificationStatus.SENT);
-			return true;
+		return this.smsDispatcher.dispatch(formattedPhoneNumber, messageBody).handle((status, ex) -> {
+			if (ex != null) {
+				Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+				logger.error("Failed to send SMS notification to {}: {}", phoneNumber, cause.getMessage());
+				return DeliveryResult.failure(cause.getMessage());
+			}
+			logger.info("SMS covering {} visit(s) sent with status: {} to {}", notificationSchedules.size(), status,
+					phoneNumber);
+			return DeliveryResult.success();
+		});
+	}
 
-		}
-		catch (TwilioException e) {
-			logger.error("Failed to send SMS notification to {}: {}", phoneNumber, e.getMessage());
-			notificationSchedule.setStatus(NotificationStatus.FAILED);
-			return false;
-		}
+	@Override
+	public NotificationChannel getChannel() {
+		return NotificationChannel.SMS;
 	}
 
 	@Override
@@ -107,17 +127,4 @@ public class SmsNotificationService implements NotificationService {
 		return preference == NotificationPreference.SMS || preference == NotificationPreference.BOTH;
 	}
 
-	/**
-	 * Creates a default notification message if one isn't provided
-	 */
-	private String createDefaultMessage(NotificationSchedule notificationSchedule, Owner owner) {
-		String petName = notificationSchedule.getPet().getName();
-		String visitDate = notificationSchedule.getVisit().getDate().toString();
-		String visitDesc = notificationSchedule.getVisit().getDescription();
-
-		// SMS should be short and concise
-		return "Pet Clinic Reminder: " + petName + " has a " + visitDesc + " on " + visitDate
-				+ ". Reply HELP for assistance or STOP to unsubscribe.";
-	}
-
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level is a ring of {@code wheelSize} buckets; a level's
+ * whole ring spans one tick of the next, coarser level, which is created on demand. An
+ * entry is placed in the finest level whose ring covers its deadline and cascades down as
+ * the clock reaches its bucket, so adding an entry is O(1) and memory is proportional to
+ * the number of entries rather than to how far ahead they are due.
+ * <p>
+ * The clock only moves forward when {@link #poll} expires a bucket, and only buckets
+ * holding entries are tracked, so an idle wheel costs nothing to poll. Entries never fire
+ * before their deadline, and at most one tick after it when the wheel is polled at least
+ * once per tick. Not thread-safe.
+ *
+ * @param <T> the type of the scheduled entries
+ */
+final class TimingWheel<T> {
+
+	private final Level root;
+
+	// Finer buckets go first when expirations tie, so the finest bucket of a tick is
+	// always flushed before the clock reaches it and its ring slot is reused
+	private final PriorityQueue<Bucket<T>> expirations = new PriorityQueue<>(
+			Comparator.<Bucket<T>>comparingLong(bucket -> bucket.expiration).thenComparingInt(bucket -> bucket.level));
+
+	private int size;
+
+	/**
+	 * Create a wheel.
+	 * @param tickMillis the resolution of the finest level
+	 * @param wheelSize the number of buckets per level
+	 * @param startMillis the current time
+	 */
+	TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+		if (tickMillis <= 0 || wheelSize < 2) {
+			throw new IllegalArgumentException("Tick must be positive and wheel size at least 2");
+		}
+		this.root = new Level(tickMillis, wheelSize, startMillis, 0);
+	}
+
+	/**
+	 * Schedule an entry.
+	 * @param entry the entry
+	 * @param deadlineMillis when the entry is due
+	 * @return {@code false} if the deadline is behind the wheel's clock and the entry was
+	 * not added
+	 */
+	boolean add(T entry, long deadlineMillis) {
+		if (!this.root.add(new Timer<>(entry, deadlineMillis))) {
+			return false;
+		}
+		this.size++;
+		return true;
+	}
+
+	/**
+	 * Advance the clock, handing every entry that has become due to the consumer.
+	 * @param nowMillis the current time
+	 * @param expired receives the due entries, in deadline order to within one tick
+	 * @return the number of expired entries
+	 */
+	int poll(long nowMillis, Consumer<? super T> expired) {
+		int count = 0;
+		List<Timer<T>> flushed = new ArrayList<>();
+		Bucket<T> bucket;
+		while ((bucket = this.expirations.peek()) != null && bucket.expiration <= nowMillis) {
+			this.expirations.poll();
+			this.root.advanceClock(bucket.expiration);
+			bucket.drainTo(flushed);
+			for (Timer<T> timer : flushed) {
+				// Entries from a coarse bucket cascade into a finer level unless already
+				// due
+				if (!this.root.add(timer)) {
+					this.size--;
+					count++;
+					expired.accept(timer.entry);
+				}
+			}
+			flushed.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * The time at which the next bucket expires, or {@link Long#MAX_VALUE} if the wheel
+	 * is empty.
+	 */
+	long nextExpiration() {
+		Bucket<T> bucket = this.expirations.peek();
+		return (bucket != null) ? bucket.expiration : Long.MAX_VALUE;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	private record Timer<T>(T entry, long deadline) {
+	}
+
+	private final class Level {
+
+		private final long tick;
+
+		private final int wheelSize;
+
+		private final long interval;
+
+		private final Bucket<T>[] buckets;
+
+		private long currentTime;
+
+		private final int level;
+
+		private Level overflow;
+
+		private Level(long tick, int wheelSize, long startMillis, int level) {
+			this.tick = tick;
+			this.wheelSize = wheelSize;
+			this.interval = tick * wheelSize;
+			this.buckets = newBuckets(wheelSize);
+			this.currentTime = startMillis - (startMillis % tick);
+			this.level = level;
+		}
+
+		private boolean add(Timer<T> timer) {
+			if (this.level == 0 && timer.deadline < this.currentTime) {
+				return false;
+			}
+			if (timer.deadline < this.currentTime + this.interval) {
+				long slot = timer.deadline / this.tick;
+				int index = (int) (slot % this.wheelSize);
+				Bucket<T> bucket = this.buckets[index];
+				if (bucket == null) {
+					bucket = new Bucket<>(this.level);
+					this.buckets[index] = bucket;
+				}
+				bucket.add(timer);
+				// Finest buckets expire at the end of their tick, so that nothing
+				// fires early, and coarser ones at the start of theirs, so that entries
+				// cascade down in time. A bucket is queued once per rotation, when it
+				// receives its first entry.
+				long expiration = (this.level == 0) ? (slot + 1) * this.tick : slot * this.tick;
+				if (bucket.setExpiration(expiration)) {
+					TimingWheel.this.expirations.add(bucket);
+				}
+				return true;
+			}
+			if (this.overflow == null) {
+				this.overflow = new Level(this.interval, this.wheelSize, this.currentTime, this.level + 1);
+			}
+			return this.overflow.add(timer);
+		}
+
+		private void advanceClock(long time) {
+			if (time >= this.currentTime + this.tick) {
+				this.currentTime = time - (time % this.tick);
+				if (this.overflow != null) {
+					this.overflow.advanceClock(this.currentTime);
+				}
+			}
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Bucket<T>[] newBuckets(int size) {
+		return (Bucket<T>[]) new Bucket<?>[size];
+	}
+
+	private static final class Bucket<T> {
+
+		private final int level;
+
+		private final List<Timer<T>> timers = new ArrayList<>();
+
+		private long expiration = -1;
+
+		private Bucket(int level) {
+			this.level = level;
+		}
+
+		private void add(Timer<T> timer) {
+			this.timers.add(timer);
+		}
+
+		private boolean setExpiration(long expiration) {
+			if (this.expiration == expiration) {
+				return false;
+			}
+			this.expiration = expiration;
+			return true;
+		}
+
+		private void drainTo(List<Timer<T>> target) {
+			target.addAll(this.timers);
+			this.timers.clear();
+			this.expiration = -1;
+		}
+
+	}
+
+}
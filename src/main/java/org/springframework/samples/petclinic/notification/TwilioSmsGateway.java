@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+
+/**
+ * {@link SmsGateway} backed by the Twilio REST API. The REST client is created once and
+ * shared by all sends instead of re-initializing the global Twilio client per message.
+ */
+@Component
+public class TwilioSmsGateway implements SmsGateway {
+
+	private final TwilioRestClient client;
+
+	private final PhoneNumber from;
+
+	@Autowired
+	public TwilioSmsGateway(@Value("${twilio.account.sid:accountSid}") String accountSid,
+			@Value("${twilio.auth.token:authToken}") String authToken,
+			@Value("${twilio.phone.number:+15551234567}") String twilioPhoneNumber) {
+		this(new TwilioRestClient.Builder(accountSid, authToken).build(), twilioPhoneNumber);
+	}
+
+	TwilioSmsGateway(TwilioRestClient client, String twilioPhoneNumber) {
+		this.client = client;
+		this.from = new PhoneNumber(twilioPhoneNumber);
+	}
+
+	@Override
+	public String send(String to, String body) {
+		Message message = Message.creator(new PhoneNumber(to), this.from, body).create(this.client);
+		return String.valueOf(message.getStatus());
+	}
+
+}
@@ -72,6 +72,9 @@ public class Owner extends Person {
 	@Enumerated(EnumType.STRING)
 	private NotificationPreference notificationPreference = NotificationPreference.NONE;
 
+	@Column(name = "preferred_language")
+	private String preferredLanguage;
+
 	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
 	@JoinColumn(name = "owner_id")
 	@OrderBy("name")
@@ -114,6 +117,18 @@ public class Owner extends Person {
 				: NotificationPreference.NONE;
 	}
 
+	/**
+	 * Return the language tag (e.g. <code>de</code> or <code>pt-BR</code>) that
+	 * notifications to this owner are written in, or null to use the default language.
+	 */
+	public String getPreferredLanguage() {
+		return this.preferredLanguage;
+	}
+
+	public void setPreferredLanguage(String preferredLanguage) {
+		this.preferredLanguage = preferredLanguage;
+	}
+
 	public void setTelephone(String telephone) {
 		this.telephone = telephone;
 	}
@@ -183,6 +198,7 @@ public class Owner extends Person {
 			.append("telephone", this.telephone)
 			.append("email", this.email)
 			.append("notificationPreference", this.notificationPreference)
+			.append("preferredLanguage", this.preferredLanguage)
 			.toString();
 	}
 
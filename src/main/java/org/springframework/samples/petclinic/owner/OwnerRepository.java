@@ -15,20 +15,28 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import jakarta.annotation.Nonnull;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant
  * with Spring Data naming conventions so this interface can easily be extended for Spring
  * Data. See:
  * https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.query-methods.query-creation
+ * <p>
+ * Only the methods the application uses are exposed, rather than the whole
+ * {@code JpaRepository} contract, so that each of them can be routed when owners are
+ * sharded across databases.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -36,12 +44,14 @@ import org.springframework.data.jpa.repository.Query;
  * @author Michael Isvy
  * @author Wick Dynex
  */
-public interface OwnerRepository extends JpaRepository<Owner, Integer> {
+public interface OwnerRepository extends Repository<Owner, Integer> {
 
 	/**
 	 * Retrieve all {@link PetType}s from the data store.
 	 * @return a Collection of {@link PetType}s.
 	 */
+	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = "petTypes", sync = true)
 	@Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
 	List<PetType> findPetTypes();
 
@@ -52,6 +62,7 @@ public interface OwnerRepository extends JpaRepository<Owner, Integer> {
 	 * @return a Collection of matching {@link Owner}s (or an empty Collection if none
 	 * found)
 	 */
+	@Transactional(readOnly = true)
 	Page<Owner> findByLastNameStartingWith(String lastName, Pageable pageable);
 
 	/**
@@ -67,11 +78,37 @@ public interface OwnerRepository extends JpaRepository<Owner, Integer> {
 	 * @throws IllegalArgumentException if the id is null (assuming null is not a valid
 	 * input for id)
 	 */
+	@Transactional(readOnly = true)
 	Optional<Owner> findById(@Nonnull Integer id);
 
+	/**
+	 * Retrieve the {@link Owner}s of the given pets from the data store.
+	 * @param petIds the ids of the pets
+	 * @return the owners of those pets, each listed once
+	 */
+	@Transactional(readOnly = true)
+	@Query("SELECT DISTINCT owner FROM Owner owner JOIN owner.pets pet WHERE pet.id IN :petIds")
+	List<Owner> findByPetIds(@Param("petIds") Collection<Integer> petIds);
+
 	/**
 	 * Returns all the owners from data store
 	 **/
+	@Transactional(readOnly = true)
 	Page<Owner> findAll(Pageable pageable);
 
+	/**
+	 * Save an {@link Owner} to the data store, either inserting or updating it.
+	 * @param owner the {@link Owner} to save
+	 * @return the saved {@link Owner}
+	 */
+	@Transactional
+	Owner save(Owner owner);
+
+	/**
+	 * Delete an {@link Owner} from the data store.
+	 * @param owner the {@link Owner} to delete
+	 */
+	@Transactional
+	void delete(Owner owner);
+
 }
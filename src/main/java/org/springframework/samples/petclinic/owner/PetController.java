@@ -19,6 +19,7 @@ import java.time.LocalDate;
 import java.util.Collection;
 import java.util.Optional;
 
+import org.springframework.samples.petclinic.system.FragmentCache;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.util.StringUtils;
@@ -48,8 +49,11 @@ class PetController {
 
 	private final OwnerRepository owners;
 
-	public PetController(OwnerRepository owners) {
+	private final FragmentCache fragmentCache;
+
+	public PetController(OwnerRepository owners, FragmentCache fragmentCache) {
 		this.owners = owners;
+		this.fragmentCache = fragmentCache;
 	}
 
 	@ModelAttribute("types")
@@ -66,16 +70,13 @@ class PetController {
 	}
 
 	@ModelAttribute("pet")
-	public Pet findPet(@PathVariable("ownerId") int ownerId,
+	public Pet findPet(@ModelAttribute(name = "owner", binding = false) Owner owner,
 			@PathVariable(name = "petId", required = false) Integer petId) {
 
 		if (petId == null) {
 			return new Pet();
 		}
 
-		Optional<Owner> optionalOwner = this.owners.findById(ownerId);
-		Owner owner = optionalOwner.orElseThrow(() -> new IllegalArgumentException(
-				"Owner not found with id: " + ownerId + ". Please ensure the ID is correct "));
 		return owner.getPet(petId);
 	}
 
@@ -114,6 +115,7 @@ class PetController {
 
 		owner.addPet(pet);
 		this.owners.save(owner);
+		this.fragmentCache.invalidate(OwnerController.OWNER_FRAGMENTS, owner.getId());
 		redirectAttributes.addFlashAttribute("message", "New Pet has been Added");
 		return "redirect:/owners/{ownerId}";
 	}
@@ -168,6 +170,7 @@ class PetController {
 			owner.addPet(pet);
 		}
 		this.owners.save(owner);
+		this.fragmentCache.invalidate(OwnerController.OWNER_FRAGMENTS, owner.getId());
 	}
 
 }
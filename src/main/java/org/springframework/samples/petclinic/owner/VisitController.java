@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.owner;
 import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.samples.petclinic.system.FragmentCache;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
@@ -43,8 +44,11 @@ class VisitController {
 
 	private final OwnerRepository owners;
 
-	public VisitController(OwnerRepository owners) {
+	private final FragmentCache fragmentCache;
+
+	public VisitController(OwnerRepository owners, FragmentCache fragmentCache) {
 		this.owners = owners;
+		this.fragmentCache = fragmentCache;
 	}
 
 	@InitBinder
@@ -93,6 +97,7 @@ class VisitController {
 
 		owner.addVisit(petId, visit);
 		this.owners.save(owner);
+		this.fragmentCache.invalidate(OwnerController.OWNER_FRAGMENTS, owner.getId());
 		redirectAttributes.addFlashAttribute("message", "Your visit has been booked");
 		return "redirect:/owners/{ownerId}";
 	}
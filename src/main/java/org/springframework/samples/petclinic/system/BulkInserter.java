@@ -0,0 +1,190 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts rows with explicit ids through the fastest path a database offers over plain
+ * JDBC: one round trip per chunk of rows rather than one per row.
+ * <ul>
+ * <li>PostgreSQL: a single {@code INSERT ... SELECT * FROM unnest(...)} with one array
+ * parameter per column</li>
+ * <li>MySQL: multi-row {@code INSERT ... VALUES (...), (...)} statements, which the
+ * driver otherwise only produces with {@code rewriteBatchedStatements}</li>
+ * <li>H2, HSQLDB and others: a JDBC batch, which in-process databases execute without any
+ * network round trip</li>
+ * </ul>
+ */
+abstract class BulkInserter {
+
+	/**
+	 * Creates the inserter for a database, as named by
+	 * {@link java.sql.DatabaseMetaData#getDatabaseProductName()}.
+	 */
+	static BulkInserter forDatabase(String productName) {
+		return switch (productName) {
+			case "PostgreSQL" -> new PostgresInserter();
+			case "MySQL" -> new MySqlInserter();
+			default -> new BatchInserter();
+		};
+	}
+
+	abstract void insert(Connection connection, Table table, List<Object[]> rows) throws SQLException;
+
+	/**
+	 * Makes the identity column of a table continue after the ids inserted explicitly, so
+	 * that rows the application adds later do not collide with them.
+	 */
+	void restartIdentity(Connection connection, String table, int nextId) throws SQLException {
+		try (PreparedStatement statement = connection
+			.prepareStatement("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + nextId)) {
+			statement.execute();
+		}
+	}
+
+	private static void bind(PreparedStatement statement, int index, Column column, Object value) throws SQLException {
+		if (value == null) {
+			statement.setNull(index, column.sqlType());
+		}
+		else {
+			statement.setObject(index, value, column.sqlType());
+		}
+	}
+
+	/**
+	 * A table and the columns rows are inserted into, in row order.
+	 */
+	record Table(String name, List<Column> columns) {
+
+		Table(String name, Column... columns) {
+			this(name, List.of(columns));
+		}
+
+		String columnList() {
+			return this.columns.stream().map(Column::name).collect(Collectors.joining(", "));
+		}
+
+	}
+
+	/**
+	 * A column with its JDBC type and the name of that type in PostgreSQL.
+	 */
+	record Column(String name, int sqlType, String postgresType) {
+
+		static Column integer(String name) {
+			return new Column(name, Types.INTEGER, "integer");
+		}
+
+		static Column text(String name) {
+			return new Column(name, Types.VARCHAR, "text");
+		}
+
+		static Column date(String name) {
+			return new Column(name, Types.DATE, "date");
+		}
+
+		static Column timestamp(String name) {
+			return new Column(name, Types.TIMESTAMP, "timestamp");
+		}
+
+	}
+
+	private static final class BatchInserter extends BulkInserter {
+
+		@Override
+		void insert(Connection connection, Table table, List<Object[]> rows) throws SQLException {
+			String placeholders = String.join(", ", Collections.nCopies(table.columns().size(), "?"));
+			try (PreparedStatement statement = connection.prepareStatement(
+					"INSERT INTO " + table.name() + " (" + table.columnList() + ") VALUES (" + placeholders + ")")) {
+				for (Object[] row : rows) {
+					for (int i = 0; i < row.length; i++) {
+						bind(statement, i + 1, table.columns().get(i), row[i]);
+					}
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+		}
+
+	}
+
+	private static final class MySqlInserter extends BulkInserter {
+
+		/**
+		 * Rows per statement, well within the limit of 65535 parameters and the default
+		 * {@code max_allowed_packet}.
+		 */
+		private static final int ROWS_PER_STATEMENT = 1000;
+
+		@Override
+		void insert(Connection connection, Table table, List<Object[]> rows) throws SQLException {
+			String tuple = "(" + String.join(", ", Collections.nCopies(table.columns().size(), "?")) + ")";
+			for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+				List<Object[]> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+				String sql = "INSERT INTO " + table.name() + " (" + table.columnList() + ") VALUES "
+						+ String.join(", ", Collections.nCopies(chunk.size(), tuple));
+				try (PreparedStatement statement = connection.prepareStatement(sql)) {
+					int index = 1;
+					for (Object[] row : chunk) {
+						for (int i = 0; i < row.length; i++) {
+							bind(statement, index++, table.columns().get(i), row[i]);
+						}
+					}
+					statement.executeUpdate();
+				}
+			}
+		}
+
+		@Override
+		void restartIdentity(Connection connection, String table, int nextId) {
+			// AUTO_INCREMENT already moves past explicitly inserted ids
+		}
+
+	}
+
+	private static final class PostgresInserter extends BulkInserter {
+
+		@Override
+		void insert(Connection connection, Table table, List<Object[]> rows) throws SQLException {
+			List<Column> columns = table.columns();
+			String arrays = columns.stream()
+				.map(column -> "?::" + column.postgresType() + "[]")
+				.collect(Collectors.joining(", "));
+			try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table.name() + " ("
+					+ table.columnList() + ") SELECT * FROM unnest(" + arrays + ")")) {
+				for (int i = 0; i < columns.size(); i++) {
+					Object[] values = new Object[rows.size()];
+					for (int row = 0; row < values.length; row++) {
+						values[row] = rows.get(row)[i];
+					}
+					Array array = connection.createArrayOf(columns.get(i).postgresType(), values);
+					statement.setArray(i + 1, array);
+				}
+				statement.executeUpdate();
+			}
+		}
+
+	}
+
+}
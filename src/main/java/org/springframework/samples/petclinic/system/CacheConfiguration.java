@@ -16,38 +16,37 @@
 
 package org.springframework.samples.petclinic.system;
 
-import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import javax.cache.configuration.MutableConfiguration;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 /**
- * Cache configuration intended for caches providing the JCache API. This configuration
- * creates the used cache for the application and enables statistics that become
- * accessible via JMX.
+ * Cache configuration for the application's caches, kept in memory by Caffeine. The
+ * caches are declared up front, so that each of them is published as the {@code cache.*}
+ * metrics from startup, and record their statistics. A {@code @Cacheable} that names a
+ * cache not declared here fails rather than go unmonitored.
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
 class CacheConfiguration {
 
-	@Bean
-	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer() {
-		return cm -> cm.createCache("vets", cacheConfiguration());
-	}
-
 	/**
-	 * Create a simple configuration that enable statistics via the JCache programmatic
-	 * configuration API.
-	 * <p>
-	 * Within the configuration object that is provided by the JCache API standard, there
-	 * is only a very limited set of configuration options. The really relevant
-	 * configuration options (like the size limit) must be set via a configuration
-	 * mechanism that is provided by the selected JCache implementation.
+	 * The names of the application's caches, besides the {@link FragmentCache}.
 	 */
-	private javax.cache.configuration.Configuration<Object, Object> cacheConfiguration() {
-		return new MutableConfiguration<>().setStatisticsEnabled(true);
+	static final List<String> CACHE_NAMES = List.of("vets", "petTypes");
+
+	@Bean
+	public CacheManagerCustomizer<CaffeineCacheManager> petclinicCacheConfigurationCustomizer() {
+		return cm -> {
+			cm.setCaffeine(Caffeine.newBuilder().recordStats());
+			cm.setCacheNames(CACHE_NAMES);
+		};
 	}
 
 }
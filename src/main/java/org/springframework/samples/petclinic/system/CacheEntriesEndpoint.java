@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cache.CacheManager;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Actuator endpoint, at {@code /actuator/cacheentries}, that reports the statistics of
+ * every application cache, including the {@link FragmentCache}, and lists the entries of
+ * one of them by key, without their values. A {@code DELETE} to
+ * {@code /actuator/cacheentries/{cache}} empties the cache, or only removes the entries
+ * whose key reads as the {@code key} parameter.
+ */
+@Component
+@Endpoint(id = "cacheentries")
+public class CacheEntriesEndpoint {
+
+	/**
+	 * Most entries listed per cache.
+	 */
+	private static final int MAX_ENTRIES = 100;
+
+	/**
+	 * Entries whose serialized size is averaged to estimate the weighted size of a cache
+	 * that is not bounded by weight.
+	 */
+	private static final int SAMPLED_ENTRIES = 10;
+
+	private final ObjectProvider<CacheManager> cacheManager;
+
+	private final FragmentCache fragmentCache;
+
+	public CacheEntriesEndpoint(ObjectProvider<CacheManager> cacheManager, FragmentCache fragmentCache) {
+		this.cacheManager = cacheManager;
+		this.fragmentCache = fragmentCache;
+	}
+
+	@ReadOperation
+	public Map<String, CacheDescriptor> caches() {
+		Map<String, CacheDescriptor> caches = new TreeMap<>();
+		nativeCaches().forEach((name, cache) -> caches.put(name, CacheDescriptor.of(cache, 0)));
+		return caches;
+	}
+
+	@ReadOperation
+	public CacheDescriptor cache(@Selector String cache) {
+		Cache<?, ?> nativeCache = nativeCaches().get(cache);
+		return (nativeCache != null) ? CacheDescriptor.of(nativeCache, MAX_ENTRIES) : null;
+	}
+
+	@DeleteOperation
+	public void invalidate(@Selector String cache, @Nullable String key) {
+		if (key != null) {
+			Cache<?, ?> nativeCache = nativeCaches().get(cache);
+			if (nativeCache != null) {
+				nativeCache.asMap().keySet().removeIf((candidate) -> Objects.toString(candidate).equals(key));
+			}
+		}
+		else if (FragmentCache.NAME.equals(cache)) {
+			this.fragmentCache.clear();
+		}
+		else {
+			this.cacheManager.ifAvailable((cacheManager) -> {
+				org.springframework.cache.Cache springCache = cacheManager.getCache(cache);
+				if (springCache != null) {
+					springCache.clear();
+				}
+			});
+		}
+	}
+
+	private Map<String, Cache<?, ?>> nativeCaches() {
+		Map<String, Cache<?, ?>> caches = new TreeMap<>();
+		this.cacheManager.ifAvailable((cacheManager) -> {
+			for (String name : cacheManager.getCacheNames()) {
+				org.springframework.cache.Cache cache = cacheManager.getCache(name);
+				if (cache != null && cache.getNativeCache() instanceof Cache<?, ?> nativeCache) {
+					caches.put(name, nativeCache);
+				}
+			}
+		});
+		caches.put(FragmentCache.NAME, this.fragmentCache.getNativeCache());
+		return caches;
+	}
+
+	/**
+	 * The statistics of a cache since startup, with times in milliseconds, and some of
+	 * its entries. The weighted size is that of caches bounded by weight, e.g. in bytes,
+	 * and otherwise the number of entries times the average serialized size, in bytes, of
+	 * a sample of them. It is {@code null} if none of the sampled entries can be
+	 * serialized.
+	 */
+	public record CacheDescriptor(long size, Long weightedSize, long hits, long misses, double hitRate, long evictions,
+			long loads, double averageLoadTime, List<EntryDescriptor> entries) {
+
+		static CacheDescriptor of(Cache<?, ?> cache, int maxEntries) {
+			CacheStats stats = cache.stats();
+			Policy.Eviction<?, ?> eviction = cache.policy().eviction().orElse(null);
+			Long weightedSize = (eviction != null && eviction.isWeighted()) ? eviction.weightedSize().orElse(0)
+					: estimateWeightedSize(cache);
+			List<EntryDescriptor> entries = cache.asMap()
+				.entrySet()
+				.stream()
+				.limit(maxEntries)
+				.map((entry) -> new EntryDescriptor(Objects.toString(entry.getKey()),
+						entry.getValue().getClass().getName()))
+				.toList();
+			return new CacheDescriptor(cache.estimatedSize(), weightedSize, stats.hitCount(), stats.missCount(),
+					stats.hitRate(), stats.evictionCount(), stats.loadCount(),
+					stats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1), entries);
+		}
+
+		@Nullable
+		private static Long estimateWeightedSize(Cache<?, ?> cache) {
+			long sampled = 0;
+			long bytes = 0;
+			for (Map.Entry<?, ?> entry : cache.asMap().entrySet()) {
+				if (sampled == SAMPLED_ENTRIES) {
+					break;
+				}
+				long keySize = serializedSize(entry.getKey());
+				long valueSize = serializedSize(entry.getValue());
+				if (keySize >= 0 && valueSize >= 0) {
+					sampled++;
+					bytes += keySize + valueSize;
+				}
+			}
+			if (sampled == 0) {
+				return (cache.estimatedSize() == 0) ? 0L : null;
+			}
+			return cache.estimatedSize() * bytes / sampled;
+		}
+
+		/**
+		 * The number of bytes the given object serializes to, or {@code -1} if it cannot
+		 * be serialized.
+		 */
+		private static long serializedSize(Object object) {
+			ByteCounter counter = new ByteCounter();
+			try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+				out.writeObject(object);
+			}
+			catch (IOException | RuntimeException ex) {
+				return -1;
+			}
+			return counter.count;
+		}
+
+	}
+
+	/**
+	 * An {@link OutputStream} that only counts the bytes written to it.
+	 */
+	private static final class ByteCounter extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.count += len;
+		}
+
+	}
+
+	/**
+	 * A cache entry, by key and the type of its value.
+	 */
+	public record EntryDescriptor(String key, String type) {
+
+	}
+
+}
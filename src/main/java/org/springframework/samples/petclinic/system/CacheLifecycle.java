@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Empties the caches when the application is stopped, in particular before a CRaC
+ * checkpoint, so that an application restored from it, possibly much later, does not
+ * serve vets or rendered pages from the time of the checkpoint. They fill again on use
+ * once it is started.
+ */
+@Component
+class CacheLifecycle implements SmartLifecycle {
+
+	private final ObjectProvider<CacheManager> cacheManager;
+
+	private final FragmentCache fragmentCache;
+
+	private volatile boolean running;
+
+	CacheLifecycle(ObjectProvider<CacheManager> cacheManager, FragmentCache fragmentCache) {
+		this.cacheManager = cacheManager;
+		this.fragmentCache = fragmentCache;
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.cacheManager.ifAvailable(cacheManager -> {
+			for (String name : cacheManager.getCacheNames()) {
+				Cache cache = cacheManager.getCache(name);
+				if (cache != null) {
+					cache.clear();
+				}
+			}
+		});
+		this.fragmentCache.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Training run for a class data sharing archive, enabled with
+ * {@code petclinic.cds.training-run=true}. Once the application is ready it runs the
+ * {@link WarmupWorkload}, including valid forms, so that the classes they need are
+ * loaded, and then exits. Started with {@code -XX:ArchiveClassesAtExit=application.jsa},
+ * the JVM writes those classes to the archive on exit, and later starts with
+ * {@code -XX:SharedArchiveFile=application.jsa} load them from it. The {@code cds} Maven
+ * profile and the {@code cdsArchive} Gradle task do this for the packaged application.
+ */
+@Component
+@ConditionalOnProperty("petclinic.cds.training-run")
+class CdsTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CdsTrainingRun.class);
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		try {
+			new WarmupWorkload(event.getApplicationContext(), true).run();
+		}
+		catch (IOException ex) {
+			logger.warn("Training run request failed, the archive will be incomplete", ex);
+		}
+		logger.info("Training run complete, exiting");
+		System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.AbstractFlashMapManager;
+import org.springframework.web.util.WebUtils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Keeps flash attributes, such as the message shown after an owner is saved, in a cookie
+ * rather than in the HTTP session, so that redirecting after a form is submitted does not
+ * create a session. The attributes are stored as JSON and must fit in the few kilobytes
+ * of a cookie.
+ * <p>
+ * The cookie is not signed, so a browser can send any attributes it likes. Flash
+ * attributes end up in the model, where they would take the place of model attributes
+ * such as the owner being edited, so only string {@link #ATTRIBUTES} are kept, which are
+ * only ever shown back to the browser that sent them, escaped.
+ */
+class CookieFlashMapManager extends AbstractFlashMapManager {
+
+	static final String COOKIE_NAME = "PETCLINIC_FLASH";
+
+	/**
+	 * The flash attributes set by the controllers.
+	 */
+	static final Set<String> ATTRIBUTES = Set.of("message", "error");
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static final TypeReference<List<StoredFlashMap>> STORED_FLASH_MAPS = new TypeReference<>() {
+	};
+
+	@Override
+	protected List<FlashMap> retrieveFlashMaps(HttpServletRequest request) {
+		Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+		if (cookie == null || cookie.getValue().isEmpty()) {
+			return null;
+		}
+		try {
+			List<FlashMap> flashMaps = new ArrayList<>();
+			for (StoredFlashMap stored : objectMapper.readValue(Base64.getUrlDecoder().decode(cookie.getValue()),
+					STORED_FLASH_MAPS)) {
+				flashMaps.add(stored.toFlashMap());
+			}
+			return flashMaps;
+		}
+		catch (IOException | IllegalArgumentException ex) {
+			logger.debug("Ignoring unreadable flash attributes cookie", ex);
+			return null;
+		}
+	}
+
+	@Override
+	protected void updateFlashMaps(List<FlashMap> flashMaps, HttpServletRequest request, HttpServletResponse response) {
+		Cookie cookie = new Cookie(COOKIE_NAME, flashMaps.isEmpty() ? "" : encode(flashMaps));
+		cookie.setPath("/");
+		cookie.setMaxAge(flashMaps.isEmpty() ? 0 : getFlashMapTimeout());
+		cookie.setHttpOnly(true);
+		response.addCookie(cookie);
+	}
+
+	private String encode(List<FlashMap> flashMaps) {
+		try {
+			List<StoredFlashMap> stored = flashMaps.stream()
+				.map(flashMap -> StoredFlashMap.of(flashMap, cookieAttributes(flashMap)))
+				.toList();
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(stored));
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Flash attributes cannot be written as JSON", ex);
+		}
+	}
+
+	private Map<String, String> cookieAttributes(FlashMap flashMap) {
+		Map<String, String> attributes = new LinkedHashMap<>();
+		flashMap.forEach((name, value) -> {
+			if (ATTRIBUTES.contains(name) && value instanceof String text) {
+				attributes.put(name, text);
+			}
+			else {
+				logger.warn("Dropping flash attribute '" + name + "', only string values of " + ATTRIBUTES
+						+ " are kept in the cookie");
+			}
+		});
+		return attributes;
+	}
+
+	/**
+	 * A flash map as stored in the cookie.
+	 */
+	record StoredFlashMap(String path, Map<String, List<String>> params, long expires, Map<String, String> attributes) {
+
+		static StoredFlashMap of(FlashMap flashMap, Map<String, String> attributes) {
+			return new StoredFlashMap(flashMap.getTargetRequestPath(), flashMap.getTargetRequestParams(),
+					flashMap.getExpirationTime(), attributes);
+		}
+
+		FlashMap toFlashMap() {
+			FlashMap flashMap = new FlashMap();
+			flashMap.setTargetRequestPath(this.path);
+			if (this.params != null) {
+				flashMap.addTargetRequestParams(new LinkedMultiValueMap<>(this.params));
+			}
+			flashMap.setExpirationTime(this.expires);
+			if (this.attributes != null) {
+				this.attributes.forEach((name, value) -> {
+					if (ATTRIBUTES.contains(name) && value != null) {
+						flashMap.put(name, value);
+					}
+				});
+			}
+			return flashMap;
+		}
+
+	}
+
+}
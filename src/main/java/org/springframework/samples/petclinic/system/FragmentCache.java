@@ -0,0 +1,338 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.context.IWebContext;
+import org.thymeleaf.dialect.AbstractProcessorDialect;
+import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.model.IModel;
+import org.thymeleaf.model.IModelFactory;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.processor.element.AbstractElementModelProcessor;
+import org.thymeleaf.processor.element.IElementModelStructureHandler;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Cache of rendered template fragments. An element marked with
+ * {@code petclinic:cache="region"} and {@code petclinic:cache-key="${id}"} is rendered
+ * once per region, entity id and locale, and then written from memory:
+ *
+ * <pre class="code">
+ * &lt;div petclinic:cache="owners" petclinic:cache-key="${owner.id}"&gt;...&lt;/div&gt;
+ * </pre>
+ *
+ * Writers call {@link #invalidate} once their change is committed. Every entry is stamped
+ * with the version of the data at the start of the request that rendered it, recorded by
+ * this class as a {@link HandlerInterceptor}, so a fragment rendered from data read
+ * before a concurrent write is never served after it. When the data may be read from
+ * replicas up to a {@link #setReadLag read lag} behind, only requests that started that
+ * long after the last invalidation of a fragment cache it. Invalidating only records a
+ * new version, so it takes constant time: a stale entry is never served, and is replaced
+ * when its fragment is next rendered or else evicted. The cache is bounded by
+ * {@code petclinic.fragment-cache.max-size} bytes and reported as the {@code fragments}
+ * cache metrics, with its approximate size in bytes as {@code cache.weighted.size}.
+ * Invalidation only reaches this instance, so entries also expire
+ * {@code petclinic.fragment-cache.time-to-live} after they were rendered, which bounds
+ * how long other instances of the application may serve a fragment after a change.
+ */
+@Component
+public class FragmentCache extends AbstractProcessorDialect implements HandlerInterceptor {
+
+	/**
+	 * Lower than the standard dialect, so that the element is cached before any of its
+	 * other attributes are processed.
+	 */
+	private static final int PRECEDENCE = 100;
+
+	/**
+	 * Invalidation versions are kept for this many stripes of ids per region rather than
+	 * per id, so that they take constant memory.
+	 */
+	private static final int STRIPES = 1024;
+
+	private static final String REQUEST_VERSION_ATTRIBUTE = FragmentCache.class.getName() + ".version";
+
+	/**
+	 * Name of the cache in the metrics and at {@code /actuator/cacheentries}.
+	 */
+	static final String NAME = "fragments";
+
+	private final boolean enabled;
+
+	private final Cache<Key, Entry> cache;
+
+	/**
+	 * Versions are nanoseconds since {@link #origin}, so that they can be compared with
+	 * the read lag.
+	 */
+	private final AtomicLong version = new AtomicLong();
+
+	private final long origin = System.nanoTime();
+
+	private volatile long readLagNanos;
+
+	private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+	public FragmentCache(@Value("${petclinic.fragment-cache.enabled:true}") boolean enabled,
+			@Value("${petclinic.fragment-cache.max-size:16MB}") DataSize maxSize,
+			@Value("${petclinic.fragment-cache.time-to-live:10m}") Duration timeToLive,
+			ObjectProvider<MeterRegistry> registry) {
+		super("PetClinic", "petclinic", PRECEDENCE);
+		this.enabled = enabled;
+		this.cache = Caffeine.newBuilder()
+			.maximumWeight(maxSize.toBytes())
+			.weigher((Key key, Entry entry) -> entry.weight())
+			.expireAfterWrite(timeToLive)
+			.recordStats()
+			.build();
+		registry.ifAvailable(meterRegistry -> {
+			CaffeineCacheMetrics.monitor(meterRegistry, this.cache, NAME);
+			Gauge.builder("cache.weighted.size", this.cache, FragmentCache::weightedSize)
+				.tag("cache", NAME)
+				.description("The approximate size of the entries in the cache")
+				.baseUnit(BaseUnits.BYTES)
+				.register(meterRegistry);
+		});
+	}
+
+	private static double weightedSize(Cache<Key, Entry> cache) {
+		return cache.policy().eviction().map((eviction) -> eviction.weightedSize().orElse(0)).orElse(0L);
+	}
+
+	/**
+	 * Discard the fragments rendered for one entity, in every locale. Call after the
+	 * change has been committed.
+	 */
+	public void invalidate(String region, Object id) {
+		region(region).invalidate(id, nextVersion());
+	}
+
+	/**
+	 * Discard all fragments of a region. Call after the change has been committed.
+	 */
+	public void invalidateAll(String region) {
+		region(region).invalidateAll(nextVersion());
+	}
+
+	/**
+	 * Discard all fragments of every region.
+	 */
+	public void clear() {
+		long version = nextVersion();
+		this.regions.values().forEach(region -> region.invalidateAll(version));
+		this.cache.invalidateAll();
+	}
+
+	/**
+	 * Returns the underlying cache, to report on its statistics and entries.
+	 */
+	Cache<Key, ?> getNativeCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Set how far behind the writes the data read by a request may be, e.g. the maximum
+	 * lag of the read replicas. Defaults to none.
+	 */
+	public void setReadLag(Duration readLag) {
+		this.readLagNanos = readLag.toNanos();
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		long readFrom = Math.max(0, System.nanoTime() - this.origin - this.readLagNanos);
+		request.setAttribute(REQUEST_VERSION_ATTRIBUTE, Math.min(this.version.get(), readFrom));
+		return true;
+	}
+
+	@Override
+	public Set<IProcessor> getProcessors(String dialectPrefix) {
+		return Set.of(new CacheProcessor(dialectPrefix));
+	}
+
+	/**
+	 * Returns the fragment cached for the given key, or renders it and caches it when it
+	 * was rendered from data at least as recent as the last invalidation.
+	 */
+	String get(Key key, Long requestVersion, Renderer renderer) {
+		Region region = region(key.region());
+		long invalidated = region.invalidatedAt(key.id());
+		Entry entry = this.cache.getIfPresent(key);
+		if (entry != null && entry.version() >= invalidated) {
+			return entry.html();
+		}
+		String html = renderer.render();
+		if (requestVersion != null && requestVersion >= invalidated) {
+			this.cache.put(key, new Entry(html, requestVersion));
+		}
+		else if (entry != null) {
+			// Stale, and not replaced by this rendering; unless another request replaced
+			// it
+			this.cache.asMap().remove(key, entry);
+		}
+		return html;
+	}
+
+	private long nextVersion() {
+		long now = System.nanoTime() - this.origin;
+		return this.version.accumulateAndGet(now, (last, time) -> Math.max(last + 1, time));
+	}
+
+	private Region region(String name) {
+		return this.regions.computeIfAbsent(name, region -> new Region());
+	}
+
+	/**
+	 * Identifies a rendered fragment.
+	 */
+	record Key(String region, Object id, Locale locale) {
+	}
+
+	/**
+	 * A rendered fragment and the version of the data it was rendered from.
+	 */
+	private record Entry(String html, long version) {
+
+		/**
+		 * Approximate size in bytes, counting two bytes per character as the worst case
+		 * of a {@code String}.
+		 */
+		int weight() {
+			return 64 + 2 * this.html.length();
+		}
+
+	}
+
+	@FunctionalInterface
+	interface Renderer {
+
+		String render();
+
+	}
+
+	/**
+	 * The versions at which the ids of a region were last invalidated.
+	 */
+	private static final class Region {
+
+		private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+
+		private volatile long all;
+
+		void invalidate(Object id, long version) {
+			this.stripes.accumulateAndGet(stripe(id), version, Math::max);
+		}
+
+		synchronized void invalidateAll(long version) {
+			this.all = Math.max(this.all, version);
+		}
+
+		long invalidatedAt(Object id) {
+			return Math.max(this.all, this.stripes.get(stripe(id)));
+		}
+
+		private static int stripe(Object id) {
+			return Math.floorMod(Objects.hashCode(id), STRIPES);
+		}
+
+	}
+
+	/**
+	 * Replaces an element marked with {@code cache} by its cached rendering. On a miss
+	 * the element, without the cache attributes, is rendered in the current context like
+	 * an inlined template, which is what {@code th:inline} does.
+	 */
+	private final class CacheProcessor extends AbstractElementModelProcessor {
+
+		private static final String CACHE = "cache";
+
+		private static final String CACHE_KEY = "cache-key";
+
+		CacheProcessor(String dialectPrefix) {
+			super(TemplateMode.HTML, dialectPrefix, null, false, CACHE, true, PRECEDENCE);
+		}
+
+		@Override
+		protected void doProcess(ITemplateContext context, IModel model, IElementModelStructureHandler handler) {
+			IModelFactory modelFactory = context.getModelFactory();
+			IProcessableElementTag tag = (IProcessableElementTag) model.get(0);
+			String region = tag.getAttributeValue(getDialectPrefix(), CACHE);
+			Object id = StandardExpressions.getExpressionParser(context.getConfiguration())
+				.parseExpression(context, tag.getAttributeValue(getDialectPrefix(), CACHE_KEY))
+				.execute(context);
+			IProcessableElementTag plain = modelFactory.removeAttribute(
+					modelFactory.removeAttribute(tag, getDialectPrefix(), CACHE), getDialectPrefix(), CACHE_KEY);
+			model.replace(0, plain);
+			if (!FragmentCache.this.enabled || id == null) {
+				return;
+			}
+			Long requestVersion = (context instanceof IWebContext webContext)
+					? (Long) webContext.getExchange().getAttributeValue(REQUEST_VERSION_ATTRIBUTE) : null;
+			String html = get(new Key(region, id, context.getLocale()), requestVersion, () -> render(context, model));
+			model.reset();
+			model.add(modelFactory.createText(html));
+		}
+
+		private String render(ITemplateContext context, IModel model) {
+			StringWriter markup = new StringWriter();
+			try {
+				model.write(markup);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			TemplateManager templateManager = context.getConfiguration().getTemplateManager();
+			TemplateModel template = templateManager.parseString(context.getTemplateData(), markup.toString(),
+					model.get(0).getLine(), model.get(0).getCol(), getTemplateMode(), false);
+			StringWriter html = new StringWriter();
+			templateManager.process(template, context, html);
+			return html.toString();
+		}
+
+	}
+
+}
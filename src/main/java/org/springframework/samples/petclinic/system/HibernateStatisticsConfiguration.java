@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Turns on Hibernate's statistics and publishes them as {@code hibernate.*} meters and at
+ * {@code /actuator/hibernate}. Queries slower than
+ * {@code petclinic.hibernate.slow-query-threshold} are logged, each at most once per
+ * {@code petclinic.hibernate.slow-query-log-interval}.
+ * <p>
+ * The statistics are counters that Hibernate updates as it goes, cheap enough to leave on
+ * under load. Hibernate's per-session metrics log, which it adds along with them and
+ * which times every JDBC call, is left off.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.hibernate.statistics.enabled", matchIfMissing = true)
+class HibernateStatisticsConfiguration {
+
+	@Bean
+	HibernatePropertiesCustomizer hibernateStatisticsCustomizer(
+			@Value("${petclinic.hibernate.slow-query-threshold:200ms}") Duration slowQueryThreshold,
+			@Value("${petclinic.hibernate.slow-query-log-interval:1m}") Duration slowQueryLogInterval) {
+		return (properties) -> {
+			properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+			properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+			properties.put(AvailableSettings.STATS_BUILDER,
+					SlowQueryLoggingStatistics.factory(slowQueryThreshold, slowQueryLogInterval));
+		};
+	}
+
+	@Bean
+	HibernateStatisticsMetrics hibernateStatisticsMetrics(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+		return new HibernateStatisticsMetrics(entityManagerFactory);
+	}
+
+	@Bean
+	HibernateStatisticsEndpoint hibernateStatisticsEndpoint(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+		return new HibernateStatisticsEndpoint(entityManagerFactory);
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Actuator endpoint, at {@code /actuator/hibernate}, that reports Hibernate's statistics
+ * since the application started or they were last reset, with the queries that took the
+ * most time in all. A {@code DELETE} resets them.
+ */
+@Endpoint(id = "hibernate")
+public class HibernateStatisticsEndpoint {
+
+	/**
+	 * Most queries listed, by the time they took in all.
+	 */
+	private static final int MAX_QUERIES = 20;
+
+	private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+	public HibernateStatisticsEndpoint(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
+	@ReadOperation
+	public StatisticsDescriptor statistics() {
+		EntityManagerFactory entityManagerFactory = this.entityManagerFactory.getIfAvailable();
+		if (entityManagerFactory == null) {
+			return null;
+		}
+		Statistics stats = HibernateStatisticsMetrics.statistics(entityManagerFactory);
+		long slowQueries = (stats instanceof SlowQueryLoggingStatistics slow) ? slow.getSlowQueryCount() : 0;
+		double hitRatio = HibernateStatisticsMetrics.hitRatio(stats);
+		List<QueryDescriptor> queries = Arrays.stream(stats.getQueries())
+			.map((query) -> QueryDescriptor.of(query, stats.getQueryStatistics(query)))
+			.sorted(Comparator.comparingLong(QueryDescriptor::totalTime).reversed())
+			.limit(MAX_QUERIES)
+			.toList();
+		return new StatisticsDescriptor(stats.getStart(), stats.getSessionOpenCount(), stats.getTransactionCount(),
+				stats.getSuccessfulTransactionCount(), stats.getConnectCount(), stats.getPrepareStatementCount(),
+				stats.getEntityLoadCount(), stats.getEntityFetchCount(), stats.getCollectionLoadCount(),
+				stats.getCollectionFetchCount(), stats.getQueryExecutionCount(), slowQueries,
+				stats.getQueryExecutionMaxTime(), stats.getQueryExecutionMaxTimeQueryString(),
+				Double.isNaN(hitRatio) ? null : hitRatio, queries);
+	}
+
+	@DeleteOperation
+	public void reset() {
+		this.entityManagerFactory
+			.ifAvailable((entityManagerFactory) -> HibernateStatisticsMetrics.statistics(entityManagerFactory).clear());
+	}
+
+	/**
+	 * Hibernate's statistics, with times in milliseconds. The second-level cache hit
+	 * ratio is {@code null} until the cache is used.
+	 */
+	public record StatisticsDescriptor(Instant since, long sessionsOpened, long transactions,
+			long successfulTransactions, long connectionsObtained, long statementsPrepared, long entityLoads,
+			long entityFetches, long collectionLoads, long collectionFetches, long queryExecutions, long slowQueries,
+			long queryExecutionMaxTime, String slowestQuery, Double secondLevelCacheHitRatio,
+			List<QueryDescriptor> queries) {
+
+	}
+
+	/**
+	 * The executions of one query, with times in milliseconds.
+	 */
+	public record QueryDescriptor(String query, long executions, long rows, double averageTime, long maxTime,
+			long totalTime) {
+
+		static QueryDescriptor of(String query, QueryStatistics statistics) {
+			return new QueryDescriptor(query, statistics.getExecutionCount(), statistics.getExecutionRowCount(),
+					statistics.getExecutionAvgTimeAsDouble(), statistics.getExecutionMaxTime(),
+					statistics.getExecutionTotalTime());
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Publishes Hibernate's {@link Statistics} as meters, under the names Micrometer's own
+ * Hibernate binder used. The meters read the statistics when they are published, so they
+ * add nothing to the cost of a query.
+ */
+class HibernateStatisticsMetrics implements MeterBinder {
+
+	private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+	HibernateStatisticsMetrics(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
+	/**
+	 * Returns the statistics of the given entity manager factory's session factory.
+	 */
+	static Statistics statistics(EntityManagerFactory entityManagerFactory) {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		EntityManagerFactory entityManagerFactory = this.entityManagerFactory.getIfAvailable();
+		if (entityManagerFactory == null) {
+			return;
+		}
+		Statistics statistics = statistics(entityManagerFactory);
+		counter(registry, statistics, "hibernate.sessions.open", "Sessions opened", Statistics::getSessionOpenCount);
+		counter(registry, statistics, "hibernate.sessions.closed", "Sessions closed", Statistics::getSessionCloseCount);
+		counter(registry, statistics, "hibernate.transactions", "Transactions that succeeded",
+				Statistics::getSuccessfulTransactionCount, "result", "success");
+		counter(registry, statistics, "hibernate.transactions", "Transactions that failed",
+				(stats) -> stats.getTransactionCount() - stats.getSuccessfulTransactionCount(), "result", "failure");
+		counter(registry, statistics, "hibernate.optimistic.failures", "Optimistic lock failures",
+				Statistics::getOptimisticFailureCount);
+		counter(registry, statistics, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+		counter(registry, statistics, "hibernate.connections.obtained", "JDBC connections obtained",
+				Statistics::getConnectCount);
+		counter(registry, statistics, "hibernate.statements", "JDBC statements prepared",
+				Statistics::getPrepareStatementCount, "status", "prepared");
+		counter(registry, statistics, "hibernate.statements", "JDBC statements closed",
+				Statistics::getCloseStatementCount, "status", "closed");
+
+		counter(registry, statistics, "hibernate.entities.loads", "Entities loaded", Statistics::getEntityLoadCount);
+		counter(registry, statistics, "hibernate.entities.fetches", "Entities fetched by a separate statement",
+				Statistics::getEntityFetchCount);
+		counter(registry, statistics, "hibernate.entities.inserts", "Entities inserted",
+				Statistics::getEntityInsertCount);
+		counter(registry, statistics, "hibernate.entities.updates", "Entities updated",
+				Statistics::getEntityUpdateCount);
+		counter(registry, statistics, "hibernate.entities.deletes", "Entities deleted",
+				Statistics::getEntityDeleteCount);
+		counter(registry, statistics, "hibernate.collections.loads", "Collections loaded",
+				Statistics::getCollectionLoadCount);
+		counter(registry, statistics, "hibernate.collections.fetches", "Collections fetched by a separate statement",
+				Statistics::getCollectionFetchCount);
+
+		counter(registry, statistics, "hibernate.query.executions", "Queries executed",
+				Statistics::getQueryExecutionCount);
+		TimeGauge
+			.builder("hibernate.query.executions.max", statistics, TimeUnit.MILLISECONDS,
+					Statistics::getQueryExecutionMaxTime)
+			.description("Time of the slowest query executed")
+			.register(registry);
+		if (statistics instanceof SlowQueryLoggingStatistics slowQueries) {
+			FunctionCounter
+				.builder("hibernate.query.executions.slow", slowQueries, SlowQueryLoggingStatistics::getSlowQueryCount)
+				.description("Queries slower than the slow query threshold")
+				.register(registry);
+		}
+		counter(registry, statistics, "hibernate.query.cache.requests", "Query cache hits",
+				Statistics::getQueryCacheHitCount, "result", "hit");
+		counter(registry, statistics, "hibernate.query.cache.requests", "Query cache misses",
+				Statistics::getQueryCacheMissCount, "result", "miss");
+
+		counter(registry, statistics, "hibernate.second.level.cache.requests", "Second-level cache hits",
+				Statistics::getSecondLevelCacheHitCount, "result", "hit");
+		counter(registry, statistics, "hibernate.second.level.cache.requests", "Second-level cache misses",
+				Statistics::getSecondLevelCacheMissCount, "result", "miss");
+		counter(registry, statistics, "hibernate.second.level.cache.puts",
+				"Entities and collections put in the second-level cache", Statistics::getSecondLevelCachePutCount);
+		Gauge.builder("hibernate.second.level.cache.hit.ratio", statistics, HibernateStatisticsMetrics::hitRatio)
+			.description("Share of second-level cache requests that hit")
+			.register(registry);
+	}
+
+	private static void counter(MeterRegistry registry, Statistics statistics, String name, String description,
+			ToDoubleFunction<Statistics> count, String... tags) {
+		FunctionCounter.builder(name, statistics, count).description(description).tags(tags).register(registry);
+	}
+
+	static double hitRatio(Statistics statistics) {
+		long hits = statistics.getSecondLevelCacheHitCount();
+		long requests = hits + statistics.getSecondLevelCacheMissCount();
+		return (requests != 0) ? (double) hits / requests : Double.NaN;
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Connection pools for databases other than the application's own, such as read replicas
+ * and shards.
+ */
+final class HikariPools {
+
+	private HikariPools() {
+	}
+
+	/**
+	 * Create a pool for the given URL with the primary's credentials and
+	 * {@code spring.datasource.hikari} settings, reporting to the meter registry if there
+	 * is one.
+	 */
+	static HikariDataSource create(DataSourceProperties properties, Environment environment,
+			ObjectProvider<MeterRegistry> registry, String url, String poolName) {
+		HikariDataSource pool = properties.initializeDataSourceBuilder()
+			.type(HikariDataSource.class)
+			.url(url.trim())
+			.build();
+		Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+		pool.setPoolName(poolName);
+		registry.ifAvailable(
+				meterRegistry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry)));
+		return pool;
+	}
+
+}
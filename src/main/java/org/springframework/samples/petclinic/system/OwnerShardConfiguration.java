@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.SingletonTargetSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Partitions the owners, with their pets and visits, across the application's data source
+ * and the databases listed in {@code petclinic.datasource.shards}, see
+ * {@link OwnerShards}. Hibernate opens each session on the shard chosen by the
+ * {@link OwnerShardRouter} in front of the {@link OwnerRepository}; sessions opened
+ * anywhere else use the application's data source. Shard pools use the primary's
+ * credentials and {@code spring.datasource.hikari} settings, and every shard gets the
+ * full schema since pets refer to their shard's copy of the pet types.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.datasource.shards")
+class OwnerShardConfiguration {
+
+	@Bean
+	static BeanPostProcessor ownerShardRouting(ObjectProvider<OwnerShards> shards,
+			ObjectProvider<PlatformTransactionManager> transactionManager) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof OwnerRepository) {
+					ProxyFactory routing = new ProxyFactory(OwnerRepository.class, new SingletonTargetSource(bean));
+					routing.addAdvice(new OwnerShardRouter(shards.getObject(), transactionManager.getObject()));
+					return routing.getProxy();
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	@Bean
+	OwnerShards ownerShards(DataSource dataSource, DataSourceProperties properties, Environment environment,
+			ObjectProvider<MeterRegistry> registry, @Value("${petclinic.datasource.shards}") String[] urls,
+			@Value("${petclinic.datasource.shard-query-threads:16}") int threads,
+			@Value("${petclinic.sql.counting.enabled:true}") boolean countStatements) {
+		checkSupported(properties.determineUrl());
+		List<DataSource> shards = new ArrayList<>();
+		shards.add(dataSource);
+		for (int i = 0; i < urls.length; i++) {
+			checkSupported(urls[i]);
+			DataSource shard = HikariPools.create(properties, environment, registry, urls[i], "shard-" + (i + 1));
+			shards.add(countStatements ? new StatementCountingDataSource(shard) : shard);
+		}
+		return new OwnerShards(shards, threads);
+	}
+
+	/**
+	 * Refuses databases whose id columns cannot be set to count up in steps of the number
+	 * of shards, such as MySQL's, where all the shards would hand out the same ids.
+	 */
+	private static void checkSupported(String url) {
+		DatabaseDriver driver = DatabaseDriver.fromJdbcUrl(url);
+		if (driver != DatabaseDriver.H2 && driver != DatabaseDriver.POSTGRESQL) {
+			throw new IllegalStateException("Owner shards are only supported on H2 and PostgreSQL, but " + url
+					+ " is a " + driver.getId() + " database; unset petclinic.datasource.shards to use it");
+		}
+	}
+
+	@Bean
+	HibernatePropertiesCustomizer ownerShardSessions(OwnerShards shards) {
+		return properties -> {
+			properties.put(AvailableSettings.MULTI_TENANT_CONNECTION_PROVIDER, shards);
+			properties.put(AvailableSettings.MULTI_TENANT_IDENTIFIER_RESOLVER, shards);
+		};
+	}
+
+	@Bean
+	OwnerShardInitializer ownerShardInitializer(OwnerShards shards, Environment environment) {
+		SqlInitializationProperties properties = Binder.get(environment)
+			.bindOrCreate("spring.sql.init", SqlInitializationProperties.class);
+		return new OwnerShardInitializer(shards, properties);
+	}
+
+}
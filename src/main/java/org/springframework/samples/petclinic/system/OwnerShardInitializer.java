@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Initializes every shard with the {@code spring.sql.init} scripts, in place of the
+ * initializer of the application's data source alone, then keeps on each shard only the
+ * sample owners that belong there. The ids of the owners, pets and visits that each shard
+ * adds from then on count up in steps of the number of shards from a start that belongs
+ * to the shard, so that a new owner can be found on the shard of its id and no two shards
+ * hand out the same id.
+ * <p>
+ * Only shards that have no owners table yet are loaded and partitioned like this. Shards
+ * created on an earlier start only get the schema scripts again, as the data scripts
+ * would add back the sample owners that belong to other shards. This suits schema scripts
+ * that keep existing tables, like the PostgreSQL ones; in-memory H2 shards always start
+ * out empty.
+ */
+class OwnerShardInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+	private static final List<String> TABLES = List.of("owners", "pets", "visits");
+
+	private final OwnerShards shards;
+
+	private final SqlInitializationProperties properties;
+
+	private final SqlInitializationProperties schemaProperties;
+
+	private ResourceLoader resourceLoader;
+
+	OwnerShardInitializer(OwnerShards shards, SqlInitializationProperties properties) {
+		super(shards.get(0), properties);
+		this.shards = shards;
+		this.properties = properties;
+		this.schemaProperties = schemaOnly(properties);
+	}
+
+	@Override
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		super.setResourceLoader(resourceLoader);
+		this.resourceLoader = resourceLoader;
+	}
+
+	@Override
+	public boolean initializeDatabase() {
+		boolean initializedAny = false;
+		List<Integer> created = new ArrayList<>();
+		for (int shard = 0; shard < this.shards.size(); shard++) {
+			DataSource dataSource = this.shards.get(shard);
+			boolean existing = hasOwnersTable(dataSource);
+			SqlDataSourceScriptDatabaseInitializer initializer = new SqlDataSourceScriptDatabaseInitializer(dataSource,
+					existing ? this.schemaProperties : this.properties);
+			initializer.setResourceLoader(this.resourceLoader);
+			if (initializer.initializeDatabase()) {
+				initializedAny = true;
+				if (!existing) {
+					created.add(shard);
+				}
+			}
+		}
+		if (!created.isEmpty()) {
+			partition(created);
+		}
+		return initializedAny;
+	}
+
+	private static boolean hasOwnersTable(DataSource dataSource) {
+		try {
+			new JdbcTemplate(dataSource).queryForList("SELECT id FROM owners WHERE 1 = 0");
+			return true;
+		}
+		catch (DataAccessException ex) {
+			return false;
+		}
+	}
+
+	private static SqlInitializationProperties schemaOnly(SqlInitializationProperties properties) {
+		SqlInitializationProperties schema = new SqlInitializationProperties();
+		schema.setSchemaLocations(properties.getSchemaLocations());
+		schema.setPlatform(properties.getPlatform());
+		schema.setUsername(properties.getUsername());
+		schema.setPassword(properties.getPassword());
+		schema.setContinueOnError(properties.isContinueOnError());
+		schema.setSeparator(properties.getSeparator());
+		schema.setEncoding(properties.getEncoding());
+		schema.setMode(properties.getMode());
+		return schema;
+	}
+
+	private void partition(List<Integer> initialized) {
+		int count = this.shards.size();
+		long[] maxIds = new long[TABLES.size()];
+		for (int shard : initialized) {
+			JdbcTemplate jdbc = new JdbcTemplate(this.shards.get(shard));
+			for (int i = 0; i < TABLES.size(); i++) {
+				Long maxId = jdbc.queryForObject("SELECT MAX(id) FROM " + TABLES.get(i), Long.class);
+				maxIds[i] = Math.max(maxIds[i], maxId != null ? maxId : 0);
+			}
+		}
+		for (int shard : initialized) {
+			JdbcTemplate jdbc = new JdbcTemplate(this.shards.get(shard));
+			jdbc.update("DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE MOD(owner_id, ?) <> ?)", count,
+					shard);
+			jdbc.update("DELETE FROM pets WHERE MOD(owner_id, ?) <> ?", count, shard);
+			jdbc.update("DELETE FROM owners WHERE MOD(id, ?) <> ?", count, shard);
+			for (int i = 0; i < TABLES.size(); i++) {
+				long start = maxIds[i] + 1 + Math.floorMod(shard - (maxIds[i] + 1), count);
+				jdbc.execute("ALTER TABLE " + TABLES.get(i) + " ALTER COLUMN id RESTART WITH " + start);
+				jdbc.execute("ALTER TABLE " + TABLES.get(i) + " ALTER COLUMN id SET INCREMENT BY " + count);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Routes the calls to the {@link OwnerRepository} to the {@link OwnerShards}; the
+ * repository only declares methods that can be routed. A call for one owner, by id or by
+ * entity, goes to that owner's shard and a new owner goes to the shards in turn. Pet
+ * types, which every shard holds a copy of, are read from shard 0. Other queries go to
+ * every shard at once and their results are gathered; a page is merged from the first
+ * {@code (page + 1) * size} owners of every shard, in the order of the owner ids.
+ * <p>
+ * Results are only ordered by id. Each shard orders strings by its own collation and
+ * places nulls as its database does, and the merge could not reproduce either, so any
+ * other sort is rejected rather than giving an order that no single database would.
+ * <p>
+ * Each shard's part runs in a transaction of its own ({@code REQUIRES_NEW}) on a
+ * connection of its own, never in the caller's. A read made inside a caller's transaction
+ * therefore takes a second connection and does not see that transaction's uncommitted
+ * changes. A write would commit on its shard regardless of whether the caller's
+ * transaction later rolls back, so writes inside a transaction are refused.
+ */
+class OwnerShardRouter implements MethodInterceptor {
+
+	private final OwnerShards shards;
+
+	private final TransactionTemplate reads;
+
+	private final TransactionTemplate writes;
+
+	OwnerShardRouter(OwnerShards shards, PlatformTransactionManager transactionManager) {
+		this.shards = shards;
+		this.reads = new TransactionTemplate(transactionManager);
+		this.reads.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.reads.setReadOnly(true);
+		this.writes = new TransactionTemplate(transactionManager);
+		this.writes.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+		Object target = invocation.getThis();
+		Object[] args = invocation.getArguments();
+		String name = method.getName();
+		if (ReflectionUtils.isObjectMethod(method)) {
+			return invocation.proceed();
+		}
+		if (name.equals("findPetTypes")) {
+			return this.shards.on(0, () -> call(this.reads, target, method, args));
+		}
+		if (args.length == 1 && args[0] instanceof Owner owner) {
+			return write(owner, target, method, args);
+		}
+		if (name.equals("findById")) {
+			return this.shards.on(this.shards.shardOf((Integer) args[0]), () -> call(this.reads, target, method, args));
+		}
+		if (!name.startsWith("save") && !name.startsWith("delete")) {
+			Class<?> type = method.getReturnType();
+			if (Page.class.isAssignableFrom(type)) {
+				return page(target, method, args);
+			}
+			if (List.class.isAssignableFrom(type)) {
+				return list(target, method, args);
+			}
+			if (type == long.class) {
+				return this.shards.onEach(shard -> (Long) call(this.reads, target, method, args))
+					.stream()
+					.mapToLong(Long::longValue)
+					.sum();
+			}
+		}
+		throw new UnsupportedOperationException(name + " is not supported on owners sharded across databases");
+	}
+
+	private Object write(Owner owner, Object target, Method method, Object[] args) {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException(method.getName() + " of an owner sharded across databases cannot take "
+					+ "part in the caller's transaction; call it outside of one");
+		}
+		if (!owner.isNew()) {
+			return this.shards.on(this.shards.shardOf(owner.getId()), () -> call(this.writes, target, method, args));
+		}
+		int shard = this.shards.nextShard();
+		return this.shards.on(shard, () -> this.writes.execute(status -> {
+			Object result = invoke(target, method, args);
+			if (owner.getId() != null && this.shards.shardOf(owner.getId()) != shard) {
+				// Rolled back, or the owner could never be found again
+				throw new IllegalStateException("Shard " + shard + " gave new owner the id " + owner.getId()
+						+ "; its owners id column must count up in steps of " + this.shards.size());
+			}
+			return result;
+		}));
+	}
+
+	private Page<?> page(Object target, Method method, Object[] args) {
+		int index = indexOf(args, Pageable.class);
+		Pageable pageable = (Pageable) args[index];
+		Sort sort = pageable.getSort().and(Sort.by("id"));
+		Comparator<Object> order = comparator(sort);
+		Object[] shardArgs = args.clone();
+		shardArgs[index] = pageable.isPaged()
+				? PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), sort) : Pageable.unpaged(sort);
+		List<Page<?>> pages = this.shards.onEach(shard -> (Page<?>) call(this.reads, target, method, shardArgs));
+		long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+		long skip = pageable.isPaged() ? pageable.getOffset() : 0;
+		int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+		List<?> content = merge(pages.stream().map(Page::getContent).toList(), order, skip, limit);
+		return new PageImpl<>(content, pageable, total);
+	}
+
+	private List<?> list(Object target, Method method, Object[] args) {
+		int index = indexOf(args, Sort.class);
+		Comparator<Object> order = (index >= 0) ? comparator((Sort) args[index]) : null;
+		List<Object> all = new ArrayList<>();
+		this.shards.onEach(shard -> (List<?>) call(this.reads, target, method, args)).forEach(all::addAll);
+		if (order != null) {
+			all.sort(order);
+		}
+		return all;
+	}
+
+	private Object call(TransactionTemplate transaction, Object target, Method method, Object[] args) {
+		return transaction.execute(status -> invoke(target, method, args));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) {
+		try {
+			return AopUtils.invokeJoinpointUsingReflection(target, method, args);
+		}
+		catch (RuntimeException | Error ex) {
+			throw ex;
+		}
+		catch (Throwable ex) {
+			throw new UndeclaredThrowableException(ex);
+		}
+	}
+
+	private static int indexOf(Object[] args, Class<?> type) {
+		for (int i = 0; i < args.length; i++) {
+			if (type.isInstance(args[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Merges lists that are each sorted in the given order, skipping the first
+	 * {@code skip} elements and returning at most {@code limit} of the rest.
+	 */
+	static <T> List<T> merge(List<? extends List<? extends T>> sorted, Comparator<? super T> order, long skip,
+			int limit) {
+		PriorityQueue<Map.Entry<T, Iterator<? extends T>>> heads = new PriorityQueue<>(Map.Entry.comparingByKey(order));
+		for (List<? extends T> list : sorted) {
+			Iterator<? extends T> iterator = list.iterator();
+			if (iterator.hasNext()) {
+				heads.add(Map.entry(iterator.next(), iterator));
+			}
+		}
+		List<T> merged = new ArrayList<>();
+		for (long position = 0; !heads.isEmpty() && merged.size() < limit; position++) {
+			Map.Entry<T, Iterator<? extends T>> head = heads.poll();
+			if (position >= skip) {
+				merged.add(head.getKey());
+			}
+			if (head.getValue().hasNext()) {
+				heads.add(Map.entry(head.getValue().next(), head.getValue()));
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Compares entities by id in the direction of the given sort, which every database
+	 * orders the same way as Java does.
+	 * @throws IllegalArgumentException if the sort is by anything else
+	 */
+	static Comparator<Object> comparator(Sort sort) {
+		Sort.Order first = null;
+		for (Sort.Order order : sort) {
+			if (!order.getProperty().equals("id") || order.isIgnoreCase()
+					|| order.getNullHandling() != Sort.NullHandling.NATIVE) {
+				throw new IllegalArgumentException("Owners sharded across databases can only be sorted by id, not by "
+						+ order + "; their databases may order it differently");
+			}
+			first = (first != null) ? first : order;
+		}
+		Comparator<Object> byId = Comparator.comparing(entity -> ((BaseEntity) entity).getId());
+		return (first != null && first.isDescending()) ? byId.reversed() : byId;
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.hibernate.engine.jdbc.connections.spi.AbstractDataSourceBasedMultiTenantConnectionProviderImpl;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * The databases that owners, with their pets and visits, are partitioned across, see
+ * {@link OwnerShardConfiguration}. Shard 0 is the application's data source, which also
+ * holds everything else. An owner lives on the shard of its id modulo the number of
+ * shards, so that each shard can generate ids for its own new owners. As the Hibernate
+ * connection provider and tenant resolver, it opens every session on the shard that is
+ * {@link #on(int, Supplier) current} at the time, or on shard 0.
+ */
+public class OwnerShards extends AbstractDataSourceBasedMultiTenantConnectionProviderImpl<Integer>
+		implements CurrentTenantIdentifierResolver<Integer>, DisposableBean {
+
+	private static final ThreadLocal<Integer> currentShard = new NamedThreadLocal<>("Current owner shard");
+
+	private final List<DataSource> shards;
+
+	private final ThreadPoolTaskExecutor executor;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Create a new instance.
+	 * @param shards the shards, starting with the application's data source
+	 * @param threads how many shard queries may run at once
+	 */
+	public OwnerShards(List<DataSource> shards, int threads) {
+		this.shards = List.copyOf(shards);
+		this.executor = new ThreadPoolTaskExecutor();
+		this.executor.setCorePoolSize(threads);
+		this.executor.setMaxPoolSize(threads);
+		this.executor.setThreadNamePrefix("owner-shard-");
+		this.executor.initialize();
+	}
+
+	/**
+	 * Returns the number of shards.
+	 */
+	public int size() {
+		return this.shards.size();
+	}
+
+	/**
+	 * Returns the shard that the owner with the given id lives on.
+	 */
+	public int shardOf(int ownerId) {
+		return Math.floorMod(ownerId, this.shards.size());
+	}
+
+	/**
+	 * Returns the shard for a new owner, taking the shards in turn.
+	 */
+	int nextShard() {
+		return Math.floorMod(this.next.getAndIncrement(), this.shards.size());
+	}
+
+	DataSource get(int shard) {
+		return this.shards.get(shard);
+	}
+
+	/**
+	 * Runs the given action with sessions opened on the given shard.
+	 */
+	<T> T on(int shard, Supplier<T> action) {
+		Integer previous = currentShard.get();
+		currentShard.set(shard);
+		try {
+			return action.get();
+		}
+		finally {
+			if (previous != null) {
+				currentShard.set(previous);
+			}
+			else {
+				currentShard.remove();
+			}
+		}
+	}
+
+	/**
+	 * Runs the given action on every shard at once, returning the results in the order of
+	 * the shards.
+	 */
+	<T> List<T> onEach(IntFunction<T> action) {
+		// A browser that has just written reads its own writes on every shard
+		boolean pinned = ReadReplicas.isPinnedToPrimary();
+		SqlStatementCounter statements = SqlStatementCounter.current();
+		List<CompletableFuture<T>> results = IntStream.range(0, this.shards.size())
+			.mapToObj(shard -> CompletableFuture.supplyAsync(() -> {
+				if (pinned) {
+					ReadReplicas.pinToPrimary();
+				}
+				SqlStatementCounter.attach(statements);
+				try {
+					return on(shard, () -> action.apply(shard));
+				}
+				finally {
+					ReadReplicas.release();
+					SqlStatementCounter.attach(null);
+				}
+			}, this.executor))
+			.toList();
+		try {
+			return results.stream().map(CompletableFuture::join).toList();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	protected DataSource selectAnyDataSource() {
+		return this.shards.get(0);
+	}
+
+	@Override
+	protected DataSource selectDataSource(Integer shard) {
+		return this.shards.get(shard);
+	}
+
+	@Override
+	public Integer resolveCurrentTenantIdentifier() {
+		Integer shard = currentShard.get();
+		return shard != null ? shard : 0;
+	}
+
+	@Override
+	public boolean validateExistingCurrentSessions() {
+		return false;
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		this.executor.shutdown();
+		// The application's data source is closed with the context
+		for (DataSource shard : this.shards.subList(1, this.shards.size())) {
+			if (shard instanceof Closeable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends read-only transactions to the replicas listed in
+ * {@code petclinic.datasource.replicas} and everything else to the primary. The
+ * application's data source becomes a {@link LazyConnectionDataSourceProxy} that only
+ * takes a connection on the first statement, from the {@link ReadReplicas} if the
+ * transaction manager has marked the connection read-only by then. Replica pools use the
+ * primary's credentials and {@code spring.datasource.hikari} settings. A browser that has
+ * just written reads from the primary for {@code petclinic.datasource.read-your-writes},
+ * see {@link ReadYourWritesInterceptor}, and the {@link FragmentCache} does not keep what
+ * was rendered from replicas that may not have caught up with an invalidation.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.datasource.replicas")
+class ReadReplicaConfiguration implements WebMvcConfigurer {
+
+	private final Duration readYourWrites;
+
+	ReadReplicaConfiguration(@Value("${petclinic.datasource.read-your-writes:10s}") Duration readYourWrites) {
+		this.readYourWrites = readYourWrites;
+	}
+
+	@Bean
+	static BeanPostProcessor readReplicaRouting(ObjectProvider<ReadReplicas> replicas) {
+		return new ReadReplicaRouting(replicas);
+	}
+
+	@Bean
+	ReadReplicas readReplicas(DataSourceProperties properties, Environment environment,
+			ObjectProvider<MeterRegistry> registry, FragmentCache fragmentCache,
+			@Value("${petclinic.datasource.replicas}") String[] urls,
+			@Value("${petclinic.datasource.replica-max-lag:5s}") Duration maxLag,
+			@Value("${petclinic.datasource.replica-lag-query:}") String lagQuery) {
+		List<DataSource> replicas = new ArrayList<>();
+		for (int i = 0; i < urls.length; i++) {
+			HikariDataSource replica = HikariPools.create(properties, environment, registry, urls[i],
+					"replica-" + (i + 1));
+			replica.setReadOnly(true);
+			// A replica that is down at startup is skipped until it answers
+			replica.setInitializationFailTimeout(-1);
+			replicas.add(replica);
+		}
+		// Pages rendered from a replica may show data from before a recent write
+		fragmentCache.setReadLag(maxLag);
+		return new ReadReplicas(replicas, maxLag, lagQuery);
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new ReadYourWritesInterceptor(this.readYourWrites));
+	}
+
+	/**
+	 * Wraps the application's data source before any other post-processor, so that
+	 * wrappers such as the {@link StatementCountingDataSource} see the replicas'
+	 * connections too.
+	 */
+	private static final class ReadReplicaRouting implements BeanPostProcessor, Ordered {
+
+		private final ObjectProvider<ReadReplicas> replicas;
+
+		ReadReplicaRouting(ObjectProvider<ReadReplicas> replicas) {
+			this.replicas = replicas;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource primary && !(bean instanceof LazyConnectionDataSourceProxy)) {
+				LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+				routing.setReadOnlyDataSource(this.replicas.getObject().readOnlyDataSource(primary));
+				return routing;
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.HIGHEST_PRECEDENCE;
+		}
+
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+/**
+ * Replicas of the primary database that serve the read-only transactions, see
+ * {@link ReadReplicaConfiguration}. Each read-only connection comes from the next replica
+ * in turn that is available and no further behind the primary than {@code maxLag}, as
+ * measured by the {@code lagQuery} every
+ * {@code petclinic.datasource.replica-check-interval}. When there is none, or the current
+ * thread is {@link #pinToPrimary() pinned} to the primary, it comes from the primary.
+ */
+public class ReadReplicas implements DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReadReplicas.class);
+
+	private static final ThreadLocal<Boolean> pinnedToPrimary = new NamedThreadLocal<>("Reads pinned to primary");
+
+	private final List<Replica> replicas;
+
+	private final Duration maxLag;
+
+	private final String lagQuery;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Create a new instance.
+	 * @param replicas the replica data sources
+	 * @param maxLag how far behind the primary a replica may be and still serve reads
+	 * @param lagQuery a query returning how many seconds a replica is behind the primary,
+	 * or empty to only check that replicas answer
+	 */
+	public ReadReplicas(List<DataSource> replicas, Duration maxLag, String lagQuery) {
+		this.replicas = replicas.stream().map(Replica::new).toList();
+		this.maxLag = maxLag;
+		this.lagQuery = lagQuery;
+	}
+
+	/**
+	 * Sends the reads of the current thread to the primary until {@link #release()}, e.g.
+	 * so that a user reads their own writes.
+	 */
+	public static void pinToPrimary() {
+		pinnedToPrimary.set(Boolean.TRUE);
+	}
+
+	/**
+	 * Lets the reads of the current thread go to the replicas again.
+	 */
+	public static void release() {
+		pinnedToPrimary.remove();
+	}
+
+	/**
+	 * Whether the reads of the current thread go to the primary.
+	 */
+	static boolean isPinnedToPrimary() {
+		return pinnedToPrimary.get() != null;
+	}
+
+	/**
+	 * Returns a data source for read-only connections, falling back to the given primary.
+	 */
+	DataSource readOnlyDataSource(DataSource primary) {
+		return new ReadOnlyDataSource(primary);
+	}
+
+	/**
+	 * Measures the lag of every replica, making those that are back in sync, or answer
+	 * again, available for reads.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.datasource.replica-check-interval:PT5S}")
+	public void checkReplicas() {
+		for (Replica replica : this.replicas) {
+			replica.check();
+		}
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		for (Replica replica : this.replicas) {
+			if (replica.dataSource instanceof Closeable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	private Connection getConnection(DataSource primary) throws SQLException {
+		if (pinnedToPrimary.get() == null) {
+			int size = this.replicas.size();
+			int first = Math.floorMod(this.next.getAndIncrement(), size);
+			for (int i = 0; i < size; i++) {
+				Replica replica = this.replicas.get((first + i) % size);
+				if (replica.usable()) {
+					try {
+						return replica.dataSource.getConnection();
+					}
+					catch (SQLException ex) {
+						logger.warn("Replica unavailable, reading from another one or the primary", ex);
+						replica.available = false;
+					}
+				}
+			}
+		}
+		return primary.getConnection();
+	}
+
+	/**
+	 * A replica and its state as of its last check.
+	 */
+	private final class Replica {
+
+		private final DataSource dataSource;
+
+		private volatile boolean available = true;
+
+		private volatile Duration lag = Duration.ZERO;
+
+		Replica(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		boolean usable() {
+			return this.available && this.lag.compareTo(ReadReplicas.this.maxLag) <= 0;
+		}
+
+		void check() {
+			try (Connection connection = this.dataSource.getConnection()) {
+				if (StringUtils.hasText(ReadReplicas.this.lagQuery)) {
+					try (Statement statement = connection.createStatement();
+							ResultSet result = statement.executeQuery(ReadReplicas.this.lagQuery)) {
+						this.lag = result.next() ? Duration.ofMillis(Math.round(result.getDouble(1) * 1000))
+								: Duration.ZERO;
+					}
+				}
+				this.available = true;
+			}
+			catch (SQLException ex) {
+				logger.debug("Replica check failed", ex);
+				this.available = false;
+			}
+		}
+
+	}
+
+	/**
+	 * The replicas as a data source.
+	 */
+	private final class ReadOnlyDataSource extends AbstractDataSource {
+
+		private final DataSource primary;
+
+		ReadOnlyDataSource(DataSource primary) {
+			this.primary = primary;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return ReadReplicas.this.getConnection(this.primary);
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return this.primary.getConnection(username, password);
+		}
+
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.WebUtils;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Pins the reads of a browser to the primary database for a while after it wrote, so that
+ * the page it is redirected to after saving an owner, pet or visit shows the change even
+ * if the replicas have not caught up yet. Any request other than a GET, HEAD or OPTIONS
+ * is taken as a write and sets a cookie that expires after the window; the requests
+ * carrying it read from the primary.
+ */
+class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+	static final String COOKIE_NAME = "PETCLINIC_PRIMARY";
+
+	private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+	private final Duration window;
+
+	ReadYourWritesInterceptor(Duration window) {
+		this.window = window;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		boolean write = !SAFE_METHODS.contains(request.getMethod());
+		if (write) {
+			Cookie cookie = new Cookie(COOKIE_NAME, "1");
+			cookie.setPath("/");
+			cookie.setMaxAge((int) this.window.toSeconds());
+			cookie.setHttpOnly(true);
+			response.addCookie(cookie);
+		}
+		if (write || WebUtils.getCookie(request, COOKIE_NAME) != null) {
+			ReadReplicas.pinToPrimary();
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		ReadReplicas.release();
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.springframework.web.servlet.resource.VersionStrategy;
+import org.springframework.web.util.UrlPathHelper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sets how long browsers may cache a static resource by the URL it was requested under. A
+ * content-hashed URL changes with the file, so it is kept as immutable for the long
+ * max-age. A plain URL, such as a font linked from a stylesheet that was served without
+ * rewriting, only gets the short one, so that a changed file still reaches browsers.
+ */
+class ResourceCacheControlInterceptor implements HandlerInterceptor {
+
+	private final VersionStrategy versionStrategy;
+
+	private final ObjectProvider<ResourceUrlProvider> resourceUrlProvider;
+
+	private final String versionedCacheControl;
+
+	private final String unversionedCacheControl;
+
+	ResourceCacheControlInterceptor(VersionStrategy versionStrategy,
+			ObjectProvider<ResourceUrlProvider> resourceUrlProvider, Duration versionedMaxAge,
+			Duration unversionedMaxAge) {
+		this.versionStrategy = versionStrategy;
+		this.resourceUrlProvider = resourceUrlProvider;
+		this.versionedCacheControl = CacheControl.maxAge(versionedMaxAge).cachePublic().immutable().getHeaderValue();
+		this.unversionedCacheControl = CacheControl.maxAge(unversionedMaxAge).cachePublic().getHeaderValue();
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		response.setHeader(HttpHeaders.CACHE_CONTROL,
+				isVersioned(request) ? this.versionedCacheControl : this.unversionedCacheControl);
+		return true;
+	}
+
+	/**
+	 * Whether the request is for the URL that the current content of its resource is
+	 * linked under, rather than for its plain path or an outdated version.
+	 */
+	private boolean isVersioned(HttpServletRequest request) {
+		String lookupPath = UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+		String version = this.versionStrategy.extractVersion(lookupPath);
+		if (version == null) {
+			return false;
+		}
+		ResourceUrlProvider urls = this.resourceUrlProvider.getIfAvailable();
+		return urls != null
+				&& lookupPath.equals(urls.getForLookupPath(this.versionStrategy.removeVersion(lookupPath, version)));
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hibernate statistics that also log the queries slower than a threshold. The query is
+ * logged as written, with its parameters rather than their values, and each one at most
+ * once per sample interval, with the number of slow executions since it was last logged,
+ * so that a query that is slow under load does not flood the log.
+ */
+class SlowQueryLoggingStatistics extends StatisticsImpl {
+
+	private static final Logger logger = LoggerFactory.getLogger(SlowQueryLoggingStatistics.class);
+
+	/**
+	 * Most distinct slow queries tracked, in case queries are built with their values
+	 * inlined.
+	 */
+	private static final int MAX_SAMPLES = 1000;
+
+	private final long thresholdMillis;
+
+	private final long sampleIntervalNanos;
+
+	private final LongAdder slowQueries = new LongAdder();
+
+	private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+
+	SlowQueryLoggingStatistics(SessionFactoryImplementor sessionFactory, Duration threshold, Duration sampleInterval) {
+		super(sessionFactory);
+		this.thresholdMillis = threshold.toMillis();
+		this.sampleIntervalNanos = sampleInterval.toNanos();
+	}
+
+	/**
+	 * Returns a factory for Hibernate's {@code hibernate.stats.factory} setting.
+	 */
+	static StatisticsFactory factory(Duration threshold, Duration sampleInterval) {
+		return (sessionFactory) -> new SlowQueryLoggingStatistics(sessionFactory, threshold, sampleInterval);
+	}
+
+	/**
+	 * Returns how many query executions were slower than the threshold.
+	 */
+	long getSlowQueryCount() {
+		return this.slowQueries.sum();
+	}
+
+	@Override
+	public void queryExecuted(String hql, int rows, long time) {
+		super.queryExecuted(hql, rows, time);
+		if (time >= this.thresholdMillis && isStatisticsEnabled()) {
+			this.slowQueries.increment();
+			if (this.samples.size() >= MAX_SAMPLES) {
+				this.samples.clear();
+			}
+			long skipped = this.samples.computeIfAbsent(hql, (query) -> new Sample()).claim(this.sampleIntervalNanos);
+			if (skipped > 0) {
+				logger.warn("Slow query: {} ms, {} rows, {} more slow executions since last logged: {}", time, rows,
+						skipped, hql);
+			}
+			else if (skipped == 0) {
+				logger.warn("Slow query: {} ms, {} rows: {}", time, rows, hql);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		this.slowQueries.reset();
+		this.samples.clear();
+	}
+
+	/**
+	 * When a slow query may next be logged, and how many slow executions were not.
+	 */
+	private static final class Sample {
+
+		private final AtomicLong next = new AtomicLong(System.nanoTime());
+
+		private final LongAdder skipped = new LongAdder();
+
+		/**
+		 * Returns the slow executions skipped since the query was last logged if it is to
+		 * be logged now, or -1 if not.
+		 */
+		long claim(long intervalNanos) {
+			long now = System.nanoTime();
+			long next = this.next.get();
+			if (now - next < 0 || !this.next.compareAndSet(next, now + intervalNanos)) {
+				this.skipped.increment();
+				return -1;
+			}
+			return this.skipped.sumThenReset();
+		}
+
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.core.NamedThreadLocal;
+
+/**
+ * Counts the SQL statements that a thread runs through a
+ * {@link StatementCountingDataSource}, and the time they take, between {@link #start()}
+ * and {@link #stop()}. Statements are also grouped by fingerprint, their SQL with
+ * literals and {@code IN} lists collapsed, so that a statement run once per entity of a
+ * result shows up as one fingerprint run many times. Counters nest: a statement counts
+ * towards every counter started on the thread.
+ */
+public final class SqlStatementCounter {
+
+	private static final ThreadLocal<SqlStatementCounter> current = new NamedThreadLocal<>("SQL statement counter");
+
+	private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+
+	private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+	private static final Pattern IN_LIST = Pattern.compile("(?i)\\b(in)\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final SqlStatementCounter parent;
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	private final AtomicLong nanos = new AtomicLong();
+
+	private final Map<String, Integer> fingerprints = new LinkedHashMap<>();
+
+	private SqlStatementCounter(SqlStatementCounter parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Start counting the statements of the current thread.
+	 */
+	public static SqlStatementCounter start() {
+		SqlStatementCounter counter = new SqlStatementCounter(current.get());
+		current.set(counter);
+		return counter;
+	}
+
+	/**
+	 * Stop counting, leaving the counter that was started before this one, if any.
+	 */
+	public void stop() {
+		attach(this.parent);
+	}
+
+	/**
+	 * Returns the innermost counter of the current thread, or {@code null}.
+	 */
+	static SqlStatementCounter current() {
+		return current.get();
+	}
+
+	/**
+	 * Counts the statements of the current thread with the given counter, e.g. for work
+	 * handed to another thread, or stops counting them if it is {@code null}.
+	 */
+	static void attach(SqlStatementCounter counter) {
+		if (counter != null) {
+			current.set(counter);
+		}
+		else {
+			current.remove();
+		}
+	}
+
+	static void record(String sql, long nanos) {
+		SqlStatementCounter counter = current.get();
+		if (counter == null) {
+			return;
+		}
+		String fingerprint = fingerprint(sql);
+		for (; counter != null; counter = counter.parent) {
+			counter.add(fingerprint, nanos);
+		}
+	}
+
+	static String fingerprint(String sql) {
+		if (sql == null) {
+			return "(batch)";
+		}
+		String fingerprint = STRING.matcher(sql).replaceAll("?");
+		fingerprint = NUMBER.matcher(fingerprint).replaceAll("?");
+		fingerprint = WHITESPACE.matcher(fingerprint).replaceAll(" ").trim();
+		return IN_LIST.matcher(fingerprint).replaceAll("$1 (...)");
+	}
+
+	private void add(String fingerprint, long nanos) {
+		this.count.incrementAndGet();
+		this.nanos.addAndGet(nanos);
+		synchronized (this.fingerprints) {
+			this.fingerprints.merge(fingerprint, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Returns the number of statements run.
+	 */
+	public int getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Returns the time spent running statements.
+	 */
+	public Duration getTime() {
+		return Duration.ofNanos(this.nanos.get());
+	}
+
+	/**
+	 * Returns how many times each fingerprint was run, in the order they were first run.
+	 */
+	public Map<String, Integer> getFingerprints() {
+		synchronized (this.fingerprints) {
+			return new LinkedHashMap<>(this.fingerprints);
+		}
+	}
+
+	/**
+	 * Returns how many times the most repeated fingerprint was run.
+	 */
+	public int getMaxRepeats() {
+		return getFingerprints().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+	}
+
+	@Override
+	public String toString() {
+		return getCount() + " statements in " + getTime().toMillis() + " ms"
+				+ getFingerprints().entrySet()
+					.stream()
+					.map(entry -> "\n  " + entry.getValue() + " x " + entry.getKey())
+					.collect(Collectors.joining());
+	}
+
+}
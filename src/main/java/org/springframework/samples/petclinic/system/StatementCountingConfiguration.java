@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the SQL statements that each request runs, and the time they take, as the
+ * {@code petclinic.http.sql.statements} and {@code petclinic.http.sql.time} meters,
+ * tagged with the request's method and URI pattern. Requests that look like N+1 queries
+ * are counted by {@code petclinic.http.sql.repeated} and logged, as are slow requests.
+ * The application's data source counts the statements of its connections, including those
+ * of the read replicas it routes to; shard pools are wrapped as they are created.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.sql.counting.enabled", matchIfMissing = true)
+class StatementCountingConfiguration {
+
+	@Bean
+	static BeanPostProcessor statementCounting() {
+		return new StatementCountingPostProcessor();
+	}
+
+	@Bean
+	StatementCountingFilter statementCountingFilter(MeterRegistry registry, ApplicationEventPublisher publisher,
+			@Value("${petclinic.sql.repeated-statement-threshold:5}") int repeatThreshold,
+			@Value("${petclinic.sql.slow-request-threshold:1s}") Duration slowThreshold,
+			@Value("${management.endpoints.web.base-path:/actuator}") String actuatorPath) {
+		return new StatementCountingFilter(registry, publisher, repeatThreshold, slowThreshold,
+				List.of("/resources/", "/webjars/", actuatorPath + "/"));
+	}
+
+	/**
+	 * Wraps the application's data source after any other post-processor, so that every
+	 * connection it hands out is counted.
+	 */
+	private static final class StatementCountingPostProcessor implements BeanPostProcessor, Ordered {
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+				return new StatementCountingDataSource(dataSource);
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.LOWEST_PRECEDENCE;
+		}
+
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A data source whose statements count towards the {@link SqlStatementCounter} of the
+ * thread that runs them, see {@link StatementCountingConfiguration}.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource implements Closeable {
+
+	public StatementCountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return counting(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return counting(super.getConnection(username, password));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (obtainTargetDataSource() instanceof Closeable closeable) {
+			closeable.close();
+		}
+	}
+
+	private static Connection counting(Connection connection) {
+		return proxy(Connection.class, connection, (method, args) -> {
+			Object result = invoke(connection, method, args);
+			if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+				String sql = args != null && args.length > 0 && args[0] instanceof String prepared ? prepared : null;
+				return counting(statement, method.getReturnType(), sql);
+			}
+			return result;
+		});
+	}
+
+	private static Object counting(Statement statement, Class<?> type, String preparedSql) {
+		return proxy(type, statement, (method, args) -> {
+			if (!method.getName().startsWith("execute")) {
+				return invoke(statement, method, args);
+			}
+			long start = System.nanoTime();
+			try {
+				return invoke(statement, method, args);
+			}
+			finally {
+				String sql = args != null && args.length > 0 && args[0] instanceof String given ? given : preparedSql;
+				SqlStatementCounter.record(sql, System.nanoTime() - start);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, Object target, Handler handler) {
+		return (T) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> switch (method.getName()) {
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					default -> handler.invoke(method, args);
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+	private interface Handler {
+
+		Object invoke(Method method, Object[] args) throws Throwable;
+
+	}
+
+}
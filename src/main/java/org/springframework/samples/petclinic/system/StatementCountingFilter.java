@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the SQL statements that each request runs, see
+ * {@link StatementCountingConfiguration}. A request that runs one statement at least
+ * {@code repeatThreshold} times, typically once per entity of a result, is logged as a
+ * likely N+1 query, and a request slower than {@code slowThreshold} is logged with the
+ * statements it ran. Every request is then published as a {@link RequestStatements}
+ * event. Requests for static resources and actuator endpoints are skipped: they are the
+ * most frequent, run none of the application's queries, and would only add work and tags.
+ */
+class StatementCountingFilter extends OncePerRequestFilter {
+
+	private static final Logger logger = LoggerFactory.getLogger(StatementCountingFilter.class);
+
+	private final MeterRegistry registry;
+
+	private final ApplicationEventPublisher publisher;
+
+	private final int repeatThreshold;
+
+	private final Duration slowThreshold;
+
+	private final List<String> excludedPaths;
+
+	private final Map<String, RequestMeters> meters = new ConcurrentHashMap<>();
+
+	StatementCountingFilter(MeterRegistry registry, ApplicationEventPublisher publisher, int repeatThreshold,
+			Duration slowThreshold, List<String> excludedPaths) {
+		this.registry = registry;
+		this.publisher = publisher;
+		this.repeatThreshold = repeatThreshold;
+		this.slowThreshold = slowThreshold;
+		this.excludedPaths = excludedPaths;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return this.excludedPaths.stream().anyMatch(path::startsWith);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		long start = System.nanoTime();
+		SqlStatementCounter statements = SqlStatementCounter.start();
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			statements.stop();
+			report(request, statements, Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+
+	private void report(HttpServletRequest request, SqlStatementCounter statements, Duration elapsed) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+		RequestMeters requestMeters = this.meters.computeIfAbsent(request.getMethod() + " " + uri,
+				key -> new RequestMeters(this.registry, request.getMethod(), uri));
+		requestMeters.statements.record(statements.getCount());
+		requestMeters.time.record(statements.getTime().toNanos(), TimeUnit.NANOSECONDS);
+		if (statements.getMaxRepeats() >= this.repeatThreshold) {
+			requestMeters.repeated.increment();
+			logger.warn("{} {} ran the same statement up to {} times, likely once per entity loaded: {}",
+					request.getMethod(), request.getRequestURI(), statements.getMaxRepeats(), statements);
+		}
+		else if (elapsed.compareTo(this.slowThreshold) >= 0) {
+			logger.warn("{} {} took {} ms with {}", request.getMethod(), request.getRequestURI(), elapsed.toMillis(),
+					statements);
+		}
+		this.publisher.publishEvent(new RequestStatements(request.getMethod(), request.getRequestURI(), statements));
+	}
+
+	/**
+	 * The statements that a request ran.
+	 */
+	record RequestStatements(String method, String path, SqlStatementCounter statements) {
+	}
+
+	private static final class RequestMeters {
+
+		private final DistributionSummary statements;
+
+		private final Timer time;
+
+		private final Counter repeated;
+
+		RequestMeters(MeterRegistry registry, String method, String uri) {
+			this.statements = DistributionSummary.builder("petclinic.http.sql.statements")
+				.description("SQL statements run per request")
+				.baseUnit("statements")
+				.tag("method", method)
+				.tag("uri", uri)
+				.register(registry);
+			this.time = Timer.builder("petclinic.http.sql.time")
+				.description("Time spent running SQL statements per request")
+				.tag("method", method)
+				.tag("uri", uri)
+				.register(registry);
+			this.repeated = Counter.builder("petclinic.http.sql.repeated")
+				.description("Requests that ran the same SQL statement repeatedly, likely N+1 queries")
+				.tag("method", method)
+				.tag("uri", uri)
+				.register(registry);
+		}
+
+	}
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.springframework.samples.petclinic.system.BulkInserter.Column.date;
+import static org.springframework.samples.petclinic.system.BulkInserter.Column.integer;
+import static org.springframework.samples.petclinic.system.BulkInserter.Column.text;
+import static org.springframework.samples.petclinic.system.BulkInserter.Column.timestamp;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.samples.petclinic.system.BulkInserter.Table;
+
+/**
+ * Generates a large, realistic dataset on top of the sample data: owners with one to six
+ * pets, visits spread over up to ten years of each pet's life, notification schedules for
+ * owners who asked for reminders, and vets with specialties.
+ * <p>
+ * Generation is deterministic: every value is drawn from a {@link Random} seeded with
+ * {@link Spec#seed()}, and dates are relative to {@link Spec#referenceDate()}, so the
+ * same spec on the same starting data always produces the same rows. Ids are assigned
+ * explicitly after the existing ones, and rows are written in chunks through the bulk
+ * path of the database, see {@link BulkInserter}.
+ * <p>
+ * Used at startup with {@code petclinic.datagen.owners}, see {@link SyntheticDataRunner},
+ * and directly by tests and benchmarks.
+ */
+public class SyntheticDataGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+	/**
+	 * The last names owners are given. Earlier names are more common, so that searches
+	 * match anything from a handful to many thousands of owners.
+	 */
+	public static final List<String> LAST_NAMES = List.of("Smith", "Johnson", "Garcia", "Miller", "Davis", "Rodriquez",
+			"Martinez", "Anderson", "Taylor", "Thomas", "Moore", "Jackson", "Martin", "Lee", "Harris", "Clark", "Lewis",
+			"Walker", "Hall", "Young", "King", "Wright", "Lopez", "Hill", "Scott", "Green", "Adams", "Baker", "Nelson",
+			"Carter", "Mitchell", "Perez", "Roberts", "Turner", "Phillips", "Campbell", "Parker", "Evans", "Edwards",
+			"Collins", "Stewart", "Morris", "Murphy", "Cook", "Rogers", "Morgan", "Cooper", "Peterson", "Reed",
+			"Bailey", "Coleman", "Franklin", "Escobito", "Schroeder", "McTavish", "Black", "Estaban", "Leary",
+			"Douglas", "Ortega");
+
+	private static final List<String> FIRST_NAMES = List.of("James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+			"Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+			"Thomas", "Sarah", "Carlos", "Maria", "Eduardo", "Betty", "Harold", "Jean", "Peter", "Jeff", "Helen",
+			"Rafael", "Sharon", "Henry", "Priya", "Omar", "Yuki", "Lena", "Ivy", "Kim", "Rosa", "Sam");
+
+	private static final List<String> STREETS = List.of("Main St.", "W. Liberty St.", "Cardinal Ave.", "Commerce St.",
+			"Friendly St.", "S. Fair Way", "N. Lake St.", "Lakeview Blvd.", "Grand Ave.", "Oak Dr.", "Maple Ave.",
+			"Park Pl.", "Cedar Ln.", "Elm St.", "University Ave.");
+
+	private static final List<String> CITIES = List.of("Madison", "Sun Prairie", "McFarland", "Windsor", "Monona",
+			"Waunakee", "Middleton", "Verona", "Fitchburg", "Stoughton");
+
+	private static final List<String> PET_NAMES = List.of("Leo", "Basil", "Rosy", "Jewel", "Iggy", "George", "Samantha",
+			"Max", "Lucky", "Mulligan", "Freddy", "Sly", "Bella", "Charlie", "Luna", "Daisy", "Milo", "Coco", "Rocky",
+			"Toby", "Oliver", "Cleo", "Buddy", "Nala", "Simba", "Pepper", "Ziggy", "Maple", "Biscuit", "Shadow");
+
+	private static final List<String> VISIT_DESCRIPTIONS = List.of("annual checkup", "vaccination", "rabies shot",
+			"dental cleaning", "ear infection", "skin allergy", "limping", "upset stomach", "neutered", "spayed",
+			"microchip", "follow-up");
+
+	/**
+	 * Locales of the message bundles, used for the preferred language of one in five
+	 * owners.
+	 */
+	private static final List<String> LANGUAGES = List.of("en", "de", "es", "fa", "ko", "pt", "ru", "tr");
+
+	private static final List<String> NOTIFICATION_PREFERENCES = List.of("NONE", "EMAIL", "SMS", "BOTH");
+
+	private static final int[] NOTIFICATION_PREFERENCE_WEIGHTS = { 40, 30, 10, 20 };
+
+	/**
+	 * Weights of one to six pets per owner: most households have one or two.
+	 */
+	private static final int[] PETS_PER_OWNER_WEIGHTS = { 50, 27, 12, 6, 3, 2 };
+
+	/**
+	 * Relative frequency of the pet types in the sample data; other types get
+	 * {@link #DEFAULT_TYPE_WEIGHT}.
+	 */
+	private static final Map<String, Integer> TYPE_WEIGHTS = Map.of("dog", 40, "cat", 35, "bird", 8, "hamster", 8,
+			"lizard", 5, "snake", 4);
+
+	private static final int DEFAULT_TYPE_WEIGHT = 5;
+
+	private static final int[] SPECIALTIES_PER_VET_WEIGHTS = { 40, 45, 15 };
+
+	private static final int MAX_PET_AGE_DAYS = 15 * 365;
+
+	private static final int VISIT_HISTORY_DAYS = 10 * 365;
+
+	private static final double MEAN_DAYS_BETWEEN_VISITS = 300;
+
+	/**
+	 * Visits are booked up to this far after the reference date.
+	 */
+	private static final int UPCOMING_DAYS = 90;
+
+	/**
+	 * Reminders for visits this close before the reference date have been sent.
+	 */
+	private static final int SENT_REMINDER_DAYS = 30;
+
+	private static final LocalTime REMINDER_TIME = LocalTime.of(9, 0);
+
+	private static final int OWNERS_PER_CHUNK = 1000;
+
+	private static final Table VETS = new Table("vets", integer("id"), text("first_name"), text("last_name"));
+
+	private static final Table VET_SPECIALTIES = new Table("vet_specialties", integer("vet_id"),
+			integer("specialty_id"));
+
+	private static final Table OWNERS = new Table("owners", integer("id"), text("first_name"), text("last_name"),
+			text("address"), text("city"), text("telephone"), text("email"), text("notification_preference"),
+			text("preferred_language"));
+
+	private static final Table PETS = new Table("pets", integer("id"), text("name"), date("birth_date"),
+			integer("type_id"), integer("owner_id"));
+
+	private static final Table VISITS = new Table("visits", integer("id"), integer("pet_id"), date("visit_date"),
+			text("description"));
+
+	private static final Table NOTIFICATION_SCHEDULES = new Table("notification_schedules", integer("id"),
+			text("notification_preference"), timestamp("scheduled_time"), text("status"), text("email_status"),
+			text("sms_status"), integer("visit_id"), integer("pet_id"), integer("attempt_count"));
+
+	private final DataSource dataSource;
+
+	public SyntheticDataGenerator(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Generate and insert the rows described by the given spec in chunks of
+	 * {@value #OWNERS_PER_CHUNK} owners, each committed on its own.
+	 * @param spec what to generate
+	 * @return the number of rows inserted
+	 */
+	public Summary generate(Spec spec) {
+		long start = System.nanoTime();
+		try (Connection connection = this.dataSource.getConnection()) {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				Summary summary = generate(connection, spec, start);
+				logger.info("Generated {} owners, {} pets, {} visits, {} notification schedules and {} vets in {} ms",
+						summary.owners(), summary.pets(), summary.visits(), summary.notificationSchedules(),
+						summary.vets(), summary.elapsed().toMillis());
+				return summary;
+			}
+			catch (SQLException | RuntimeException ex) {
+				connection.rollback();
+				throw ex;
+			}
+			finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		}
+		catch (SQLException ex) {
+			throw new DataAccessResourceFailureException("Failed to generate synthetic data", ex);
+		}
+	}
+
+	private Summary generate(Connection connection, Spec spec, long start) throws SQLException {
+		BulkInserter inserter = BulkInserter.forDatabase(connection.getMetaData().getDatabaseProductName());
+		Random random = new Random(spec.seed());
+		Ids ids = new Ids(nextId(connection, "vets"), nextId(connection, "owners"), nextId(connection, "pets"),
+				nextId(connection, "visits"), nextId(connection, "notification_schedules"));
+		List<Integer> specialtyIds = queryIds(connection, "SELECT id FROM specialties ORDER BY id");
+		List<Integer> typeIds = new ArrayList<>();
+		List<Integer> typeWeights = new ArrayList<>();
+		try (PreparedStatement statement = connection.prepareStatement("SELECT id, name FROM types ORDER BY id");
+				ResultSet types = statement.executeQuery()) {
+			while (types.next()) {
+				typeIds.add(types.getInt(1));
+				typeWeights.add(TYPE_WEIGHTS.getOrDefault(types.getString(2), DEFAULT_TYPE_WEIGHT));
+			}
+		}
+		if (typeIds.isEmpty()) {
+			throw new IllegalStateException("Pet types must exist before generating data");
+		}
+		int[] typeWeightArray = typeWeights.stream().mapToInt(Integer::intValue).toArray();
+
+		List<Object[]> vets = new ArrayList<>(spec.vets());
+		List<Object[]> vetSpecialties = new ArrayList<>();
+		for (int i = 0; i < spec.vets(); i++) {
+			int vetId = ids.vet++;
+			vets.add(new Object[] { vetId, pick(random, FIRST_NAMES), pick(random, LAST_NAMES) });
+			int specialties = Math.min(weighted(random, SPECIALTIES_PER_VET_WEIGHTS), specialtyIds.size());
+			int first = specialtyIds.isEmpty() ? 0 : random.nextInt(specialtyIds.size());
+			for (int j = 0; j < specialties; j++) {
+				vetSpecialties.add(new Object[] { vetId, specialtyIds.get((first + j) % specialtyIds.size()) });
+			}
+		}
+		inserter.insert(connection, VETS, vets);
+		inserter.insert(connection, VET_SPECIALTIES, vetSpecialties);
+		connection.commit();
+
+		Chunk chunk = new Chunk();
+		int pets = 0;
+		int visits = 0;
+		int schedules = 0;
+		for (int i = 0; i < spec.owners(); i++) {
+			generateOwner(random, spec.referenceDate(), typeIds, typeWeightArray, ids, chunk);
+			if (chunk.owners.size() == OWNERS_PER_CHUNK || i == spec.owners() - 1) {
+				inserter.insert(connection, OWNERS, chunk.owners);
+				inserter.insert(connection, PETS, chunk.pets);
+				inserter.insert(connection, VISITS, chunk.visits);
+				inserter.insert(connection, NOTIFICATION_SCHEDULES, chunk.schedules);
+				connection.commit();
+				pets += chunk.pets.size();
+				visits += chunk.visits.size();
+				schedules += chunk.schedules.size();
+				chunk = new Chunk();
+			}
+		}
+
+		inserter.restartIdentity(connection, "vets", ids.vet);
+		inserter.restartIdentity(connection, "owners", ids.owner);
+		inserter.restartIdentity(connection, "pets", ids.pet);
+		inserter.restartIdentity(connection, "visits", ids.visit);
+		inserter.restartIdentity(connection, "notification_schedules", ids.schedule);
+		connection.commit();
+		return new Summary(spec.owners(), pets, visits, schedules, spec.vets(),
+				Duration.ofNanos(System.nanoTime() - start));
+	}
+
+	private void generateOwner(Random random, LocalDate referenceDate, List<Integer> typeIds, int[] typeWeights,
+			Ids ids, Chunk chunk) {
+		int ownerId = ids.owner++;
+		String firstName = pick(random, FIRST_NAMES);
+		String lastName = LAST_NAMES.get((int) (LAST_NAMES.size() * Math.pow(random.nextDouble(), 2)));
+		String address = (1 + random.nextInt(9999)) + " " + pick(random, STREETS);
+		String city = pick(random, CITIES);
+		String telephone = String.format("608%07d", random.nextInt(10_000_000));
+		String email = (firstName + "." + lastName + ownerId + "@example.com").toLowerCase();
+		String preference = NOTIFICATION_PREFERENCES.get(weighted(random, NOTIFICATION_PREFERENCE_WEIGHTS));
+		String language = (random.nextInt(5) == 0) ? pick(random, LANGUAGES) : null;
+		chunk.owners
+			.add(new Object[] { ownerId, firstName, lastName, address, city, telephone, email, preference, language });
+
+		int pets = 1 + weighted(random, PETS_PER_OWNER_WEIGHTS);
+		for (int i = 0; i < pets; i++) {
+			int petId = ids.pet++;
+			LocalDate birthDate = referenceDate.minusDays(random.nextInt(MAX_PET_AGE_DAYS));
+			chunk.pets.add(new Object[] { petId, pick(random, PET_NAMES), Date.valueOf(birthDate),
+					typeIds.get(weighted(random, typeWeights)), ownerId });
+
+			LocalDate visitDate = birthDate.isAfter(referenceDate.minusDays(VISIT_HISTORY_DAYS)) ? birthDate
+					: referenceDate.minusDays(VISIT_HISTORY_DAYS);
+			LocalDate lastVisitDate = referenceDate.plusDays(UPCOMING_DAYS);
+			while (true) {
+				// Exponential gaps between visits, at least a day apart
+				visitDate = visitDate
+					.plusDays(1 + (long) (-Math.log(1 - random.nextDouble()) * MEAN_DAYS_BETWEEN_VISITS));
+				if (visitDate.isAfter(lastVisitDate)) {
+					break;
+				}
+				int visitId = ids.visit++;
+				chunk.visits
+					.add(new Object[] { visitId, petId, Date.valueOf(visitDate), pick(random, VISIT_DESCRIPTIONS) });
+				if (!preference.equals("NONE") && visitDate.isAfter(referenceDate.minusDays(SENT_REMINDER_DAYS))) {
+					chunk.schedules.add(schedule(ids.schedule++, preference, visitDate, referenceDate, visitId, petId));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A reminder at 9:00 the day before the visit: pending for upcoming visits, sent on
+	 * every requested channel for recent ones.
+	 */
+	private static Object[] schedule(int id, String preference, LocalDate visitDate, LocalDate referenceDate,
+			int visitId, int petId) {
+		Timestamp scheduledTime = Timestamp.valueOf(visitDate.minusDays(1).atTime(REMINDER_TIME));
+		if (visitDate.isAfter(referenceDate)) {
+			return new Object[] { id, preference, scheduledTime, "PENDING", null, null, visitId, petId, 0 };
+		}
+		String emailStatus = (preference.equals("EMAIL") || preference.equals("BOTH")) ? "SENT" : null;
+		String smsStatus = (preference.equals("SMS") || preference.equals("BOTH")) ? "SENT" : null;
+		return new Object[] { id, preference, scheduledTime, "SENT", emailStatus, smsStatus, visitId, petId, 1 };
+	}
+
+	private static int nextId(Connection connection, String table) throws SQLException {
+		return queryIds(connection, "SELECT COALESCE(MAX(id), 0) + 1 FROM " + table).get(0);
+	}
+
+	private static List<Integer> queryIds(Connection connection, String sql) throws SQLException {
+		List<Integer> ids = new ArrayList<>();
+		try (PreparedStatement statement = connection.prepareStatement(sql);
+				ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				ids.add(resultSet.getInt(1));
+			}
+		}
+		return ids;
+	}
+
+	private static String pick(Random random, List<String> values) {
+		return values.get(random.nextInt(values.size()));
+	}
+
+	/**
+	 * Returns an index into the given weights, drawn in proportion to them.
+	 */
+	private static int weighted(Random random, int[] weights) {
+		int total = 0;
+		for (int weight : weights) {
+			total += weight;
+		}
+		int ticket = random.nextInt(total);
+		for (int i = 0; i < weights.length; i++) {
+			ticket -= weights[i];
+			if (ticket < 0) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("Ticket outside the total weight");
+	}
+
+	/**
+	 * What to generate.
+	 *
+	 * @param owners the number of owners, each with their pets, visits and notification
+	 * schedules
+	 * @param vets the number of vets
+	 * @param seed the seed of the random generator
+	 * @param referenceDate the date the data is generated as of: pets are born and visits
+	 * take place before it, apart from visits booked for the next {@value #UPCOMING_DAYS}
+	 * days
+	 */
+	public record Spec(int owners, int vets, long seed, LocalDate referenceDate) {
+
+	}
+
+	/**
+	 * The number of rows inserted into each table, and how long it took.
+	 */
+	public record Summary(int owners, int pets, int visits, int notificationSchedules, int vets, Duration elapsed) {
+
+	}
+
+	/**
+	 * The next id of each table.
+	 */
+	private static final class Ids {
+
+		private int vet;
+
+		private int owner;
+
+		private int pet;
+
+		private int visit;
+
+		private int schedule;
+
+		Ids(int vet, int owner, int pet, int visit, int schedule) {
+			this.vet = vet;
+			this.owner = owner;
+			this.pet = pet;
+			this.visit = visit;
+			this.schedule = schedule;
+		}
+
+	}
+
+	/**
+	 * The rows of the owners generated since the last insert.
+	 */
+	private static final class Chunk {
+
+		private final List<Object[]> owners = new ArrayList<>();
+
+		private final List<Object[]> pets = new ArrayList<>();
+
+		private final List<Object[]> visits = new ArrayList<>();
+
+		private final List<Object[]> schedules = new ArrayList<>();
+
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Adds synthetic data at startup when {@code petclinic.datagen.owners} is positive, e.g.
+ * {@code java -jar petclinic.jar --petclinic.datagen.owners=100000}. The data is added on
+ * every start, after the sample data, so use it with the in-memory database or on a fresh
+ * schema. {@code petclinic.datagen.reference-date} defaults to today; set it too for
+ * exactly the same rows on every run.
+ *
+ * @see SyntheticDataGenerator
+ */
+@Component
+class SyntheticDataRunner implements ApplicationRunner {
+
+	private final ObjectProvider<DataSource> dataSource;
+
+	private final int owners;
+
+	private final int vets;
+
+	private final long seed;
+
+	private final String referenceDate;
+
+	SyntheticDataRunner(ObjectProvider<DataSource> dataSource, @Value("${petclinic.datagen.owners:0}") int owners,
+			@Value("${petclinic.datagen.vets:50}") int vets, @Value("${petclinic.datagen.seed:42}") long seed,
+			@Value("${petclinic.datagen.reference-date:}") String referenceDate) {
+		this.dataSource = dataSource;
+		this.owners = owners;
+		this.vets = vets;
+		this.seed = seed;
+		this.referenceDate = referenceDate;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (this.owners <= 0) {
+			return;
+		}
+		LocalDate date = StringUtils.hasText(this.referenceDate) ? LocalDate.parse(this.referenceDate)
+				: LocalDate.now();
+		new SyntheticDataGenerator(this.dataSource.getObject())
+			.generate(new SyntheticDataGenerator.Spec(this.owners, this.vets, this.seed, date));
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+
+import org.crac.CheckpointException;
+import org.crac.Core;
+import org.crac.RestoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes a CRaC checkpoint of the warmed-up application when
+ * {@code petclinic.crac.checkpoint} is set, e.g.
+ * {@code java -XX:CRaCCheckpointTo=cr -Dpetclinic.crac.checkpoint=true -jar petclinic.jar}
+ * on a JDK with CRaC. Once ready, the application runs the {@link WarmupWorkload}
+ * {@code petclinic.crac.warmup-iterations} times, so that the JIT has compiled the hot
+ * paths, and checkpoints. Before the checkpoint Spring stops the lifecycle beans: the web
+ * server, the Hikari pool, the schedulers and the notification executors, and
+ * {@link CacheLifecycle} empties the caches. The JVM exits once the checkpoint is
+ * written. {@code java -XX:CRaCRestoreFrom=cr} resumes from there, already warm, and
+ * Spring starts them again.
+ */
+@Component
+@ConditionalOnProperty("petclinic.crac.checkpoint")
+class WarmCheckpoint implements ApplicationListener<ApplicationReadyEvent> {
+
+	private static final Logger logger = LoggerFactory.getLogger(WarmCheckpoint.class);
+
+	private final int warmupIterations;
+
+	WarmCheckpoint(@Value("${petclinic.crac.warmup-iterations:200}") int warmupIterations) {
+		this.warmupIterations = warmupIterations;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		WarmupWorkload workload = new WarmupWorkload(event.getApplicationContext(), false);
+		try {
+			for (int i = 0; i < this.warmupIterations; i++) {
+				workload.run();
+			}
+		}
+		catch (IOException ex) {
+			logger.warn("Warm-up request failed, checkpointing a partly warmed-up application", ex);
+		}
+		logger.info("Warmed up with {} iterations, taking a checkpoint", this.warmupIterations);
+		try {
+			Core.checkpointRestore();
+			logger.info("Restored from checkpoint");
+		}
+		catch (UnsupportedOperationException ex) {
+			logger.warn("This JVM does not support CRaC, continuing without a checkpoint");
+		}
+		catch (CheckpointException | RestoreException ex) {
+			throw new IllegalStateException("Checkpoint failed", ex);
+		}
+	}
+
+}
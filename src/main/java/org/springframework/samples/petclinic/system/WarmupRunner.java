@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warms the application up before it takes traffic when {@code petclinic.warmup.enabled}
+ * is set: the {@link WarmupWorkload} is sent to the application's own web server, without
+ * writing anything, {@code petclinic.warmup.iterations} times or until
+ * {@code petclinic.warmup.budget} has passed, so that templates are parsed, query plans
+ * built and the hot paths compiled by the JIT. The web server is already up, but Spring
+ * Boot only reports the application as {@link ReadinessState#ACCEPTING_TRAFFIC ready}
+ * once every runner is done, so {@code /readyz} answers 503 until then, while
+ * {@code /livez} is already up.
+ */
+@Component
+@ConditionalOnProperty("petclinic.warmup.enabled")
+class WarmupRunner implements ApplicationRunner {
+
+	private static final Logger logger = LoggerFactory.getLogger(WarmupRunner.class);
+
+	private final ApplicationContext context;
+
+	private final int iterations;
+
+	private final Duration budget;
+
+	WarmupRunner(ApplicationContext context, @Value("${petclinic.warmup.iterations:500}") int iterations,
+			@Value("${petclinic.warmup.budget:60s}") Duration budget) {
+		this.context = context;
+		this.iterations = iterations;
+		this.budget = budget;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		AvailabilityChangeEvent.publish(this.context, ReadinessState.REFUSING_TRAFFIC);
+		WarmupWorkload workload = new WarmupWorkload(this.context, false);
+		long started = System.nanoTime();
+		long deadline = started + this.budget.toNanos();
+		int iteration = 0;
+		try {
+			while (iteration < this.iterations && System.nanoTime() - deadline < 0) {
+				workload.run();
+				iteration++;
+			}
+		}
+		catch (IOException ex) {
+			logger.warn("Warm-up request failed, taking traffic without completing the warm-up", ex);
+		}
+		logger.info("Warmed up with {} of {} iterations in {} ms", iteration, this.iterations,
+				Duration.ofNanos(System.nanoTime() - started).toMillis());
+	}
+
+}
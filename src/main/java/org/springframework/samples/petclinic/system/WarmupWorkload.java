@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Requests to the main pages and forms of the application, sent to its own web server, so
+ * that the classes and templates of every request path are loaded and, when repeated,
+ * compiled by the JIT. Invalid forms go through binding and validation without writing
+ * anything; valid ones are only submitted when writes are allowed. Every connection is
+ * closed after its request, so that no socket is left open, as a checkpoint requires.
+ */
+class WarmupWorkload {
+
+	private static final Logger logger = LoggerFactory.getLogger(WarmupWorkload.class);
+
+	private static final List<String> PAGES = List.of("/", "/owners/find", "/owners?lastName=",
+			"/owners?lastName=Davis", "/owners/1", "/owners/new", "/owners/1/edit", "/owners/1/pets/new",
+			"/owners/1/pets/1/edit", "/owners/1/pets/1/visits/new", "/vets.html", "/vets",
+			"/resources/css/petclinic.css", "/actuator/health", "/does-not-exist");
+
+	private static final int TIMEOUT_MILLIS = 10_000;
+
+	private final URI root;
+
+	private final boolean writes;
+
+	WarmupWorkload(ApplicationContext context, boolean writes) {
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		this.root = URI.create("http://localhost:" + port);
+		this.writes = writes;
+	}
+
+	/**
+	 * Sends every request of the workload once.
+	 * @throws IOException if a request could not be sent
+	 */
+	void run() throws IOException {
+		for (String page : PAGES) {
+			send(page, null);
+		}
+		send("/owners/new", "firstName=&lastName=&telephone=1");
+		send("/owners/1/edit", "firstName=&lastName=&telephone=1");
+		send("/owners/1/pets/1/visits/new", "date=&description=");
+		if (this.writes) {
+			send("/owners/new", "firstName=Warmup&lastName=Run&address=1+Main+St.&city=Madison&telephone=6085550100");
+			send("/owners/1/pets/1/visits/new", "date=" + LocalDate.now() + "&description=Warmup+run");
+		}
+	}
+
+	private void send(String path, String form) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) this.root.resolve(path).toURL().openConnection();
+		try {
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestProperty("Connection", "close");
+			if (form != null) {
+				connection.setRequestMethod("POST");
+				connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+				connection.setDoOutput(true);
+				try (OutputStream body = connection.getOutputStream()) {
+					body.write(form.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			int status = connection.getResponseCode();
+			try (InputStream body = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+				if (body != null) {
+					body.transferTo(OutputStream.nullOutputStream());
+				}
+			}
+			logger.trace("{} {}: {}", connection.getRequestMethod(), path, status);
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+}
@@ -1,13 +1,25 @@
 package org.springframework.samples.petclinic.system;
 
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.FlashMapManager;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
-import org.springframework.web.servlet.i18n.SessionLocaleResolver;
+import org.springframework.web.servlet.resource.ContentVersionStrategy;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+import org.springframework.web.servlet.resource.VersionStrategy;
 
+import java.time.Duration;
 import java.util.Locale;
 
 /**
@@ -24,18 +36,51 @@ import java.util.Locale;
 @SuppressWarnings("unused")
 public class WebConfiguration implements WebMvcConfigurer {
 
+	static final String LOCALE_COOKIE_NAME = "PETCLINIC_LOCALE";
+
+	private final FragmentCache fragmentCache;
+
+	private final VersionStrategy versionStrategy = new ContentVersionStrategy();
+
+	private final ResourceCacheControlInterceptor resourceCacheControl;
+
+	private final boolean cacheResourceResolution;
+
+	public WebConfiguration(FragmentCache fragmentCache, ObjectProvider<ResourceUrlProvider> resourceUrlProvider,
+			@Value("${spring.web.resources.cache.cachecontrol.max-age:365d}") Duration staticResourcesMaxAge,
+			@Value("${petclinic.resources.unversioned-max-age:10m}") Duration unversionedResourcesMaxAge,
+			@Value("${spring.web.resources.chain.cache:true}") boolean cacheResourceResolution) {
+		this.fragmentCache = fragmentCache;
+		this.resourceCacheControl = new ResourceCacheControlInterceptor(this.versionStrategy, resourceUrlProvider,
+				staticResourcesMaxAge, unversionedResourcesMaxAge);
+		this.cacheResourceResolution = cacheResourceResolution;
+	}
+
 	/**
-	 * Uses session storage to remember the user’s language setting across requests.
-	 * Defaults to English if nothing is specified.
-	 * @return session-based {@link LocaleResolver}
+	 * Remembers the user’s language setting across requests in a cookie, rather than in
+	 * an HTTP session, so that the application keeps no state per user and any instance
+	 * can serve any request. Defaults to English if nothing is specified.
+	 * @return cookie-based {@link LocaleResolver}
 	 */
 	@Bean
 	public LocaleResolver localeResolver() {
-		SessionLocaleResolver resolver = new SessionLocaleResolver();
+		CookieLocaleResolver resolver = new CookieLocaleResolver(LOCALE_COOKIE_NAME);
 		resolver.setDefaultLocale(Locale.ENGLISH);
+		resolver.setCookieMaxAge(Duration.ofDays(365));
+		resolver.setCookieHttpOnly(true);
 		return resolver;
 	}
 
+	/**
+	 * Keeps the messages shown after a form is saved in a cookie, for the same reason.
+	 * @return cookie-based {@link FlashMapManager}
+	 */
+	@Bean
+	@RegisterReflectionForBinding(CookieFlashMapManager.StoredFlashMap.class)
+	public FlashMapManager flashMapManager() {
+		return new CookieFlashMapManager();
+	}
+
 	/**
 	 * Allows the app to switch languages using a URL parameter like
 	 * <code>?lang=es</code>.
@@ -49,12 +94,41 @@ public class WebConfiguration implements WebMvcConfigurer {
 	}
 
 	/**
-	 * Registers the locale change interceptor so it can run on each request.
+	 * Registers the locale change interceptor so it can run on each request, the fragment
+	 * cache so it can tell which data version a request renders, and the caching headers
+	 * of static resources.
 	 * @param registry where interceptors are added
 	 */
 	@Override
 	public void addInterceptors(InterceptorRegistry registry) {
 		registry.addInterceptor(localeChangeInterceptor());
+		registry.addInterceptor(this.fragmentCache);
+		registry.addInterceptor(this.resourceCacheControl).addPathPatterns("/resources/**", "/webjars/**");
+	}
+
+	/**
+	 * Serves the static resources and the webjars under content-hashed URLs, such as
+	 * <code>/resources/css/petclinic-&lt;hash&gt;.css</code>, which is what links in the
+	 * templates and the <code>url(...)</code> links in stylesheets are rewritten to. A
+	 * changed file gets a new URL, so browsers can keep those as immutable for the
+	 * configured max-age, while plain URLs get a short one, see
+	 * {@link ResourceCacheControlInterceptor}. Precompressed <code>.br</code> and
+	 * <code>.gz</code> variants written by the build are served when accepted.
+	 * @param registry where resource handlers are added
+	 */
+	@Override
+	public void addResourceHandlers(ResourceHandlerRegistry registry) {
+		addVersionedResourceHandler(registry, "/resources/**", "classpath:/static/resources/");
+		addVersionedResourceHandler(registry, "/webjars/**", "classpath:/META-INF/resources/webjars/");
+	}
+
+	private void addVersionedResourceHandler(ResourceHandlerRegistry registry, String pattern, String location) {
+		registry.addResourceHandler(pattern)
+			.addResourceLocations(location)
+			.resourceChain(this.cacheResourceResolution)
+			.addResolver(new EncodedResourceResolver())
+			.addResolver(new VersionResourceResolver().addVersionStrategy(this.versionStrategy, "/**"))
+			.addTransformer(new CssLinkResourceTransformer());
 	}
 
 }
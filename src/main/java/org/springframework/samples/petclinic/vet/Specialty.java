@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.vet;
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Table;
 
 /**
@@ -26,6 +27,7 @@ import jakarta.persistence.Table;
  * @author Juergen Hoeller
  */
 @Entity
+@EntityListeners(VetChangeListener.class)
 @Table(name = "specialties")
 public class Specialty extends NamedEntity {
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.samples.petclinic.system.FragmentCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Entity listener that discards the cached vets and the rendered vet list once a change
+ * to a {@link Vet} or {@link Specialty} has been committed. Created by Hibernate through
+ * the Spring bean container, so the caches are looked up lazily.
+ */
+class VetChangeListener {
+
+	/**
+	 * The {@link FragmentCache} region of the vet list, keyed by page.
+	 */
+	static final String VET_FRAGMENTS = "vets";
+
+	private final ObjectProvider<CacheManager> cacheManager;
+
+	private final ObjectProvider<FragmentCache> fragmentCache;
+
+	VetChangeListener(ObjectProvider<CacheManager> cacheManager, ObjectProvider<FragmentCache> fragmentCache) {
+		this.cacheManager = cacheManager;
+		this.fragmentCache = fragmentCache;
+	}
+
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	void onChange(Object entity) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+				@Override
+				public void afterCommit() {
+					invalidate();
+				}
+
+			});
+		}
+		else {
+			invalidate();
+		}
+	}
+
+	private void invalidate() {
+		this.cacheManager.ifAvailable(cacheManager -> {
+			Cache vets = cacheManager.getCache("vets");
+			if (vets != null) {
+				vets.clear();
+			}
+		});
+		this.fragmentCache.ifAvailable(fragmentCache -> fragmentCache.invalidateAll(VET_FRAGMENTS));
+	}
+
+}
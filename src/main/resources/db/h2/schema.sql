@@ -1,3 +1,4 @@
+DROP TABLE notification_schedules IF EXISTS;
 DROP TABLE vet_specialties IF EXISTS;
 DROP TABLE vets IF EXISTS;
 DROP TABLE specialties IF EXISTS;
@@ -41,7 +42,8 @@ CREATE TABLE owners (
   city                   VARCHAR(80),
   telephone              VARCHAR(20),
   email                  VARCHAR(255),
-  notification_preference VARCHAR(10) DEFAULT 'NONE'
+  notification_preference VARCHAR(10) DEFAULT 'NONE',
+  preferred_language     VARCHAR(10)
 );
 CREATE INDEX owners_last_name ON owners (last_name);
 
@@ -64,3 +66,24 @@ CREATE TABLE visits (
 );
 ALTER TABLE visits ADD CONSTRAINT fk_visits_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
 CREATE INDEX visits_pet_id ON visits (pet_id);
+
+CREATE TABLE notification_schedules (
+  id                      INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  notification_preference VARCHAR(10),
+  scheduled_time          TIMESTAMP,
+  status                  VARCHAR(20),
+  email_status            VARCHAR(20),
+  sms_status              VARCHAR(20),
+  visit_id                INTEGER,
+  pet_id                  INTEGER,
+  message                 VARCHAR(1024),
+  attempt_count           INTEGER DEFAULT 0 NOT NULL,
+  next_attempt_time       TIMESTAMP,
+  last_error              VARCHAR(1024),
+  claim_id                VARCHAR(36),
+  claimed_until           TIMESTAMP
+);
+ALTER TABLE notification_schedules ADD CONSTRAINT fk_notification_schedules_visits FOREIGN KEY (visit_id) REFERENCES visits (id);
+ALTER TABLE notification_schedules ADD CONSTRAINT fk_notification_schedules_pets FOREIGN KEY (pet_id) REFERENCES pets (id);
+CREATE INDEX notification_schedules_status ON notification_schedules (status, next_attempt_time);
+CREATE INDEX notification_schedules_scheduled_time ON notification_schedules (status, scheduled_time);
@@ -34,9 +34,18 @@ CREATE TABLE IF NOT EXISTS owners (
   telephone VARCHAR(20),
   email VARCHAR(255),
   notification_preference ENUM('EMAIL', 'SMS', 'BOTH', 'NONE') DEFAULT 'NONE',
+  preferred_language VARCHAR(10),
   INDEX(last_name)
 ) engine=InnoDB;
 
+-- Databases created before owners had a preferred language; MySQL has no ADD COLUMN IF NOT EXISTS
+SET @add_preferred_language = IF((SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'owners' AND column_name = 'preferred_language') = 0,
+  'ALTER TABLE owners ADD COLUMN preferred_language VARCHAR(10)', 'DO 0');
+PREPARE add_preferred_language FROM @add_preferred_language;
+EXECUTE add_preferred_language;
+DEALLOCATE PREPARE add_preferred_language;
+
 CREATE TABLE IF NOT EXISTS pets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   name VARCHAR(30),
@@ -55,3 +64,32 @@ CREATE TABLE IF NOT EXISTS visits (
   description VARCHAR(255),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS notification_schedules (
+  id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  notification_preference ENUM('EMAIL', 'SMS', 'BOTH', 'NONE'),
+  scheduled_time DATETIME,
+  status VARCHAR(20),
+  email_status VARCHAR(20),
+  sms_status VARCHAR(20),
+  visit_id INT(4) UNSIGNED,
+  pet_id INT(4) UNSIGNED,
+  message VARCHAR(1024),
+  attempt_count INT NOT NULL DEFAULT 0,
+  next_attempt_time DATETIME,
+  last_error VARCHAR(1024),
+  claim_id VARCHAR(36),
+  claimed_until DATETIME,
+  INDEX(status, next_attempt_time),
+  INDEX(status, scheduled_time),
+  FOREIGN KEY (visit_id) REFERENCES visits(id),
+  FOREIGN KEY (pet_id) REFERENCES pets(id)
+) engine=InnoDB;
+
+-- Databases created before schedules were claimed by the instance sending them
+SET @add_claim = IF((SELECT COUNT(*) FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'notification_schedules' AND column_name = 'claim_id') = 0,
+  'ALTER TABLE notification_schedules ADD COLUMN claim_id VARCHAR(36), ADD COLUMN claimed_until DATETIME', 'DO 0');
+PREPARE add_claim FROM @add_claim;
+EXECUTE add_claim;
+DEALLOCATE PREPARE add_claim;
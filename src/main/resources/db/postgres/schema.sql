@@ -31,9 +31,12 @@ CREATE TABLE IF NOT EXISTS owners (
   city                   TEXT,
   telephone              TEXT,
   email                  TEXT,
-  notification_preference TEXT DEFAULT 'NONE'
+  notification_preference TEXT DEFAULT 'NONE',
+  preferred_language     TEXT
 );
 CREATE INDEX ON owners (last_name);
+-- Databases created before owners had a preferred language
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS preferred_language TEXT;
 
 CREATE TABLE IF NOT EXISTS pets (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -52,3 +55,24 @@ CREATE TABLE IF NOT EXISTS visits (
   description TEXT
 );
 CREATE INDEX ON visits (pet_id);
+
+CREATE TABLE IF NOT EXISTS notification_schedules (
+  id                      INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  notification_preference TEXT,
+  scheduled_time          TIMESTAMP,
+  status                  TEXT,
+  email_status            TEXT,
+  sms_status              TEXT,
+  visit_id                INT REFERENCES visits (id),
+  pet_id                  INT REFERENCES pets (id),
+  message                 TEXT,
+  attempt_count           INT NOT NULL DEFAULT 0,
+  next_attempt_time       TIMESTAMP,
+  last_error              TEXT,
+  claim_id                TEXT,
+  claimed_until           TIMESTAMP
+);
+ALTER TABLE notification_schedules ADD COLUMN IF NOT EXISTS claim_id TEXT;
+ALTER TABLE notification_schedules ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMP;
+CREATE INDEX ON notification_schedules (status, next_attempt_time);
+CREATE INDEX ON notification_schedules (status, scheduled_time);
@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+#
+# Measures the time from launching the application until it answers its first request,
+# for a cold start and for restores from a CRaC checkpoint of the warmed-up application.
+# Needs a JDK with CRaC (e.g. Azul Zulu with CRaC) on the PATH or in JAVA_HOME, and the
+# executable jar: ./mvnw package -DskipTests, or ./gradlew bootJar with JAR=build/libs/...
+#
+# Usage: src/test/crac/restore-latency.sh [runs]
+
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+JAR=${JAR:-$(ls target/spring-petclinic-*.jar | grep -v plain | head -1)}
+CHECKPOINT=${CHECKPOINT:-target/crac}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+URL=http://localhost:$PORT/owners/1
+
+if ! "$JAVA" -XX:CRaCCheckpointTo=/dev/null -version >/dev/null 2>&1; then
+	echo "$("$JAVA" -version 2>&1 | head -1) does not support CRaC" >&2
+	exit 1
+fi
+
+# Milliseconds since the epoch
+now() {
+	date +%s%3N
+}
+
+# Runs the given command in the background and prints the milliseconds until $URL answers
+first_request() {
+	local started
+	started=$(now)
+	"$@" >/dev/null 2>&1 &
+	local pid=$!
+	until curl -sf -o /dev/null "$URL"; do
+		if ! kill -0 $pid 2>/dev/null; then
+			echo "application exited: $*" >&2
+			exit 1
+		fi
+		sleep 0.005
+	done
+	echo $(($(now) - started))
+	kill $pid
+	wait $pid 2>/dev/null || true
+	# A restored JVM may not be the launched process, stop whatever still holds the port
+	while curl -s -o /dev/null "$URL"; do
+		fuser -k -n tcp "$PORT" >/dev/null 2>&1 || true
+		sleep 0.1
+	done
+}
+
+rm -rf "$CHECKPOINT"
+mkdir -p "$CHECKPOINT"
+echo "Warming up and checkpointing to $CHECKPOINT"
+# The JVM exits once the checkpoint is written
+"$JAVA" -XX:CRaCCheckpointTo="$CHECKPOINT" -Dpetclinic.crac.checkpoint=true -Dserver.port="$PORT" \
+	-jar "$JAR" >"$CHECKPOINT.log" 2>&1 || true
+if ! ls "$CHECKPOINT"/*.img >/dev/null 2>&1; then
+	echo "no checkpoint was written, see $CHECKPOINT.log" >&2
+	exit 1
+fi
+
+printf '%-8s %12s %12s\n' run "cold (ms)" "restore (ms)"
+for run in $(seq 1 "$RUNS"); do
+	cold=$(first_request "$JAVA" -Dserver.port="$PORT" -jar "$JAR")
+	restore=$(first_request "$JAVA" -XX:CRaCRestoreFrom="$CHECKPOINT")
+	printf '%-8s %12s %12s\n' "$run" "$cold" "$restore"
+done
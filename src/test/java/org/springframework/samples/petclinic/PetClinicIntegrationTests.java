@@ -17,6 +17,12 @@
 package org.springframework.samples.petclinic;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.samples.petclinic.system.SqlStatementAssert.assertThatStatements;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,13 +31,26 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.system.RecordedRequestStatements;
+import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@Import(RecordedRequestStatements.class)
 public class PetClinicIntegrationTests {
 
 	@LocalServerPort
@@ -43,6 +62,15 @@ public class PetClinicIntegrationTests {
 	@Autowired
 	private RestTemplateBuilder builder;
 
+	@Autowired
+	private RecordedRequestStatements statements;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
 	@Test
 	void testFindAll() {
 		vets.findAll();
@@ -56,6 +84,112 @@ public class PetClinicIntegrationTests {
 		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
 
+	@Test
+	void testOwnerPagesLoadPetsAndVisitsInBatches() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.getForObject("/owners/1", String.class);
+		assertThatStatements(statements.get("GET", "/owners/1")).hasNoRepeats().hasCountAtMost(2);
+		template.getForObject("/owners?lastName=", String.class);
+		assertThatStatements(statements.get("GET", "/owners")).hasNoRepeats().hasCountAtMost(4);
+		template.getForObject("/owners/1/pets/1/edit", String.class);
+		assertThatStatements(statements.get("GET", "/owners/1/pets/1/edit")).hasNoRepeats();
+	}
+
+	@Test
+	void testStaticAndActuatorRequestsAreNotCounted() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.getForObject("/resources/css/petclinic.css", String.class);
+		template.getForObject("/actuator/health", String.class);
+		assertThatIllegalStateException().isThrownBy(() -> statements.get("GET", "/resources/css/petclinic.css"));
+		assertThatIllegalStateException().isThrownBy(() -> statements.get("GET", "/actuator/health"));
+	}
+
+	@Test
+	void testOwnerDetailsAfterNewVisit() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		assertThat(template.getForObject("/owners/2", String.class)).doesNotContain("fragment cache check");
+		assertThat(template.getForObject("/owners/2", String.class)).doesNotContain("fragment cache check");
+
+		MultiValueMap<String, String> visit = new LinkedMultiValueMap<>();
+		visit.add("date", "2024-06-01");
+		visit.add("description", "fragment cache check");
+		template.exchange(RequestEntity.post("/owners/2/pets/2/visits/new")
+			.contentType(MediaType.APPLICATION_FORM_URLENCODED)
+			.body(visit), String.class);
+
+		assertThat(template.getForObject("/owners/2", String.class)).contains("fragment cache check");
+	}
+
+	@Test
+	void testVetListAfterVetChanges() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		assertThat(template.getForObject("/vets.html?page=2", String.class)).doesNotContain("Fragmentcache");
+
+		Vet vet = new Vet();
+		vet.setFirstName("Fiona");
+		vet.setLastName("Fragmentcache");
+		transactionTemplate.executeWithoutResult(status -> entityManager.persist(vet));
+		assertThat(template.getForObject("/vets.html?page=2", String.class)).contains("Fragmentcache");
+
+		transactionTemplate
+			.executeWithoutResult(status -> entityManager.remove(entityManager.find(Vet.class, vet.getId())));
+		assertThat(template.getForObject("/vets.html?page=2", String.class)).doesNotContain("Fragmentcache");
+	}
+
+	@Test
+	void testStaticResourcesAreFingerprinted() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		String page = template.getForObject("/", String.class);
+		assertThat(page).containsPattern("/webjars/bootstrap/[^\"]*/bootstrap\\.bundle\\.min-[0-9a-f]{32}\\.js");
+		Matcher css = Pattern.compile("/resources/css/petclinic-[0-9a-f]{32}\\.css").matcher(page);
+		assertThat(css.find()).isTrue();
+
+		ResponseEntity<byte[]> result = template.exchange(RequestEntity.get(css.group()).build(), byte[].class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getHeaders().getCacheControl()).contains("max-age=31536000", "public", "immutable");
+	}
+
+	@Test
+	void testOnlyFingerprintedResourcesAreImmutable() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		String page = template.getForObject("/", String.class);
+		Matcher css = Pattern.compile("/resources/css/petclinic-[0-9a-f]{32}\\.css").matcher(page);
+		assertThat(css.find()).isTrue();
+		String stylesheet = template.getForObject(css.group(), String.class);
+		Matcher font = Pattern.compile("/resources/fonts/montserrat-webfont-[0-9a-f]{32}\\.woff").matcher(stylesheet);
+		assertThat(font.find()).isTrue();
+
+		ResponseEntity<byte[]> fingerprinted = template.exchange(RequestEntity.get(font.group()).build(), byte[].class);
+		assertThat(fingerprinted.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(fingerprinted.getHeaders().getCacheControl()).contains("max-age=31536000", "public", "immutable");
+
+		ResponseEntity<byte[]> plain = template
+			.exchange(RequestEntity.get("/resources/fonts/montserrat-webfont.woff").build(), byte[].class);
+		assertThat(plain.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(plain.getHeaders().getCacheControl()).contains("max-age=600", "public").doesNotContain("immutable");
+	}
+
+	@Test
+	void testPrecompressedStaticResources() {
+		assumeTrue(new ClassPathResource("static/resources/css/petclinic.css.gz").exists(),
+				"gzip variants are written by the build");
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<byte[]> result = template.exchange(
+				RequestEntity.get("/resources/css/petclinic.css").header(HttpHeaders.ACCEPT_ENCODING, "gzip").build(),
+				byte[].class);
+		assertThat(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(result.getHeaders().getVary()).contains(HttpHeaders.ACCEPT_ENCODING);
+	}
+
+	@Test
+	void testNotificationCircuits() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> result = template
+			.exchange(RequestEntity.get("/actuator/notificationcircuits/sms").build(), String.class);
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(result.getBody()).contains("\"state\":\"CLOSED\"");
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(PetClinicApplication.class, args);
 	}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.samples.petclinic.notification.NotificationSchedule;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+
+import com.twilio.rest.api.v2010.account.Message;
+
+/**
+ * Tests for {@link PetClinicRuntimeHints}.
+ */
+class PetClinicRuntimeHintsTests {
+
+	private final RuntimeHints hints = new RuntimeHints();
+
+	PetClinicRuntimeHintsTests() {
+		new PetClinicRuntimeHints().registerHints(this.hints, getClass().getClassLoader());
+	}
+
+	@Test
+	void shouldRegisterEntitiesForSerialization() {
+		for (Class<?> entity : new Class<?>[] { Owner.class, Pet.class, Visit.class, NotificationSchedule.class }) {
+			assertThat(RuntimeHintsPredicates.serialization().onType(entity)).as(entity.getName()).accepts(this.hints);
+		}
+	}
+
+	@Test
+	void shouldRegisterJakartaMailProvidersAndHandlers() throws ClassNotFoundException {
+		assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/javamail.default.providers"))
+			.accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.resource().forResource("META-INF/mailcap")).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.reflection()
+			.onType(Class.forName("com.sun.mail.smtp.SMTPTransport"))
+			.withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(this.hints);
+	}
+
+	@Test
+	void shouldRegisterTwilioMessageBinding() {
+		assertThat(RuntimeHintsPredicates.reflection()
+			.onType(Message.class)
+			.withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.reflection().onType(Message.Status.class)).accepts(this.hints);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.loadtest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.system.SyntheticDataGenerator;
+
+/**
+ * Seeds the database for the load test with {@link SyntheticDataGenerator}, as of a fixed
+ * date so that the same seed and size always produce the same rows, and keeps the ids the
+ * scenarios pick from.
+ */
+class LoadTestDataset {
+
+	private static final LocalDate REFERENCE_DATE = LocalDate.of(2025, 1, 1);
+
+	private final List<Integer> ownerIds = new ArrayList<>();
+
+	private final List<int[]> petsWithOwner = new ArrayList<>();
+
+	/**
+	 * Add the given number of owners, with their pets and visits, and vets.
+	 * @param jdbcTemplate the template to insert with
+	 * @param owners the number of owners to add
+	 * @param vets the number of vets to add
+	 * @param seed the seed of the random generator
+	 * @return the seeded dataset
+	 */
+	static LoadTestDataset seed(JdbcTemplate jdbcTemplate, int owners, int vets, long seed) {
+		new SyntheticDataGenerator(jdbcTemplate.getDataSource())
+			.generate(new SyntheticDataGenerator.Spec(owners, vets, seed, REFERENCE_DATE));
+		LoadTestDataset dataset = new LoadTestDataset();
+		dataset.ownerIds.addAll(jdbcTemplate.queryForList("SELECT id FROM owners ORDER BY id", Integer.class));
+		dataset.petsWithOwner.addAll(jdbcTemplate.query("SELECT id, owner_id FROM pets ORDER BY id",
+				(rs, row) -> new int[] { rs.getInt(1), rs.getInt(2) }));
+		return dataset;
+	}
+
+	/**
+	 * Returns the first two letters of a last name, drawn as often as owners have it.
+	 */
+	static String randomLastNamePrefix(Random random) {
+		List<String> lastNames = SyntheticDataGenerator.LAST_NAMES;
+		return lastNames.get((int) (lastNames.size() * Math.pow(random.nextDouble(), 2))).substring(0, 2);
+	}
+
+	int randomOwnerId(Random random) {
+		return this.ownerIds.get(random.nextInt(this.ownerIds.size()));
+	}
+
+	/**
+	 * Returns a random pet as its id and its owner's id.
+	 */
+	int[] randomPet(Random random) {
+		return this.petsWithOwner.get(random.nextInt(this.petsWithOwner.size()));
+	}
+
+	int ownerCount() {
+		return this.ownerIds.size();
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Per-endpoint results of a load test run, and their comparison with a stored baseline.
+ * Latencies are in milliseconds, throughput in requests per second.
+ */
+class LoadTestReport {
+
+	private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final Map<String, EndpointResult> results;
+
+	LoadTestReport(Map<String, EndpointResult> results) {
+		this.results = new TreeMap<>(results);
+	}
+
+	/**
+	 * Summarize the latencies recorded for one endpoint.
+	 * @param latencyNanos the latency of every successful request
+	 * @param errors the number of failed requests
+	 * @param elapsed the duration of the measured phase
+	 */
+	static EndpointResult summarize(long[] latencyNanos, long errors, Duration elapsed) {
+		long[] sorted = latencyNanos.clone();
+		Arrays.sort(sorted);
+		long requests = sorted.length + errors;
+		double throughput = requests / (elapsed.toNanos() / 1e9);
+		return new EndpointResult(requests, errors, round(throughput), percentile(sorted, 50), percentile(sorted, 95),
+				percentile(sorted, 99));
+	}
+
+	/**
+	 * Nearest-rank percentile, in milliseconds.
+	 */
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return round(sorted[Math.max(rank, 1) - 1] / 1e6);
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+
+	Map<String, EndpointResult> getResults() {
+		return this.results;
+	}
+
+	static LoadTestReport read(Path path) throws IOException {
+		return new LoadTestReport(objectMapper.readValue(path.toFile(), new TypeReference<>() {
+		}));
+	}
+
+	void write(Path path) throws IOException {
+		Files.createDirectories(path.toAbsolutePath().getParent());
+		objectMapper.writeValue(path.toFile(), this.results);
+	}
+
+	/**
+	 * Compare this run with a baseline. An endpoint regresses when one of its percentiles
+	 * is more than {@code threshold} above the baseline's, or its throughput more than
+	 * {@code threshold} below it. Endpoints missing from either side are not compared.
+	 * @param baseline the stored baseline
+	 * @param threshold the tolerated relative change, e.g. 0.2 for 20%
+	 * @return a description of each regression
+	 */
+	List<String> regressionsAgainst(LoadTestReport baseline, double threshold) {
+		List<String> regressions = new ArrayList<>();
+		baseline.results.forEach((endpoint, expected) -> {
+			EndpointResult actual = this.results.get(endpoint);
+			if (actual == null) {
+				return;
+			}
+			checkLatency(regressions, endpoint, "p50", actual.p50(), expected.p50(), threshold);
+			checkLatency(regressions, endpoint, "p95", actual.p95(), expected.p95(), threshold);
+			checkLatency(regressions, endpoint, "p99", actual.p99(), expected.p99(), threshold);
+			if (actual.throughput() < expected.throughput() * (1 - threshold)) {
+				regressions.add(String.format("%s throughput %.2f req/s is below the baseline of %.2f req/s", endpoint,
+						actual.throughput(), expected.throughput()));
+			}
+		});
+		return regressions;
+	}
+
+	private static void checkLatency(List<String> regressions, String endpoint, String percentile, double actual,
+			double expected, double threshold) {
+		if (actual > expected * (1 + threshold)) {
+			regressions.add(String.format("%s %s %.2f ms is above the baseline of %.2f ms", endpoint, percentile,
+					actual, expected));
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder table = new StringBuilder(String.format("%-20s %9s %7s %10s %9s %9s %9s%n", "endpoint",
+				"requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+		this.results.forEach((endpoint, result) -> table
+			.append(String.format("%-20s %9d %7d %10.2f %9.2f %9.2f %9.2f%n", endpoint, result.requests(),
+					result.errors(), result.throughput(), result.p50(), result.p95(), result.p99())));
+		return table.toString();
+	}
+
+	/**
+	 * Results for one endpoint.
+	 */
+	record EndpointResult(long requests, long errors, double throughput, double p50, double p95, double p99) {
+	}
+
+}
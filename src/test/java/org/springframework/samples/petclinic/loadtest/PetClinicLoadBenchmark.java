@@ -0,0 +1,278 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.loadtest.LoadTestReport.EndpointResult;
+
+/**
+ * Headless load test. Boots the application on a random port, seeds the database with a
+ * reproducible dataset from {@link LoadTestDataset}, and sends a fixed number of requests
+ * drawn from weighted scenarios by concurrent virtual users, after a warm-up that is not
+ * measured. Every user draws its scenarios from its own seeded random generator, so a run
+ * with the same settings sends the same requests.
+ * <p>
+ * The requests, errors, throughput and p50/p95/p99 latency of each endpoint are printed
+ * and written to {@code loadtest.report}. When a baseline exists at
+ * {@code loadtest.baseline}, the test fails if any endpoint regressed by more than
+ * {@code loadtest.threshold}; run with {@code -Dloadtest.update-baseline=true} to record
+ * the current results as the baseline instead. Any failed request fails the test.
+ * <p>
+ * Not part of the regular build; run it with
+ * {@code ./mvnw test -Dtest=PetClinicLoadBenchmark} or {@code ./gradlew loadTest}. It is
+ * tuned with system properties:
+ * <ul>
+ * <li>{@code loadtest.owners} (1000) owners and {@code loadtest.vets} (50) vets to seed
+ * with {@code loadtest.seed} (42)</li>
+ * <li>{@code loadtest.users} (16) concurrent virtual users</li>
+ * <li>{@code loadtest.warmup} (2000) and {@code loadtest.requests} (10000) requests</li>
+ * <li>{@code loadtest.threshold} (0.25) tolerated relative regression</li>
+ * <li>{@code loadtest.baseline} ({@code src/test/loadtest/baseline.json}) and
+ * {@code loadtest.report} ({@code target/loadtest/report.json})</li>
+ * </ul>
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "petclinic.notification.wheel.enabled=false")
+class PetClinicLoadBenchmark {
+
+	private final int owners = Integer.getInteger("loadtest.owners", 1000);
+
+	private final int vets = Integer.getInteger("loadtest.vets", 50);
+
+	private final long seed = Long.getLong("loadtest.seed", 42);
+
+	private final int users = Integer.getInteger("loadtest.users", 16);
+
+	private final int warmup = Integer.getInteger("loadtest.warmup", 2000);
+
+	private final int requests = Integer.getInteger("loadtest.requests", 10000);
+
+	private final double threshold = Double.parseDouble(System.getProperty("loadtest.threshold", "0.25"));
+
+	private final Path baseline = Path.of(System.getProperty("loadtest.baseline", "src/test/loadtest/baseline.json"));
+
+	private final Path report = Path.of(System.getProperty("loadtest.report", "target/loadtest/report.json"));
+
+	private final boolean updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final HttpClient client = HttpClient.newBuilder()
+		.version(HttpClient.Version.HTTP_1_1)
+		.followRedirects(HttpClient.Redirect.NEVER)
+		.build();
+
+	@Test
+	void loadTest() throws Exception {
+		LoadTestDataset dataset = LoadTestDataset.seed(this.jdbcTemplate, this.owners, this.vets, this.seed);
+		int ownerPages = (this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners", Integer.class) + 4) / 5;
+		List<Scenario> scenarios = scenarios(dataset, ownerPages);
+
+		run(scenarios, this.warmup, this.seed - 1);
+		long start = System.nanoTime();
+		List<Map<String, Recorder>> recorded = run(scenarios, this.requests, this.seed);
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+		Map<String, EndpointResult> results = new LinkedHashMap<>();
+		for (Scenario scenario : scenarios) {
+			Recorder merged = new Recorder();
+			recorded.forEach(byScenario -> merged.addAll(byScenario.get(scenario.name())));
+			results.put(scenario.name(), LoadTestReport.summarize(merged.latencies(), merged.errors, elapsed));
+		}
+		LoadTestReport current = new LoadTestReport(results);
+		System.out.printf("%d owners, %d users, %d requests in %d ms (%.0f req/s)%n%s", dataset.ownerCount(),
+				this.users, this.requests, elapsed.toMillis(), this.requests / (elapsed.toNanos() / 1e9), current);
+		current.write(this.report);
+
+		if (this.updateBaseline) {
+			current.write(this.baseline);
+			System.out.println("Recorded baseline " + this.baseline);
+		}
+		else if (Files.exists(this.baseline)) {
+			assertThat(current.regressionsAgainst(LoadTestReport.read(this.baseline), this.threshold))
+				.as("Regressions against " + this.baseline)
+				.isEmpty();
+		}
+		else {
+			System.out.println(
+					"No baseline at " + this.baseline + "; run with -Dloadtest.update-baseline=true to record one");
+		}
+		assertThat(results).allSatisfy((endpoint, result) -> assertThat(result.errors()).as(endpoint).isZero());
+	}
+
+	/**
+	 * The weighted scenarios: mostly browsing owners and vets, deep pages of the owner
+	 * list, and some booked visits.
+	 */
+	private List<Scenario> scenarios(LoadTestDataset dataset, int ownerPages) {
+		List<Scenario> scenarios = new ArrayList<>();
+		scenarios.add(new Scenario("home", 5, (random, base) -> get(base + "/")));
+		scenarios.add(new Scenario("vets.html", 10, (random, base) -> get(base + "/vets.html")));
+		scenarios.add(new Scenario("vets.json", 10,
+				(random, base) -> HttpRequest.newBuilder(URI.create(base + "/vets"))
+					.header("Accept", "application/json")
+					.build()));
+		scenarios.add(new Scenario("findOwners", 15,
+				(random, base) -> get(base + "/owners?lastName=" + LoadTestDataset.randomLastNamePrefix(random))));
+		// The last tenth of the pages, where the offset is largest
+		scenarios.add(new Scenario("ownersDeepPage", 10, (random, base) -> get(
+				base + "/owners?lastName=&page=" + (ownerPages - random.nextInt(Math.max(ownerPages / 10, 1))))));
+		scenarios.add(new Scenario("ownerDetails", 30,
+				(random, base) -> get(base + "/owners/" + dataset.randomOwnerId(random))));
+		scenarios.add(new Scenario("editOwnerForm", 5,
+				(random, base) -> get(base + "/owners/" + dataset.randomOwnerId(random) + "/edit")));
+		scenarios.add(new Scenario("newVisitForm", 5, (random, base) -> {
+			int[] pet = dataset.randomPet(random);
+			return get(base + "/owners/" + pet[1] + "/pets/" + pet[0] + "/visits/new");
+		}));
+		scenarios.add(new Scenario("bookVisit", 10, (random, base) -> {
+			int[] pet = dataset.randomPet(random);
+			String form = "date=" + LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)) + "&description=Checkup";
+			return HttpRequest.newBuilder(URI.create(base + "/owners/" + pet[1] + "/pets/" + pet[0] + "/visits/new"))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.POST(HttpRequest.BodyPublishers.ofString(form))
+				.build();
+		}));
+		return scenarios;
+	}
+
+	private static HttpRequest get(String uri) {
+		return HttpRequest.newBuilder(URI.create(uri)).build();
+	}
+
+	/**
+	 * Sends the given number of requests spread over the virtual users.
+	 * @return the latencies recorded by each user, per scenario
+	 */
+	private List<Map<String, Recorder>> run(List<Scenario> scenarios, int count, long runSeed) throws Exception {
+		int totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+		String base = "http://localhost:" + this.port;
+		ExecutorService executor = Executors.newFixedThreadPool(this.users);
+		try {
+			List<Future<Map<String, Recorder>>> futures = new ArrayList<>();
+			for (int user = 0; user < this.users; user++) {
+				int userRequests = count / this.users + ((user < count % this.users) ? 1 : 0);
+				Random random = new Random(runSeed * 31 + user);
+				futures.add(executor.submit(() -> {
+					Map<String, Recorder> recorders = new HashMap<>();
+					scenarios.forEach(scenario -> recorders.put(scenario.name(), new Recorder()));
+					for (int i = 0; i < userRequests; i++) {
+						Scenario scenario = pick(scenarios, random.nextInt(totalWeight));
+						HttpRequest request = scenario.request().apply(random, base);
+						long start = System.nanoTime();
+						HttpResponse<Void> response = this.client.send(request, HttpResponse.BodyHandlers.discarding());
+						long latency = System.nanoTime() - start;
+						// Redirects after a POST or a single search hit are successes
+						recorders.get(scenario.name()).record(latency, response.statusCode() < 400);
+					}
+					return recorders;
+				}));
+			}
+			List<Map<String, Recorder>> recorded = new ArrayList<>();
+			for (Future<Map<String, Recorder>> future : futures) {
+				recorded.add(future.get());
+			}
+			return recorded;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Scenario pick(List<Scenario> scenarios, int ticket) {
+		for (Scenario scenario : scenarios) {
+			ticket -= scenario.weight();
+			if (ticket < 0) {
+				return scenario;
+			}
+		}
+		throw new IllegalStateException("Ticket outside the total weight");
+	}
+
+	/**
+	 * A named request type, drawn in proportion to its weight.
+	 */
+	private record Scenario(String name, int weight, BiFunction<Random, String, HttpRequest> request) {
+	}
+
+	/**
+	 * Latencies of one user's successful requests for one scenario, and its error count.
+	 */
+	private static final class Recorder {
+
+		private long[] latencies = new long[256];
+
+		private int count;
+
+		private long errors;
+
+		void record(long latencyNanos, boolean success) {
+			if (!success) {
+				this.errors++;
+				return;
+			}
+			if (this.count == this.latencies.length) {
+				this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+			}
+			this.latencies[this.count++] = latencyNanos;
+		}
+
+		void addAll(Recorder other) {
+			for (int i = 0; i < other.count; i++) {
+				record(other.latencies[i], true);
+			}
+			this.errors += other.errors;
+		}
+
+		long[] latencies() {
+			return Arrays.copyOf(this.latencies, this.count);
+		}
+
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.notification.CircuitBreaker.State;
+
+/**
+ * Test class for {@link CircuitBreaker}
+ */
+class CircuitBreakerTests {
+
+	private static final long FAST = Duration.ofMillis(10).toNanos();
+
+	private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+	private final AtomicLong clock = new AtomicLong();
+
+	// Opens at 50% failures or 80% slow calls over the last 10 calls, once 4 are recorded
+	private final CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 50, 80, Duration.ofSeconds(1),
+			Duration.ofMinutes(1), 2, this.clock::get);
+
+	@Test
+	void shouldStayClosedBelowMinimumCalls() {
+		call(false, FAST);
+		call(false, FAST);
+		call(false, FAST);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(this.breaker.snapshot().failureRate()).isEqualTo(100);
+	}
+
+	@Test
+	void shouldOpenWhenFailureRateReachesThreshold() {
+		call(true, FAST);
+		call(true, FAST);
+		call(false, FAST);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+
+		call(false, FAST);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(this.breaker.tryAcquire()).isFalse();
+		assertThat(this.breaker.retryDelay()).isEqualTo(Duration.ofMinutes(1));
+		this.clock.addAndGet(Duration.ofSeconds(20).toNanos());
+		assertThat(this.breaker.retryDelay()).isEqualTo(Duration.ofSeconds(40));
+	}
+
+	@Test
+	void shouldOpenWhenCallsAreSlow() {
+		for (int i = 0; i < 4; i++) {
+			call(true, SLOW);
+		}
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	void shouldOnlyConsiderTheLatestCalls() {
+		for (int i = 0; i < 10; i++) {
+			call(true, FAST);
+		}
+
+		// 5 failures out of the last 10 calls, though only a third of all calls
+		for (int i = 0; i < 4; i++) {
+			call(false, FAST);
+		}
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		call(false, FAST);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	@Test
+	void shouldCloseAfterSuccessfulProbes() {
+		open();
+		this.clock.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		assertThat(this.breaker.getState()).isEqualTo(State.HALF_OPEN);
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		assertThat(this.breaker.tryAcquire()).isFalse();
+		this.breaker.onResult(true, FAST);
+		this.breaker.onResult(true, FAST);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+		assertThat(this.breaker.tryAcquire()).isTrue();
+	}
+
+	@Test
+	void shouldReopenAfterFailedProbes() {
+		open();
+		this.clock.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		call(true, FAST);
+		call(false, FAST);
+
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+		assertThat(this.breaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	void shouldReturnProbeReleasedWithoutResult() {
+		open();
+		this.clock.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		this.breaker.release();
+
+		assertThat(this.breaker.snapshot().bufferedCalls()).isZero();
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		this.breaker.onResult(true, FAST);
+		this.breaker.onResult(true, FAST);
+		assertThat(this.breaker.getState()).isEqualTo(State.CLOSED);
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			call(false, FAST);
+		}
+		assertThat(this.breaker.getState()).isEqualTo(State.OPEN);
+	}
+
+	private void call(boolean success, long durationNanos) {
+		assertThat(this.breaker.tryAcquire()).isTrue();
+		this.breaker.onResult(success, durationNanos);
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Minimal in-process SMTP server on the loopback interface that accepts every message
+ * without storing it. Each accepted message is delayed by the configured latency, and the
+ * given fraction of messages is rejected with a transient {@code 451} reply. Its threads
+ * are named {@code fake-smtp-} so that benchmarks can tell them apart from the client's.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("fake-smtp-"));
+
+	private final Duration latency;
+
+	private final double errorRate;
+
+	private final AtomicInteger accepted = new AtomicInteger();
+
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	FakeSmtpServer(Duration latency, double errorRate) throws IOException {
+		this.latency = latency;
+		this.errorRate = errorRate;
+		this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+		this.executor.execute(this::acceptConnections);
+	}
+
+	int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	int getAccepted() {
+		return this.accepted.get();
+	}
+
+	int getRejected() {
+		return this.rejected.get();
+	}
+
+	private void acceptConnections() {
+		while (!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				this.executor.execute(() -> handle(socket));
+			}
+			catch (SocketException ex) {
+				// closed
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+			reply(out, "220 localhost fake SMTP ready");
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.toUpperCase();
+				if (command.startsWith("EHLO")) {
+					reply(out, "250-localhost\r\n250-AUTH PLAIN\r\n250 8BITMIME");
+				}
+				else if (command.startsWith("HELO")) {
+					reply(out, "250 localhost");
+				}
+				else if (command.startsWith("AUTH")) {
+					if (command.trim().equals("AUTH PLAIN")) {
+						reply(out, "334 ");
+						in.readLine();
+					}
+					reply(out, "235 2.7.0 Authentication successful");
+				}
+				else if (command.startsWith("DATA")) {
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+					while ((line = in.readLine()) != null && !line.equals(".")) {
+						// discard the message
+					}
+					sleep();
+					if (ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+						this.rejected.incrementAndGet();
+						reply(out, "451 4.3.0 Injected failure");
+					}
+					else {
+						this.accepted.incrementAndGet();
+						reply(out, "250 2.0.0 OK");
+					}
+				}
+				else if (command.startsWith("QUIT")) {
+					reply(out, "221 2.0.0 Bye");
+					return;
+				}
+				else {
+					// MAIL, RCPT, RSET and NOOP
+					reply(out, "250 2.0.0 OK");
+				}
+			}
+		}
+		catch (IOException ex) {
+			// client went away
+		}
+	}
+
+	private void sleep() {
+		if (this.latency.isZero()) {
+			return;
+		}
+		try {
+			Thread.sleep(this.latency.toMillis());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void reply(Writer out, String response) throws IOException {
+		out.write(response);
+		out.write("\r\n");
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.serverSocket.close();
+		this.executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.twilio.http.HttpClient;
+import com.twilio.http.NetworkHttpClient;
+import com.twilio.http.Request;
+import com.twilio.http.Response;
+import com.twilio.http.TwilioRestClient;
+
+/**
+ * In-process HTTP server on the loopback interface that answers the Twilio
+ * {@code Messages.json} endpoint. Each message is delayed by the configured latency, and
+ * the given fraction of messages fails with a Twilio-style {@code 500} error. Its threads
+ * are named {@code fake-twilio-} so that benchmarks can tell them apart from the
+ * client's.
+ */
+class FakeTwilioServer implements AutoCloseable {
+
+	private static final String TWILIO_API = "https://api.twilio.com";
+
+	private final HttpServer server;
+
+	private final ExecutorService executor = Executors
+		.newCachedThreadPool(new CustomizableThreadFactory("fake-twilio-"));
+
+	private final Duration latency;
+
+	private final double errorRate;
+
+	private final AtomicInteger accepted = new AtomicInteger();
+
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	FakeTwilioServer(Duration latency, double errorRate) throws IOException {
+		this.latency = latency;
+		this.errorRate = errorRate;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+		this.server.createContext("/2010-04-01/Accounts/", this::handle);
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	int getAccepted() {
+		return this.accepted.get();
+	}
+
+	int getRejected() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * Create a Twilio REST client whose requests are sent to this server instead of
+	 * {@code api.twilio.com}.
+	 */
+	TwilioRestClient createClient() {
+		String baseUrl = "http://" + this.server.getAddress().getHostString() + ":"
+				+ this.server.getAddress().getPort();
+		HttpClient httpClient = new NetworkHttpClient() {
+
+			@Override
+			public Response makeRequest(Request request) {
+				return super.makeRequest(redirect(request, baseUrl));
+			}
+
+		};
+		return new TwilioRestClient.Builder("ACfake", "token").httpClient(httpClient).build();
+	}
+
+	private static Request redirect(Request request, String baseUrl) {
+		Request redirected = new Request(request.getMethod(), request.getUrl().replace(TWILIO_API, baseUrl));
+		redirected.setAuth(request.getUsername(), request.getPassword());
+		copy(request.getQueryParams(), redirected::addQueryParam);
+		copy(request.getPostParams(), redirected::addPostParam);
+		copy(request.getHeaderParams(), redirected::addHeaderParam);
+		return redirected;
+	}
+
+	private static void copy(Map<String, List<String>> params, BiConsumer<String, String> target) {
+		params.forEach((name, values) -> values.forEach(value -> target.accept(name, value)));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			body.readAllBytes();
+			sleep();
+			String response;
+			int status;
+			if (ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+				this.rejected.incrementAndGet();
+				status = 500;
+				response = "{\"code\": 20500, \"message\": \"Injected failure\", \"status\": 500}";
+			}
+			else {
+				int sid = this.accepted.incrementAndGet();
+				status = 201;
+				response = "{\"sid\": \"SM" + sid + "\", \"status\": \"queued\"}";
+			}
+			byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private void sleep() {
+		if (this.latency.isZero()) {
+			return;
+		}
+		try {
+			Thread.sleep(this.latency.toMillis());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+}
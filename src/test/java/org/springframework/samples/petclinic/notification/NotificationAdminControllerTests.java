@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link NotificationAdminController}
+ */
+@WebMvcTest(NotificationAdminController.class)
+@DisabledInNativeImage
+@DisabledInAotMode
+class NotificationAdminControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockitoBean
+	private NotificationScheduleRepository schedules;
+
+	@Test
+	void shouldRequeueDeadLetteredSchedulesByDefault() throws Exception {
+		given(this.schedules.requeueByStatus(eq(NotificationStatus.DEAD_LETTER), eq(NotificationStatus.PENDING), any()))
+			.willReturn(3);
+
+		this.mockMvc.perform(post("/admin/notifications/requeue"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.requeued").value(3));
+	}
+
+	@Test
+	void shouldRequeueOnlyFailedOrDeadLetteredSchedulesById() throws Exception {
+		given(this.schedules.requeueByIds(eq(List.of(1, 2)),
+				eq(EnumSet.of(NotificationStatus.FAILED, NotificationStatus.DEAD_LETTER)),
+				eq(NotificationStatus.PENDING), any()))
+			.willReturn(1);
+
+		this.mockMvc.perform(post("/admin/notifications/requeue").param("ids", "1", "2"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.requeued").value(1));
+	}
+
+	@Test
+	void shouldRejectRequeueFromOtherStates() throws Exception {
+		for (NotificationStatus status : EnumSet.of(NotificationStatus.PENDING, NotificationStatus.SENT,
+				NotificationStatus.SKIPPED)) {
+			this.mockMvc.perform(post("/admin/notifications/requeue").param("status", status.name()))
+				.andExpect(status().isBadRequest());
+			this.mockMvc.perform(post("/admin/notifications/requeue").param("status", status.name()).param("ids", "1"))
+				.andExpect(status().isBadRequest());
+		}
+		this.mockMvc.perform(post("/admin/notifications/requeue").param("status", "UNKNOWN"))
+			.andExpect(status().isBadRequest());
+
+		verifyNoInteractions(this.schedules);
+	}
+
+}
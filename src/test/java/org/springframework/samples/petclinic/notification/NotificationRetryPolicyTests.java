@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link NotificationRetryPolicy}
+ */
+class NotificationRetryPolicyTests {
+
+	private final NotificationRetryPolicy policy = new NotificationRetryPolicy(3, Duration.ofMinutes(1), 2.0,
+			Duration.ofMinutes(3), 0.2);
+
+	@Test
+	void shouldBackOffExponentiallyUpToMaxDelay() {
+		assertThat(this.policy.backoff(1, 0.5)).isEqualTo(Duration.ofMinutes(1));
+		assertThat(this.policy.backoff(2, 0.5)).isEqualTo(Duration.ofMinutes(2));
+		assertThat(this.policy.backoff(3, 0.5)).isEqualTo(Duration.ofMinutes(3));
+		assertThat(this.policy.backoff(10, 0.5)).isEqualTo(Duration.ofMinutes(3));
+	}
+
+	@Test
+	void shouldApplyJitterAroundNominalDelay() {
+		assertThat(this.policy.backoff(1, 0.0)).isEqualTo(Duration.ofSeconds(48));
+		assertThat(this.policy.backoff(1, 1.0)).isEqualTo(Duration.ofSeconds(72));
+	}
+
+	@Test
+	void shouldScheduleRetryWhileAttemptsRemain() {
+		NotificationSchedule schedule = new NotificationSchedule();
+		schedule.setAttemptCount(1);
+		schedule.setLastError("Connection refused");
+		LocalDateTime now = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+		this.policy.onFailure(schedule, now);
+
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getNextAttemptTime()).isBetween(now.plusSeconds(48), now.plusSeconds(72));
+		assertThat(schedule.getLastError()).isEqualTo("Connection refused");
+	}
+
+	@Test
+	void shouldDeadLetterWhenAttemptsAreExhausted() {
+		NotificationSchedule schedule = new NotificationSchedule();
+		schedule.setAttemptCount(3);
+		schedule.setNextAttemptTime(LocalDateTime.now());
+
+		this.policy.onFailure(schedule, LocalDateTime.now());
+
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.DEAD_LETTER);
+		assertThat(schedule.getNextAttemptTime()).isNull();
+	}
+
+}
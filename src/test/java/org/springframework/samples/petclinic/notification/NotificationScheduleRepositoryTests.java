@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+
+/**
+ * Integration test for the requeue, claim and backlog queries of
+ * {@link NotificationScheduleRepository}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+class NotificationScheduleRepositoryTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+	@Autowired
+	private NotificationScheduleRepository schedules;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void shouldRequeueOnlyFailedOrDeadLetteredSchedulesById() {
+		int pending = insert(NotificationStatus.PENDING);
+		int sent = insert(NotificationStatus.SENT);
+		int skipped = insert(NotificationStatus.SKIPPED);
+		int failed = insert(NotificationStatus.FAILED);
+		int deadLetter = insert(NotificationStatus.DEAD_LETTER);
+
+		int requeued = this.schedules.requeueByIds(List.of(pending, sent, skipped, failed, deadLetter),
+				EnumSet.of(NotificationStatus.FAILED, NotificationStatus.DEAD_LETTER), NotificationStatus.PENDING, NOW);
+
+		assertThat(requeued).isEqualTo(2);
+		assertRequeued(failed);
+		assertRequeued(deadLetter);
+		assertThat(row(pending)).containsEntry("status", "PENDING").containsEntry("attempt_count", 3);
+		assertThat(row(sent)).containsEntry("status", "SENT").containsEntry("attempt_count", 3);
+		assertThat(row(skipped)).containsEntry("status", "SKIPPED").containsEntry("attempt_count", 3);
+	}
+
+	@Test
+	void shouldRequeueEveryScheduleInState() {
+		int failed = insert(NotificationStatus.FAILED);
+		int deadLetter = insert(NotificationStatus.DEAD_LETTER);
+		int otherDeadLetter = insert(NotificationStatus.DEAD_LETTER);
+
+		int requeued = this.schedules.requeueByStatus(NotificationStatus.DEAD_LETTER, NotificationStatus.PENDING, NOW);
+
+		assertThat(requeued).isEqualTo(2);
+		assertRequeued(deadLetter);
+		assertRequeued(otherDeadLetter);
+		assertThat(row(failed)).containsEntry("status", "FAILED").containsEntry("last_error", "Connection refused");
+	}
+
+	@Test
+	void shouldClaimPendingSchedulesOnlyOnceUntilTheClaimExpires() {
+		int pending = insert(NotificationStatus.PENDING);
+		int sent = insert(NotificationStatus.SENT);
+		List<Integer> ids = List.of(pending, sent);
+		EnumSet<NotificationStatus> statuses = EnumSet.of(NotificationStatus.PENDING);
+
+		assertThat(this.schedules.claim(ids, statuses, "first", NOW, NOW.plusMinutes(10))).isEqualTo(1);
+		assertThat(this.schedules.claim(ids, statuses, "second", NOW.plusMinutes(5), NOW.plusMinutes(15))).isZero();
+		assertThat(row(pending)).containsEntry("claim_id", "first");
+		assertThat(row(sent)).containsEntry("claim_id", null);
+
+		assertThat(this.schedules.claim(ids, statuses, "third", NOW.plusMinutes(11), NOW.plusMinutes(21))).isEqualTo(1);
+		assertThat(row(pending)).containsEntry("claim_id", "third");
+	}
+
+	@Test
+	void shouldNotClaimSchedulesBeforeTheirNextAttempt() {
+		int failed = insert(NotificationStatus.FAILED);
+		this.jdbcTemplate.update("UPDATE notification_schedules SET next_attempt_time = ? WHERE id = ?",
+				Timestamp.valueOf(NOW.plusMinutes(1)), failed);
+		EnumSet<NotificationStatus> statuses = EnumSet.of(NotificationStatus.PENDING, NotificationStatus.FAILED);
+
+		assertThat(this.schedules.findIdsDueForAttempt(statuses, NOW, PageRequest.of(0, 10))).isEmpty();
+		assertThat(this.schedules.claim(List.of(failed), statuses, "early", NOW, NOW.plusMinutes(10))).isZero();
+		assertThat(this.schedules.findIdsDueForAttempt(statuses, NOW.plusMinutes(1), PageRequest.of(0, 10)))
+			.containsExactly(failed);
+		assertThat(this.schedules.claim(List.of(failed), statuses, "due", NOW.plusMinutes(1), NOW.plusMinutes(11)))
+			.isEqualTo(1);
+		assertThat(this.schedules.findIdsDueForAttempt(statuses, NOW.plusMinutes(2), PageRequest.of(0, 10))).isEmpty();
+	}
+
+	@Test
+	void shouldCountOnlyDueSchedules() {
+		insert(NotificationStatus.PENDING);
+		int upcoming = insert(NotificationStatus.PENDING);
+		int retryDue = insert(NotificationStatus.FAILED);
+		int retryLater = insert(NotificationStatus.FAILED);
+		insert(NotificationStatus.SENT);
+		this.jdbcTemplate.update("UPDATE notification_schedules SET scheduled_time = ? WHERE id = ?",
+				Timestamp.valueOf(NOW.plusDays(7)), upcoming);
+		this.jdbcTemplate.update("UPDATE notification_schedules SET next_attempt_time = ? WHERE id = ?",
+				Timestamp.valueOf(NOW.minusMinutes(1)), retryDue);
+		this.jdbcTemplate.update("UPDATE notification_schedules SET next_attempt_time = ? WHERE id = ?",
+				Timestamp.valueOf(NOW.plusMinutes(1)), retryLater);
+
+		assertThat(this.schedules.countDue(EnumSet.of(NotificationStatus.PENDING, NotificationStatus.FAILED), NOW))
+			.isEqualTo(2);
+	}
+
+	private void assertRequeued(int id) {
+		assertThat(row(id)).containsEntry("status", "PENDING")
+			.containsEntry("attempt_count", 0)
+			.containsEntry("last_error", null)
+			.containsEntry("next_attempt_time", Timestamp.valueOf(NOW));
+	}
+
+	private int insert(NotificationStatus status) {
+		return new SimpleJdbcInsert(this.jdbcTemplate).withTableName("notification_schedules")
+			.usingGeneratedKeyColumns("id")
+			.usingColumns("notification_preference", "scheduled_time", "status", "visit_id", "pet_id", "attempt_count",
+					"last_error")
+			.executeAndReturnKey(Map.of("notification_preference", "EMAIL", "scheduled_time", NOW, "status",
+					status.name(), "visit_id", 1, "pet_id", 7, "attempt_count", 3, "last_error", "Connection refused"))
+			.intValue();
+	}
+
+	private Map<String, Object> row(int id) {
+		Map<String, Object> row = new HashMap<>();
+		this.jdbcTemplate.queryForMap("SELECT * FROM notification_schedules WHERE id = ?", id)
+			.forEach((column, value) -> row.put(column.toLowerCase(), value));
+		return row;
+	}
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.model.NotificationPreference;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for {@link NotificationServiceManager}
+ */
+class NotificationServiceManagerTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+	private final RecordingNotificationService emailService = new RecordingNotificationService(
+			NotificationChannel.EMAIL, NotificationPreference.EMAIL);
+
+	private final RecordingNotificationService smsService = new RecordingNotificationService(NotificationChannel.SMS,
+			NotificationPreference.SMS);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final NotificationCircuitBreakers circuitBreakers = new NotificationCircuitBreakers(this.registry, 4, 2, 50,
+			100, Duration.ofSeconds(10), Duration.ofMinutes(1), 1);
+
+	private NotificationServiceManager manager;
+
+	private Owner owner;
+
+	private int nextId = 1;
+
+	@BeforeEach
+	void setup() {
+		this.manager = new NotificationServiceManager(List.of(this.emailService, this.smsService),
+				new NotificationRetryPolicy(3, Duration.ofMinutes(1), 2.0, Duration.ofHours(1), 0.2),
+				new NotificationCoalescer(Duration.ofHours(24)), Duration.ofMillis(200),
+				new NotificationMetrics(this.registry), mock(NotificationStatusWriter.class), this.circuitBreakers);
+		this.owner = new Owner();
+		this.owner.setId(1);
+		this.owner.setNotificationPreference(NotificationPreference.EMAIL);
+	}
+
+	@Test
+	void shouldCoalesceNotificationsWithinWindowIntoOneDigest() {
+		List<NotificationSchedule> schedules = List.of(schedule(NOW), schedule(NOW.plusHours(3)),
+				schedule(NOW.plusHours(30)));
+
+		int sent = this.manager.processNotifications(schedules, List.of(this.owner));
+
+		assertThat(sent).isEqualTo(3);
+		assertThat(this.emailService.digests).hasSize(1);
+		assertThat(this.emailService.digests.get(0)).containsExactly(schedules.get(0), schedules.get(1));
+		assertThat(this.emailService.singles).containsExactly(schedules.get(2));
+		assertThat(schedules).allSatisfy(schedule -> {
+			assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.SENT);
+			assertThat(schedule.getAttemptCount()).isEqualTo(1);
+		});
+	}
+
+	@Test
+	void shouldScheduleRetryForEveryNotificationOfFailedDigest() {
+		this.emailService.succeed = false;
+		List<NotificationSchedule> schedules = List.of(schedule(NOW), schedule(NOW.plusHours(1)));
+
+		int sent = this.manager.processNotifications(schedules, List.of(this.owner));
+
+		assertThat(sent).isZero();
+		assertThat(schedules).allSatisfy(schedule -> {
+			assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.FAILED);
+			assertThat(schedule.getNextAttemptTime()).isNotNull();
+		});
+	}
+
+	@Test
+	void shouldRecordStatusPerChannelAndRetryOnlyFailedChannel() {
+		this.smsService.succeed = false;
+		NotificationSchedule schedule = schedule(NOW);
+		schedule.setNotificationPreference(NotificationPreference.BOTH);
+
+		assertThat(this.manager.sendNotification(schedule, this.owner)).isFalse();
+		assertThat(schedule.getChannelStatus(NotificationChannel.EMAIL)).isEqualTo(NotificationStatus.SENT);
+		assertThat(schedule.getChannelStatus(NotificationChannel.SMS)).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getNextAttemptTime()).isNotNull();
+
+		this.smsService.succeed = true;
+		assertThat(this.manager.sendNotification(schedule, this.owner)).isTrue();
+
+		assertThat(this.emailService.singles).hasSize(1);
+		assertThat(this.smsService.singles).hasSize(2);
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.SENT);
+	}
+
+	@Test
+	void shouldFailChannelThatDoesNotAnswerWithinTimeout() {
+		this.smsService.hang = true;
+		NotificationSchedule schedule = schedule(NOW);
+		schedule.setNotificationPreference(NotificationPreference.BOTH);
+
+		long start = System.nanoTime();
+		this.manager.sendNotification(schedule, this.owner);
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+		assertThat(schedule.getChannelStatus(NotificationChannel.EMAIL)).isEqualTo(NotificationStatus.SENT);
+		assertThat(schedule.getChannelStatus(NotificationChannel.SMS)).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getLastError()).contains("timed out");
+	}
+
+	@Test
+	void shouldIgnoreSendCompletingAfterTimeout() {
+		this.smsService.hang = true;
+		NotificationSchedule schedule = sms(schedule(NOW));
+
+		this.manager.sendNotification(schedule, this.owner);
+		LocalDateTime nextAttemptTime = schedule.getNextAttemptTime();
+		this.smsService.pending.forEach(delivery -> delivery.complete(DeliveryResult.success()));
+
+		assertThat(schedule.getChannelStatus(NotificationChannel.SMS)).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getNextAttemptTime()).isEqualTo(nextAttemptTime);
+		assertThat(schedule.getLastError()).contains("timed out");
+		assertThat(notificationCount("SMS", NotificationStatus.SENT)).isZero();
+	}
+
+	@Test
+	void shouldDeferNotificationsWhileCircuitIsOpen() {
+		this.smsService.succeed = false;
+		this.manager.sendNotification(sms(schedule(NOW)), this.owner);
+		this.manager.sendNotification(sms(schedule(NOW)), this.owner);
+		assertThat(
+				new NotificationCircuitBreakerEndpoint(this.circuitBreakers).circuit(NotificationChannel.SMS).state())
+			.isEqualTo("OPEN");
+
+		NotificationSchedule schedule = sms(schedule(NOW));
+		schedule.setNotificationPreference(NotificationPreference.BOTH);
+		assertThat(this.manager.sendNotification(schedule, this.owner)).isFalse();
+
+		assertThat(this.smsService.singles).hasSize(2);
+		assertThat(schedule.getChannelStatus(NotificationChannel.EMAIL)).isEqualTo(NotificationStatus.SENT);
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getAttemptCount()).isEqualTo(1);
+
+		NotificationSchedule deferred = sms(schedule(NOW));
+		LocalDateTime before = LocalDateTime.now();
+		assertThat(this.manager.sendNotification(deferred, this.owner)).isFalse();
+
+		assertThat(this.smsService.singles).hasSize(2);
+		assertThat(deferred.getStatus()).isEqualTo(NotificationStatus.FAILED);
+		assertThat(deferred.getAttemptCount()).isZero();
+		assertThat(deferred.getNextAttemptTime()).isAfter(before.plusSeconds(50));
+		assertThat(deferred.getLastError()).contains("circuit breaker");
+		assertThat(notificationCount("SMS", "DEFERRED")).isEqualTo(2);
+	}
+
+	@Test
+	void shouldNotOpenCircuitForOwnersWithoutAddress() {
+		this.smsService.unreachable = true;
+		for (int i = 0; i < 3; i++) {
+			this.manager.sendNotification(sms(schedule(NOW)), this.owner);
+		}
+		NotificationSchedule schedule = sms(schedule(NOW));
+		this.manager.sendNotification(schedule, this.owner);
+
+		assertThat(this.smsService.singles).hasSize(4);
+		assertThat(
+				new NotificationCircuitBreakerEndpoint(this.circuitBreakers).circuit(NotificationChannel.SMS).state())
+			.isEqualTo("CLOSED");
+		assertThat(schedule.getChannelStatus(NotificationChannel.SMS)).isEqualTo(NotificationStatus.FAILED);
+		assertThat(schedule.getLastError()).contains("no address");
+		assertThat(notificationCount("SMS", "UNDELIVERABLE")).isEqualTo(4);
+		assertThat(notificationCount("SMS", NotificationStatus.FAILED)).isZero();
+	}
+
+	@Test
+	void shouldCountOutcomesPerChannel() {
+		this.smsService.succeed = false;
+		NotificationSchedule first = schedule(NOW);
+		first.setNotificationPreference(NotificationPreference.BOTH);
+		NotificationSchedule second = schedule(NOW.plusHours(1));
+		second.setNotificationPreference(NotificationPreference.BOTH);
+
+		this.manager.processNotifications(List.of(first, second), List.of(this.owner));
+
+		assertThat(notificationCount("EMAIL", NotificationStatus.SENT)).isEqualTo(2);
+		assertThat(notificationCount("SMS", NotificationStatus.FAILED)).isEqualTo(2);
+		assertThat(this.registry.get("petclinic.notifications.delivery")
+			.tag("channel", "SMS")
+			.tag("outcome", "FAILED")
+			.timer()
+			.count()).isEqualTo(1);
+		assertThat(this.registry.get("petclinic.notifications.batch").timer().count()).isEqualTo(1);
+
+		this.owner.setNotificationPreference(NotificationPreference.NONE);
+		this.manager.sendNotification(schedule(NOW), this.owner);
+
+		assertThat(notificationCount("NONE", NotificationStatus.SKIPPED)).isEqualTo(1);
+	}
+
+	@Test
+	void shouldSkipOwnersWhoOptedOut() {
+		this.owner.setNotificationPreference(NotificationPreference.NONE);
+		NotificationSchedule schedule = schedule(NOW);
+		schedule.setNotificationPreference(null);
+
+		assertThat(this.manager.sendNotification(schedule, this.owner)).isFalse();
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.SKIPPED);
+		assertThat(this.emailService.singles).isEmpty();
+	}
+
+	@Test
+	void shouldDeadLetterNotificationsWithoutOwner() {
+		NotificationSchedule schedule = schedule(NOW);
+
+		this.manager.processNotifications(List.of(schedule), List.of());
+
+		assertThat(schedule.getStatus()).isEqualTo(NotificationStatus.DEAD_LETTER);
+		assertThat(schedule.getLastError()).startsWith("Could not find owner");
+	}
+
+	private double notificationCount(String channel, NotificationStatus outcome) {
+		return notificationCount(channel, outcome.name());
+	}
+
+	private double notificationCount(String channel, String outcome) {
+		return this.registry.get("petclinic.notifications")
+			.tag("channel", channel)
+			.tag("outcome", outcome)
+			.counter()
+			.count();
+	}
+
+	private static NotificationSchedule sms(NotificationSchedule schedule) {
+		schedule.setNotificationPreference(NotificationPreference.SMS);
+		return schedule;
+	}
+
+	private NotificationSchedule schedule(LocalDateTime scheduledTime) {
+		Pet pet = new Pet();
+		pet.setId(this.nextId++);
+		pet.setName("Pet " + pet.getId());
+		this.owner.getPets().add(pet);
+		Visit visit = new Visit();
+		visit.setDate(LocalDate.of(2024, 1, 2));
+		NotificationSchedule schedule = new NotificationSchedule();
+		schedule.setPet(pet);
+		schedule.setVisit(visit);
+		schedule.setScheduledTime(scheduledTime);
+		schedule.setNotificationPreference(NotificationPreference.EMAIL);
+		return schedule;
+	}
+
+	/**
+	 * {@link NotificationService} stub that records what it was asked to send.
+	 */
+	private static class RecordingNotificationService implements NotificationService {
+
+		private final NotificationChannel channel;
+
+		private final NotificationPreference preference;
+
+		private final List<NotificationSchedule> singles = new ArrayList<>();
+
+		private final List<List<NotificationSchedule>> digests = new ArrayList<>();
+
+		private boolean succeed = true;
+
+		private boolean hang;
+
+		private boolean unreachable;
+
+		private final List<CompletableFuture<DeliveryResult>> pending = new ArrayList<>();
+
+		RecordingNotificationService(NotificationChannel channel, NotificationPreference preference) {
+			this.channel = channel;
+			this.preference = preference;
+		}
+
+		@Override
+		public DeliveryResult sendNotification(NotificationSchedule notificationSchedule, Owner owner) {
+			this.singles.add(notificationSchedule);
+			return result();
+		}
+
+		@Override
+		public CompletableFuture<DeliveryResult> sendNotificationAsync(NotificationSchedule notificationSchedule,
+				Owner owner) {
+			if (this.hang) {
+				CompletableFuture<DeliveryResult> delivery = new CompletableFuture<>();
+				this.pending.add(delivery);
+				return delivery;
+			}
+			return NotificationService.super.sendNotificationAsync(notificationSchedule, owner);
+		}
+
+		@Override
+		public DeliveryResult sendDigest(List<NotificationSchedule> notificationSchedules, Owner owner) {
+			this.digests.add(notificationSchedules);
+			return result();
+		}
+
+		private DeliveryResult result() {
+			if (this.unreachable) {
+				return DeliveryResult.undeliverable("Owner has no address");
+			}
+			return this.succeed ? DeliveryResult.success() : DeliveryResult.failure("Provider unavailable");
+		}
+
+		@Override
+		public NotificationChannel getChannel() {
+			return this.channel;
+		}
+
+		@Override
+		public boolean canHandle(NotificationSchedule notificationSchedule, Owner owner) {
+			NotificationPreference requested = notificationSchedule.getNotificationPreference();
+			return requested == this.preference || requested == NotificationPreference.BOTH;
+		}
+
+	}
+
+}
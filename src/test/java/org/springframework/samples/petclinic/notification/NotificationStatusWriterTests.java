@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration test for {@link NotificationStatusWriter}. Runs outside a test transaction
+ * because the writer commits in a transaction of its own.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "petclinic.notification.status-writer.batch-size=4")
+@Import(NotificationStatusWriter.class)
+class NotificationStatusWriterTests {
+
+	private static final LocalDateTime RETRY_AT = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+	@Autowired
+	private NotificationStatusWriter writer;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterEach
+	void cleanup() {
+		this.jdbcTemplate.update("DELETE FROM notification_schedules");
+	}
+
+	@Test
+	void shouldWriteBufferedStatesOnFlush() {
+		NotificationSchedule first = sent(insert());
+		NotificationSchedule second = sent(insert());
+		NotificationSchedule failed = schedule(insert());
+		failed.setStatus(NotificationStatus.FAILED);
+		failed.setChannelStatus(NotificationChannel.EMAIL, NotificationStatus.FAILED);
+		failed.setAttemptCount(1);
+		failed.setNextAttemptTime(RETRY_AT);
+		failed.setLastError("Connection refused");
+
+		this.writer.recordAll(List.of(first, second));
+		this.writer.record(failed);
+		// Recording a notification again replaces its buffered state
+		this.writer.record(first);
+		assertThat(row(first)).containsEntry("status", "PENDING");
+
+		assertThat(this.writer.flush()).isEqualTo(3);
+
+		assertThat(row(first)).containsEntry("status", "SENT")
+			.containsEntry("email_status", "SENT")
+			.containsEntry("attempt_count", 1)
+			.containsEntry("next_attempt_time", null);
+		assertThat(row(second)).containsEntry("status", "SENT");
+		assertThat(row(failed)).containsEntry("status", "FAILED")
+			.containsEntry("email_status", "FAILED")
+			.containsEntry("last_error", "Connection refused");
+		assertThat(this.jdbcTemplate.queryForObject("SELECT next_attempt_time FROM notification_schedules WHERE id = ?",
+				LocalDateTime.class, failed.getId()))
+			.isEqualTo(RETRY_AT);
+		assertThat(this.writer.flush()).isZero();
+	}
+
+	@Test
+	void shouldFlushWhenBufferIsFull() {
+		List<NotificationSchedule> batch = List.of(sent(insert()), sent(insert()), sent(insert()), sent(insert()));
+
+		this.writer.recordAll(batch);
+
+		assertThat(batch).allSatisfy(schedule -> assertThat(row(schedule)).containsEntry("status", "SENT"));
+		assertThat(this.writer.flush()).isZero();
+	}
+
+	@Test
+	void shouldWaitForConcurrentFlushToCommit() throws Exception {
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		NotificationStatusWriter writer = new NotificationStatusWriter(new JdbcTemplate(this.dataSource) {
+
+			@Override
+			public int update(PreparedStatementCreator statementCreator) {
+				writing.countDown();
+				await(proceed);
+				return super.update(statementCreator);
+			}
+
+		}, this.transactionManager, 100);
+		NotificationSchedule first = sent(insert());
+		writer.recordAll(List.of(first, sent(insert())));
+
+		CompletableFuture<Integer> scheduled = CompletableFuture.supplyAsync(writer::flush);
+		await(writing);
+		// The caller's flush finds the buffer taken by the scheduled one, in progress
+		CompletableFuture<Object> caller = CompletableFuture.supplyAsync(() -> {
+			writer.flush();
+			return row(first).get("status");
+		});
+		Thread.sleep(500);
+		assertThat(caller).isNotDone();
+		proceed.countDown();
+
+		assertThat(scheduled.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+		assertThat(caller.get(10, TimeUnit.SECONDS)).isEqualTo("SENT");
+	}
+
+	@Test
+	void shouldIgnoreNotificationsThatWereNeverPersisted() {
+		this.writer.record(sent(new NotificationSchedule()));
+
+		assertThat(this.writer.flush()).isZero();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private int insert() {
+		return new SimpleJdbcInsert(this.jdbcTemplate).withTableName("notification_schedules")
+			.usingGeneratedKeyColumns("id")
+			.usingColumns("notification_preference", "scheduled_time", "status", "visit_id", "pet_id")
+			.executeAndReturnKey(Map.of("notification_preference", "EMAIL", "scheduled_time",
+					LocalDateTime.of(2024, 1, 1, 9, 0), "status", "PENDING", "visit_id", 1, "pet_id", 7))
+			.intValue();
+	}
+
+	private static NotificationSchedule schedule(int id) {
+		NotificationSchedule schedule = new NotificationSchedule();
+		schedule.setId(id);
+		return schedule;
+	}
+
+	private static NotificationSchedule sent(int id) {
+		return sent(schedule(id));
+	}
+
+	private static NotificationSchedule sent(NotificationSchedule schedule) {
+		schedule.setStatus(NotificationStatus.SENT);
+		schedule.setChannelStatus(NotificationChannel.EMAIL, NotificationStatus.SENT);
+		schedule.setAttemptCount(1);
+		return schedule;
+	}
+
+	private Map<String, Object> row(NotificationSchedule schedule) {
+		Map<String, Object> row = new HashMap<>();
+		this.jdbcTemplate.queryForMap("SELECT * FROM notification_schedules WHERE id = ?", schedule.getId())
+			.forEach((column, value) -> row.put(column.toLowerCase(), value));
+		return row;
+	}
+
+}
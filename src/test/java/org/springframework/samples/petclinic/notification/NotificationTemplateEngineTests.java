@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+
+/**
+ * Test class for {@link NotificationTemplateEngine}, rendering from the application's own
+ * message bundles.
+ */
+@DisabledInNativeImage
+class NotificationTemplateEngineTests {
+
+	private NotificationTemplateEngine engine;
+
+	private NotificationSchedule schedule;
+
+	private Owner owner;
+
+	@BeforeEach
+	void setup() {
+		ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+		messageSource.setBasename("messages/messages");
+		messageSource.setDefaultEncoding("UTF-8");
+		messageSource.setFallbackToSystemLocale(false);
+		this.engine = new NotificationTemplateEngine(messageSource, "messages/messages");
+
+		Pet pet = new Pet();
+		pet.setName("Leo");
+		Visit visit = new Visit();
+		visit.setDescription("rabies shot");
+		visit.setDate(LocalDate.of(2024, 3, 7));
+		this.schedule = new NotificationSchedule();
+		this.schedule.setPet(pet);
+		this.schedule.setVisit(visit);
+
+		this.owner = new Owner();
+		this.owner.setFirstName("George");
+		this.owner.setLastName("Franklin");
+	}
+
+	@Test
+	void shouldRenderEnglishByDefault() {
+		assertThat(this.engine.render(NotificationTemplate.EMAIL_SUBJECT, this.schedule, this.owner))
+			.isEqualTo("Pet Clinic Reminder: Leo's rabies shot");
+		assertThat(this.engine.render(NotificationTemplate.EMAIL_BODY, this.schedule, this.owner))
+			.startsWith("Dear George Franklin,\n\n")
+			.contains("your pet Leo has a rabies shot scheduled on March 7, 2024.");
+	}
+
+	@Test
+	void shouldRenderOwnersPreferredLanguage() {
+		this.owner.setPreferredLanguage("de");
+		assertThat(this.engine.render(NotificationTemplate.SMS_BODY, this.schedule, this.owner))
+			.startsWith("Erinnerung der Tierklinik: Leo hat am 7. März 2024 einen Termin: rabies shot.");
+	}
+
+	@Test
+	void shouldFallBackToLanguageThenDefault() {
+		this.owner.setPreferredLanguage("es-MX");
+		assertThat(this.engine.render(NotificationTemplate.EMAIL_SUBJECT, this.schedule, this.owner))
+			.isEqualTo("Recordatorio de la Clínica de Mascotas: rabies shot de Leo");
+
+		this.owner.setPreferredLanguage("xx");
+		assertThat(this.engine.render(NotificationTemplate.EMAIL_SUBJECT, this.schedule, this.owner))
+			.isEqualTo("Pet Clinic Reminder: Leo's rabies shot");
+	}
+
+	@Test
+	void shouldRenderDigestWithOneItemPerVisit() {
+		Pet pet = new Pet();
+		pet.setName("Basil");
+		Visit visit = new Visit();
+		visit.setDescription("neutered");
+		visit.setDate(LocalDate.of(2024, 3, 8));
+		NotificationSchedule other = new NotificationSchedule();
+		other.setPet(pet);
+		other.setVisit(visit);
+		List<NotificationSchedule> schedules = List.of(this.schedule, other);
+
+		assertThat(this.engine.render(NotificationTemplate.EMAIL_DIGEST_SUBJECT, schedules, this.owner))
+			.isEqualTo("Pet Clinic Reminder: 2 upcoming visits");
+		assertThat(this.engine.renderDigest(NotificationTemplate.SMS_DIGEST_HEADER,
+				NotificationTemplate.SMS_DIGEST_ITEM, NotificationTemplate.SMS_DIGEST_FOOTER, schedules, this.owner))
+			.isEqualTo("Pet Clinic Reminder: 2 upcoming visits:\nLeo: rabies shot on March 7, 2024"
+					+ "\nBasil: neutered on March 8, 2024\nReply HELP for assistance or STOP to unsubscribe.");
+	}
+
+	@Test
+	void shouldTreatUnknownPlaceholdersAsText() {
+		StringBuilder out = new StringBuilder();
+		CompiledTemplate.compile("{0} isn't {x} {3}").renderTo(out, null, "Leo");
+		assertThat(out).hasToString("Leo isn't {x} {3}");
+	}
+
+}
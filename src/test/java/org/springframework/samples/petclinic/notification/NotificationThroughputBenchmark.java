@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.samples.petclinic.model.NotificationPreference;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Offline throughput benchmark for {@link NotificationServiceManager}. Synthetic
+ * notifications are sent through the real email and SMS services to a
+ * {@link FakeSmtpServer} and a {@link FakeTwilioServer} on the loopback interface, so no
+ * network access or provider account is needed. Reports notifications per second, p50/p99
+ * latency of {@link NotificationServiceManager#sendNotification} and bytes allocated per
+ * notification by the client side.
+ * <p>
+ * Not part of the regular build; run it with
+ * {@code ./mvnw test -Dtest=NotificationThroughputBenchmark} or
+ * {@code ./gradlew notificationBenchmark}. It is tuned with system properties:
+ * <ul>
+ * <li>{@code benchmark.messages} (2000) and {@code benchmark.warmup} (200)
+ * notifications</li>
+ * <li>{@code benchmark.concurrency} (16) concurrent callers</li>
+ * <li>{@code benchmark.preference} (BOTH) channel preference of each notification</li>
+ * <li>{@code benchmark.smtp.latency-ms} (5) and {@code benchmark.sms.latency-ms} (20)
+ * injected provider latency</li>
+ * <li>{@code benchmark.error-rate} (0.01) fraction of messages each provider rejects</li>
+ * <li>{@code benchmark.channel-concurrency} (8) and {@code benchmark.sms.rate-per-second}
+ * (0, unlimited) channel limits</li>
+ * </ul>
+ */
+@Tag("benchmark")
+class NotificationThroughputBenchmark {
+
+	private final int messages = Integer.getInteger("benchmark.messages", 2000);
+
+	private final int warmup = Integer.getInteger("benchmark.warmup", 200);
+
+	private final int concurrency = Integer.getInteger("benchmark.concurrency", 16);
+
+	private final NotificationPreference preference = NotificationPreference
+		.valueOf(System.getProperty("benchmark.preference", "BOTH"));
+
+	private final Duration smtpLatency = Duration.ofMillis(Long.getLong("benchmark.smtp.latency-ms", 5));
+
+	private final Duration smsLatency = Duration.ofMillis(Long.getLong("benchmark.sms.latency-ms", 20));
+
+	private final double errorRate = Double.parseDouble(System.getProperty("benchmark.error-rate", "0.01"));
+
+	private final int channelConcurrency = Integer.getInteger("benchmark.channel-concurrency", 8);
+
+	private final double smsRate = Double.parseDouble(System.getProperty("benchmark.sms.rate-per-second", "0"));
+
+	private int nextId = 1;
+
+	@Test
+	void throughput() throws Exception {
+		try (FakeSmtpServer smtp = new FakeSmtpServer(this.smtpLatency, this.errorRate);
+				FakeTwilioServer twilio = new FakeTwilioServer(this.smsLatency, this.errorRate)) {
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+			NotificationMetrics metrics = new NotificationMetrics(registry);
+			// Default thresholds; the injected error rate is well below them
+			NotificationCircuitBreakers circuitBreakers = new NotificationCircuitBreakers(registry, 20, 10, 50, 80,
+					Duration.ofSeconds(10), Duration.ofMinutes(1), 3);
+			NotificationTemplateEngine templateEngine = templateEngine();
+			EmailNotificationService email = new EmailNotificationService(templateEngine, this.channelConcurrency,
+					metrics);
+			ReflectionTestUtils.setField(email, "smtpHost", "127.0.0.1");
+			ReflectionTestUtils.setField(email, "smtpPort", String.valueOf(smtp.getPort()));
+			ReflectionTestUtils.setField(email, "username", "benchmark");
+			ReflectionTestUtils.setField(email, "password", "benchmark");
+			ReflectionTestUtils.setField(email, "fromEmail", "noreply@petclinic.org");
+			SmsDispatcher dispatcher = new SmsDispatcher(new TwilioSmsGateway(twilio.createClient(), "+15551234567"),
+					this.channelConcurrency, this.smsRate, 1, metrics);
+			NotificationServiceManager manager = new NotificationServiceManager(
+					List.of(email, new SmsNotificationService(dispatcher, templateEngine)),
+					new NotificationRetryPolicy(5, Duration.ofMinutes(1), 2.0, Duration.ofHours(1), 0.2),
+					new NotificationCoalescer(Duration.ZERO), Duration.ofSeconds(30), metrics,
+					mock(NotificationStatusWriter.class, withSettings().stubOnly()), circuitBreakers);
+			ExecutorService callers = Executors.newFixedThreadPool(this.concurrency,
+					new CustomizableThreadFactory("benchmark-caller-"));
+			try {
+				run(manager, callers, this.warmup);
+				int smtpBefore = smtp.getAccepted() + smtp.getRejected();
+				int smsBefore = twilio.getAccepted() + twilio.getRejected();
+
+				long allocatedBefore = clientAllocatedBytes();
+				long start = System.nanoTime();
+				Result result = run(manager, callers, this.messages);
+				long elapsed = System.nanoTime() - start;
+				long allocated = clientAllocatedBytes() - allocatedBefore;
+
+				report(result, elapsed, allocated, smtp, twilio);
+				int smtpCalls = smtp.getAccepted() + smtp.getRejected() - smtpBefore;
+				int smsCalls = twilio.getAccepted() + twilio.getRejected() - smsBefore;
+				assertThat(result.sent + result.failed).isEqualTo(this.messages);
+				assertThat(smtpCalls + smsCalls).isGreaterThanOrEqualTo(this.messages);
+			}
+			finally {
+				callers.shutdownNow();
+				email.destroy();
+				dispatcher.destroy();
+			}
+		}
+	}
+
+	private Result run(NotificationServiceManager manager, ExecutorService callers, int count) {
+		List<NotificationSchedule> schedules = new ArrayList<>(count);
+		List<Owner> owners = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Owner owner = owner();
+			owners.add(owner);
+			schedules.add(schedule(owner));
+		}
+
+		long[] latencies = new long[count];
+		List<CompletableFuture<Boolean>> calls = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int index = i;
+			calls.add(CompletableFuture.supplyAsync(() -> {
+				long start = System.nanoTime();
+				boolean sent = manager.sendNotification(schedules.get(index), owners.get(index));
+				latencies[index] = System.nanoTime() - start;
+				return sent;
+			}, callers));
+		}
+		CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+
+		Result result = new Result(latencies);
+		for (NotificationSchedule schedule : schedules) {
+			if (schedule.getStatus() == NotificationStatus.SENT) {
+				result.sent++;
+			}
+			else {
+				result.failed++;
+			}
+		}
+		return result;
+	}
+
+	private void report(Result result, long elapsedNanos, long allocatedBytes, FakeSmtpServer smtp,
+			FakeTwilioServer twilio) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.println();
+		System.out.println("Notification throughput benchmark");
+		System.out.printf("  notifications  %d (preference %s, %d callers, %d threads per channel)%n", this.messages,
+				this.preference, this.concurrency, this.channelConcurrency);
+		System.out.printf("  providers      smtp %d ms, sms %d ms, error rate %.1f%%%n", this.smtpLatency.toMillis(),
+				this.smsLatency.toMillis(), this.errorRate * 100);
+		System.out.printf("  throughput     %.1f msgs/sec%n", this.messages / seconds);
+		System.out.printf("  latency        p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", result.percentile(0.50) / 1e6,
+				result.percentile(0.99) / 1e6, result.percentile(1.0) / 1e6);
+		System.out.printf("  allocation     %s per notification%n",
+				(allocatedBytes < 0) ? "n/a" : String.format("%.1f KB", allocatedBytes / 1024.0 / this.messages));
+		System.out.printf("  outcome        %d sent, %d failed (smtp %d/%d, sms %d/%d accepted in total)%n",
+				result.sent, result.failed, smtp.getAccepted(), smtp.getAccepted() + smtp.getRejected(),
+				twilio.getAccepted(), twilio.getAccepted() + twilio.getRejected());
+		System.out.println();
+	}
+
+	/**
+	 * Bytes allocated so far by every live thread except the fake servers', or -1 if the
+	 * JVM does not track per-thread allocation.
+	 */
+	private static long clientAllocatedBytes() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+				|| !threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			String name = thread.getName();
+			if (!name.startsWith("fake-smtp-") && !name.startsWith("fake-twilio-")) {
+				total += Math.max(threads.getThreadAllocatedBytes(thread.getId()), 0);
+			}
+		}
+		return total;
+	}
+
+	private static NotificationTemplateEngine templateEngine() {
+		ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+		messageSource.setBasename("messages/messages");
+		messageSource.setDefaultEncoding("UTF-8");
+		messageSource.setFallbackToSystemLocale(false);
+		return new NotificationTemplateEngine(messageSource, "messages/messages");
+	}
+
+	private Owner owner() {
+		int id = this.nextId++;
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("Owner");
+		owner.setLastName(String.valueOf(id));
+		owner.setEmail("owner" + id + "@example.com");
+		owner.setTelephone(String.format("555%07d", id));
+		owner.setNotificationPreference(this.preference);
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName("Pet " + id);
+		owner.getPets().add(pet);
+		return owner;
+	}
+
+	private NotificationSchedule schedule(Owner owner) {
+		Visit visit = new Visit();
+		visit.setDate(LocalDate.of(2024, 1, 2));
+		visit.setDescription("checkup");
+		NotificationSchedule schedule = new NotificationSchedule();
+		schedule.setPet(owner.getPets().get(0));
+		schedule.setVisit(visit);
+		schedule.setScheduledTime(LocalDateTime.of(2024, 1, 1, 9, 0));
+		schedule.setNotificationPreference(this.preference);
+		schedule.setStatus(NotificationStatus.PENDING);
+		return schedule;
+	}
+
+	private static final class Result {
+
+		private final long[] latencies;
+
+		private int sent;
+
+		private int failed;
+
+		private Result(long[] latencies) {
+			this.latencies = latencies.clone();
+			Arrays.sort(this.latencies);
+		}
+
+		private long percentile(double percentile) {
+			int index = (int) Math.ceil(percentile * this.latencies.length) - 1;
+			return this.latencies[Math.max(index, 0)];
+		}
+
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledInNativeImage;
+
+import com.twilio.exception.ApiException;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test class for {@link SmsDispatcher}, using a local stub in place of Twilio so that
+ * concurrency and throughput can be measured offline.
+ */
+@DisabledInNativeImage
+class SmsDispatcherTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final NotificationMetrics metrics = new NotificationMetrics(this.registry);
+
+	private SmsDispatcher dispatcher;
+
+	@AfterEach
+	void shutdown() {
+		if (this.dispatcher != null) {
+			this.dispatcher.destroy();
+		}
+	}
+
+	@Test
+	void shouldLimitConcurrentSends() {
+		StubSmsGateway gateway = new StubSmsGateway(20);
+		this.dispatcher = new SmsDispatcher(gateway, 3, 0, 1, this.metrics);
+
+		dispatchAndWait(12);
+
+		assertThat(gateway.sent).hasValue(12);
+		assertThat(gateway.maxInFlight.get()).isLessThanOrEqualTo(3).isGreaterThan(1);
+		assertThat(providerTimer("success").count()).isEqualTo(12);
+	}
+
+	@Test
+	void shouldEnforceRateLimit() {
+		StubSmsGateway gateway = new StubSmsGateway(0);
+		this.dispatcher = new SmsDispatcher(gateway, 8, 50, 1, this.metrics);
+
+		long start = System.nanoTime();
+		dispatchAndWait(11);
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+		// the first token is available immediately, the remaining ten refill at 50/s
+		assertThat(elapsedSeconds).isGreaterThanOrEqualTo(0.19);
+		assertThat(gateway.sent).hasValue(11);
+	}
+
+	@Test
+	void shouldCompleteExceptionallyOnProviderError() {
+		this.dispatcher = new SmsDispatcher((to, body) -> {
+			throw new ApiException("Provider unavailable");
+		}, 1, 0, 1, this.metrics);
+
+		CompletableFuture<String> result = this.dispatcher.dispatch("+15550000000", "Hello");
+
+		assertThat(result).failsWithin(Duration.ofSeconds(5))
+			.withThrowableOfType(ExecutionException.class)
+			.withCauseInstanceOf(ApiException.class);
+		assertThat(providerTimer("error").count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldHoldMessagesWhileStopped() throws InterruptedException {
+		StubSmsGateway gateway = new StubSmsGateway(0);
+		this.dispatcher = new SmsDispatcher(gateway, 2, 0, 1, this.metrics);
+		CountDownLatch stopped = new CountDownLatch(1);
+
+		this.dispatcher.stop(stopped::countDown);
+		assertThat(stopped.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.dispatcher.isRunning()).isFalse();
+		CompletableFuture<String> result = this.dispatcher.dispatch("+15550000000", "Hello");
+		Thread.sleep(100);
+		assertThat(result).isNotDone();
+
+		this.dispatcher.start();
+
+		assertThat(result).succeedsWithin(Duration.ofSeconds(5)).isEqualTo("queued");
+		assertThat(this.dispatcher.isRunning()).isTrue();
+	}
+
+	private Timer providerTimer(String outcome) {
+		return this.registry.get("petclinic.notifications.provider")
+			.tag("channel", "SMS")
+			.tag("outcome", outcome)
+			.timer();
+	}
+
+	private void dispatchAndWait(int count) {
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			futures.add(this.dispatcher.dispatch("+1555000000" + i, "Reminder " + i));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+	}
+
+	/**
+	 * {@link SmsGateway} that simulates provider latency and records what it was asked to
+	 * send.
+	 */
+	private static class StubSmsGateway implements SmsGateway {
+
+		private final long latencyMillis;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		private final AtomicInteger sent = new AtomicInteger();
+
+		StubSmsGateway(long latencyMillis) {
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public String send(String to, String body) {
+			int current = this.inFlight.incrementAndGet();
+			this.maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(this.latencyMillis);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(ex);
+			}
+			finally {
+				this.inFlight.decrementAndGet();
+			}
+			this.sent.incrementAndGet();
+			return "queued";
+		}
+
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.notification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link TimingWheel}
+ */
+class TimingWheelTests {
+
+	private static final long START = 1_000_000;
+
+	private final TimingWheel<String> wheel = new TimingWheel<>(10, 8, START);
+
+	@Test
+	void shouldFireEntriesAtTheirDeadline() {
+		this.wheel.add("b", START + 45);
+		this.wheel.add("a", START + 12);
+
+		assertThat(poll(START + 11)).isEmpty();
+		assertThat(poll(START + 20)).containsExactly("a");
+		assertThat(poll(START + 44)).isEmpty();
+		assertThat(poll(START + 50)).containsExactly("b");
+		assertThat(this.wheel.size()).isZero();
+		assertThat(this.wheel.nextExpiration()).isEqualTo(Long.MAX_VALUE);
+	}
+
+	@Test
+	void shouldCascadeEntriesBeyondTheFinestLevel() {
+		// 10ms x 8 buckets covers 80ms, 640ms and 5120ms in three levels
+		this.wheel.add("far", START + 3_000);
+		this.wheel.add("near", START + 500);
+
+		assertThat(poll(START + 499)).isEmpty();
+		assertThat(poll(START + 510)).containsExactly("near");
+		assertThat(poll(START + 2_999)).isEmpty();
+		assertThat(poll(START + 3_010)).containsExactly("far");
+	}
+
+	@Test
+	void shouldNeverFireEarlyAndAtMostOneTickLate() {
+		Random random = new Random(42);
+		List<Long> deadlines = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			long deadline = START + random.nextInt(20_000);
+			deadlines.add(deadline);
+			this.wheel.add(String.valueOf(i), deadline);
+		}
+
+		for (long now = START; now <= START + 30_010; now += 10) {
+			// Keep adding while the clock runs, as a refresh would
+			if (now % 100 == 0 && now < START + 10_000) {
+				long deadline = now + random.nextInt(20_000);
+				deadlines.add(deadline);
+				this.wheel.add(String.valueOf(deadlines.size() - 1), deadline);
+			}
+			long time = now;
+			this.wheel.poll(now, entry -> {
+				long deadline = deadlines.get(Integer.parseInt(entry));
+				assertThat(time).isBetween(deadline, deadline + 10);
+			});
+		}
+		assertThat(this.wheel.size()).isZero();
+	}
+
+	@Test
+	void shouldRejectEntriesBehindTheClock() {
+		this.wheel.add("a", START + 100);
+		poll(START + 110);
+
+		assertThat(this.wheel.add("late", START + 50)).isFalse();
+		assertThat(this.wheel.add("soon", START + 115)).isTrue();
+		assertThat(poll(START + 120)).containsExactly("soon");
+	}
+
+	private List<String> poll(long now) {
+		List<String> expired = new ArrayList<>();
+		this.wheel.poll(now, expired::add);
+		return expired;
+	}
+
+}
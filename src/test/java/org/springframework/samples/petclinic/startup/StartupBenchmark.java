@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.startup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Startup benchmark. Starts the extracted application written by the {@code cds} build
+ * profile alternately with and without its class data sharing archive, and the executable
+ * jar alternately with the native executable, and reports the median time until
+ * {@code /readyz} answers and the resident memory at that point.
+ * <p>
+ * Not part of the regular build; run it with
+ * {@code ./mvnw -Pcds package -DskipTests && ./mvnw test -Dtest=StartupBenchmark} or
+ * {@code ./gradlew startupBenchmark}. The native comparison is skipped unless the
+ * executable was built first, with {@code ./mvnw -Pnative native:compile} or
+ * {@code ./gradlew nativeCompile}. It is tuned with system properties:
+ * <ul>
+ * <li>{@code startup.application} ({@code target/cds}) directory of the extracted
+ * application and its archive</li>
+ * <li>{@code startup.jar} (the executable jar in {@code target}) application on the
+ * JVM</li>
+ * <li>{@code startup.native} ({@code target/spring-petclinic}) native executable</li>
+ * <li>{@code startup.runs} (5) measured starts of each variant, after one that is not
+ * measured</li>
+ * </ul>
+ */
+@Tag("startup")
+class StartupBenchmark {
+
+	private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+	private final Path application = Path.of(System.getProperty("startup.application", "target/cds"));
+
+	private final Path jar = Path.of(System.getProperty("startup.jar", executableJar("target")));
+
+	private final Path nativeExecutable = Path.of(System.getProperty("startup.native", "target/spring-petclinic"));
+
+	private final int runs = Integer.getInteger("startup.runs", 5);
+
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+	@Test
+	void compareStartupWithAndWithoutArchive() throws Exception {
+		assertThat(this.application.resolve("application.jsa")).as("archive, build it first with ./mvnw -Pcds package")
+			.exists();
+		List<Start> withoutArchive = new ArrayList<>();
+		List<Start> withArchive = new ArrayList<>();
+		for (int run = 0; run <= this.runs; run++) {
+			Start without = start(this.application, java("-jar", "spring-petclinic.jar"));
+			Start with = start(this.application,
+					java("-XX:SharedArchiveFile=application.jsa", "-Xshare:on", "-jar", "spring-petclinic.jar"));
+			if (run > 0) {
+				withoutArchive.add(without);
+				withArchive.add(with);
+			}
+		}
+		System.out.printf("%n%-16s %14s %10s%n", "", "ready (ms)", "RSS (MB)");
+		report("without archive", withoutArchive);
+		report("with archive", withArchive);
+	}
+
+	@Test
+	void compareJvmAndNativeStartup() throws Exception {
+		assumeTrue(Files.isExecutable(this.nativeExecutable),
+				"native executable, build it first with ./mvnw -Pnative native:compile");
+		List<Start> jvm = new ArrayList<>();
+		List<Start> nativeImage = new ArrayList<>();
+		Path directory = Path.of("").toAbsolutePath();
+		for (int run = 0; run <= this.runs; run++) {
+			Start onJvm = start(directory, java("-jar", this.jar.toString()));
+			Start asNative = start(directory, List.of(this.nativeExecutable.toString()));
+			if (run > 0) {
+				jvm.add(onJvm);
+				nativeImage.add(asNative);
+			}
+		}
+		System.out.printf("%n%-16s %14s %10s%n", "", "ready (ms)", "RSS (MB)");
+		report("JVM", jvm);
+		report("native", nativeImage);
+	}
+
+	private static List<String> java(String... arguments) {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(List.of(arguments));
+		return command;
+	}
+
+	private Start start(Path directory, List<String> application) throws IOException, InterruptedException {
+		int port = freePort();
+		List<String> command = new ArrayList<>(application);
+		// Probes are only enabled by default on Kubernetes
+		command.addAll(List.of("--server.port=" + port, "--management.endpoint.health.probes.enabled=true",
+				"--management.endpoint.health.probes.add-additional-paths=true"));
+		long started = System.nanoTime();
+		Process process = new ProcessBuilder(command).directory(directory.toFile())
+			.redirectErrorStream(true)
+			.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+			.start();
+		try {
+			HttpRequest readiness = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/readyz")).build();
+			while (!ready(readiness)) {
+				assertThat(process.isAlive()).as("application exited: %s", application).isTrue();
+				assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(TIMEOUT);
+				Thread.sleep(5);
+			}
+			return new Start(Duration.ofNanos(System.nanoTime() - started), residentKilobytes(process.pid()));
+		}
+		finally {
+			process.destroy();
+			process.waitFor();
+		}
+	}
+
+	private boolean ready(HttpRequest readiness) throws IOException, InterruptedException {
+		try {
+			return this.client.send(readiness, BodyHandlers.discarding()).statusCode() == 200;
+		}
+		catch (ConnectException ex) {
+			return false;
+		}
+	}
+
+	private static long residentKilobytes(long pid) throws IOException, InterruptedException {
+		Path status = Path.of("/proc", Long.toString(pid), "status");
+		if (Files.exists(status)) {
+			for (String line : Files.readAllLines(status)) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("\\D", ""));
+				}
+			}
+		}
+		Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid)).start();
+		String rss = new String(ps.getInputStream().readAllBytes()).trim();
+		ps.waitFor();
+		return Long.parseLong(rss);
+	}
+
+	private static String executableJar(String directory) {
+		try (Stream<Path> files = Files.list(Path.of(directory))) {
+			return files.map(Path::toString)
+				.filter(name -> name.endsWith(".jar") && !name.endsWith("-plain.jar"))
+				.findFirst()
+				.orElse(directory + "/spring-petclinic.jar");
+		}
+		catch (IOException ex) {
+			return directory + "/spring-petclinic.jar";
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static void report(String name, List<Start> starts) {
+		List<Long> ready = new ArrayList<>(starts.stream().map(start -> start.ready().toMillis()).toList());
+		List<Long> rss = new ArrayList<>(starts.stream().map(Start::residentKilobytes).toList());
+		System.out.printf("%-16s %14d %10d%n", name, median(ready), median(rss) / 1024);
+	}
+
+	private static long median(List<Long> values) {
+		Collections.sort(values);
+		return values.get(values.size() / 2);
+	}
+
+	private record Start(Duration ready, long residentKilobytes) {
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.system.CacheEntriesEndpoint.CacheDescriptor;
+import org.springframework.samples.petclinic.system.CacheEntriesEndpoint.EntryDescriptor;
+import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Integration test for {@link CacheEntriesEndpoint} and the cache metrics.
+ */
+@SpringBootTest(classes = PetClinicApplication.class)
+@AutoConfigureMockMvc
+class CacheEntriesEndpointIntegrationTests {
+
+	@Autowired
+	private CacheEntriesEndpoint endpoint;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void shouldReportAndInvalidateApplicationCache() {
+		this.endpoint.invalidate("vets", null);
+
+		this.vets.findAll();
+		this.vets.findAll();
+
+		assertThat(this.endpoint.caches()).containsKeys("vets", "petTypes", "fragments");
+		CacheDescriptor vets = this.endpoint.cache("vets");
+		assertThat(vets.entries()).hasSize(1);
+		assertThat(vets.weightedSize()).isPositive();
+		assertThat(vets.hits()).isPositive();
+		assertThat(vets.loads()).isPositive();
+		assertThat(this.registry.get("cache.gets").tags("cache", "vets", "result", "hit").functionCounter().count())
+			.isPositive();
+
+		this.endpoint.invalidate("vets", null);
+
+		assertThat(this.endpoint.cache("vets").size()).isZero();
+		assertThat(this.endpoint.cache("vets").weightedSize()).isZero();
+	}
+
+	@Test
+	void shouldInvalidateOneFragment() throws Exception {
+		this.mockMvc.perform(get("/owners/1")).andExpect(status().isOk());
+		this.mockMvc.perform(get("/owners/2")).andExpect(status().isOk());
+
+		CacheDescriptor fragments = this.endpoint.cache("fragments");
+		assertThat(fragments.weightedSize()).isPositive();
+		assertThat(this.registry.get("cache.weighted.size").tags("cache", "fragments").gauge().value()).isPositive();
+		String key = fragments.entries().get(0).key();
+
+		this.endpoint.invalidate("fragments", key);
+
+		assertThat(this.endpoint.cache("fragments").entries()).extracting(EntryDescriptor::key)
+			.isNotEmpty()
+			.doesNotContain(key);
+	}
+
+	@Test
+	void shouldNotReportUnknownCache() {
+		assertThat(this.endpoint.cache("owners")).isNull();
+	}
+
+}
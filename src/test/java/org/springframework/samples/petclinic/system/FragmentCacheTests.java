@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.util.unit.DataSize;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tests for {@link FragmentCache}.
+ */
+class FragmentCacheTests {
+
+	private static final String TEMPLATE = "<p>before</p>"
+			+ "<div petclinic:cache=\"owners\" petclinic:cache-key=\"${id}\"><b th:text=\"${name}\">name</b></div>"
+			+ "<p th:text=\"${name}\">after</p>";
+
+	private final MockServletContext servletContext = new MockServletContext();
+
+	private FragmentCache fragmentCache;
+
+	private SpringTemplateEngine templateEngine;
+
+	@BeforeEach
+	void setup() {
+		setup(true);
+	}
+
+	@Test
+	void shouldRenderMarkedElementOnlyOnce() {
+		assertThat(render(1, "George", Locale.ENGLISH)).isEqualTo("<p>before</p><div><b>George</b></div><p>George</p>");
+		assertThat(render(1, "Betty", Locale.ENGLISH)).isEqualTo("<p>before</p><div><b>George</b></div><p>Betty</p>");
+	}
+
+	@Test
+	void shouldKeyByIdAndLocale() {
+		render(1, "George", Locale.ENGLISH);
+
+		assertThat(render(2, "Betty", Locale.ENGLISH)).contains("<b>Betty</b>");
+		assertThat(render(1, "Jorge", Locale.GERMAN)).contains("<b>Jorge</b>");
+	}
+
+	@Test
+	void shouldKeepOutputEscaped() {
+		assertThat(render(1, "<script>", Locale.ENGLISH)).contains("<b>&lt;script&gt;</b>");
+		assertThat(render(1, "other", Locale.ENGLISH)).contains("<b>&lt;script&gt;</b>");
+	}
+
+	@Test
+	void shouldRenderAgainAfterInvalidation() {
+		render(1, "George", Locale.ENGLISH);
+		render(2, "Betty", Locale.ENGLISH);
+
+		this.fragmentCache.invalidate("owners", 1);
+
+		assertThat(render(1, "Georgina", Locale.ENGLISH)).contains("<b>Georgina</b>");
+		assertThat(render(2, "Bettina", Locale.ENGLISH)).contains("<b>Betty</b>");
+	}
+
+	@Test
+	void shouldRenderEverythingAgainAfterClear() {
+		render(1, "George", Locale.ENGLISH);
+		render(2, "Betty", Locale.ENGLISH);
+
+		this.fragmentCache.clear();
+
+		assertThat(render(1, "Georgina", Locale.ENGLISH)).contains("<b>Georgina</b>");
+		assertThat(render(2, "Bettina", Locale.ENGLISH)).contains("<b>Bettina</b>");
+	}
+
+	@Test
+	void shouldNotCacheWhatWasRenderedFromDataReadBeforeAnInvalidation() {
+		MockHttpServletRequest request = new MockHttpServletRequest(this.servletContext);
+		this.fragmentCache.preHandle(request, new MockHttpServletResponse(), null);
+		// The request reads its data, then another one writes it before rendering
+		this.fragmentCache.invalidate("owners", 1);
+
+		assertThat(render(request, 1, "stale", Locale.ENGLISH)).contains("<b>stale</b>");
+		assertThat(render(1, "fresh", Locale.ENGLISH)).contains("<b>fresh</b>");
+		assertThat(render(1, "cached", Locale.ENGLISH)).contains("<b>fresh</b>");
+	}
+
+	@Test
+	void shouldNotCacheWhileReadsMayLagBehindAnInvalidation() {
+		this.fragmentCache.setReadLag(Duration.ofMinutes(1));
+		render(1, "George", Locale.ENGLISH);
+		render(2, "Betty", Locale.ENGLISH);
+
+		this.fragmentCache.invalidate("owners", 1);
+
+		assertThat(render(1, "stale", Locale.ENGLISH)).contains("<b>stale</b>");
+		assertThat(render(1, "fresh", Locale.ENGLISH)).contains("<b>fresh</b>");
+		assertThat(render(2, "Bettina", Locale.ENGLISH)).contains("<b>Betty</b>");
+	}
+
+	@Test
+	void shouldRenderAgainOnceExpired() throws InterruptedException {
+		setup(true, Duration.ofMillis(100));
+		render(1, "George", Locale.ENGLISH);
+		assertThat(render(1, "Georgina", Locale.ENGLISH)).contains("<b>George</b>");
+
+		Thread.sleep(200);
+
+		assertThat(render(1, "Georgina", Locale.ENGLISH)).contains("<b>Georgina</b>");
+	}
+
+	@Test
+	void shouldRenderEveryTimeWhenDisabled() {
+		setup(false);
+
+		render(1, "George", Locale.ENGLISH);
+
+		assertThat(render(1, "Betty", Locale.ENGLISH)).isEqualTo("<p>before</p><div><b>Betty</b></div><p>Betty</p>");
+	}
+
+	private void setup(boolean enabled) {
+		setup(enabled, Duration.ofMinutes(10));
+	}
+
+	private void setup(boolean enabled, Duration timeToLive) {
+		this.fragmentCache = new FragmentCache(enabled, DataSize.ofMegabytes(1), timeToLive,
+				new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+		this.templateEngine = new SpringTemplateEngine();
+		this.templateEngine.setTemplateResolver(new StringTemplateResolver());
+		this.templateEngine.addDialect(this.fragmentCache);
+	}
+
+	private String render(int id, String name, Locale locale) {
+		MockHttpServletRequest request = new MockHttpServletRequest(this.servletContext);
+		this.fragmentCache.preHandle(request, new MockHttpServletResponse(), null);
+		return render(request, id, name, locale);
+	}
+
+	private String render(MockHttpServletRequest request, int id, String name, Locale locale) {
+		WebContext context = new WebContext(JakartaServletWebApplication.buildApplication(this.servletContext)
+			.buildExchange(request, new MockHttpServletResponse()), locale, Map.of("id", id, "name", name));
+		return this.templateEngine.process(TEMPLATE, context);
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.system.HibernateStatisticsEndpoint.QueryDescriptor;
+import org.springframework.samples.petclinic.system.HibernateStatisticsEndpoint.StatisticsDescriptor;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Integration test for {@link HibernateStatisticsConfiguration}, with every query taken
+ * as slow.
+ */
+@SpringBootTest(classes = PetClinicApplication.class, properties = "petclinic.hibernate.slow-query-threshold=0ms")
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class HibernateStatisticsIntegrationTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private HibernateStatisticsEndpoint endpoint;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@Test
+	void shouldReportQueriesAndLogSlowOnesOncePerInterval(CapturedOutput output) throws Exception {
+		this.endpoint.reset();
+
+		this.mockMvc.perform(get("/owners").param("lastName", "")).andExpect(status().isOk());
+		this.mockMvc.perform(get("/owners").param("lastName", "Davis")).andExpect(status().isOk());
+
+		StatisticsDescriptor statistics = this.endpoint.statistics();
+		assertThat(statistics.slowQueries()).isGreaterThanOrEqualTo(2);
+		assertThat(statistics.entityLoads()).isPositive();
+		assertThat(this.registry.get("hibernate.query.executions").functionCounter().count()).isPositive();
+		QueryDescriptor search = statistics.queries()
+			.stream()
+			.filter((query) -> query.query().contains("last_name like"))
+			.findFirst()
+			.orElseThrow();
+		assertThat(search.executions()).isEqualTo(2);
+		assertThat(output.getOut().lines())
+			.filteredOn((line) -> line.contains("Slow query") && line.endsWith(search.query()))
+			.hasSize(1);
+	}
+
+	@Test
+	void shouldResetStatistics() throws Exception {
+		this.mockMvc.perform(get("/owners").param("lastName", "")).andExpect(status().isOk());
+		Instant reset = Instant.now();
+
+		this.endpoint.reset();
+
+		// Scheduled notification jobs may run queries in the background
+		StatisticsDescriptor statistics = this.endpoint.statistics();
+		assertThat(statistics.since()).isAfterOrEqualTo(reset.truncatedTo(ChronoUnit.MILLIS));
+		assertThat(statistics.queries()).extracting(QueryDescriptor::query)
+			.noneMatch((query) -> query.contains("last_name like"));
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.springframework.samples.petclinic.system.SqlStatementAssert.assertThatStatements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration test for {@link OwnerShardConfiguration}, with the sample owners spread
+ * across the application's in-memory database and two more.
+ */
+@SpringBootTest(classes = PetClinicApplication.class,
+		properties = "petclinic.datasource.shards=jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1,"
+				+ "jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class OwnerShardingIntegrationTests {
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private OwnerShards shards;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void shouldKeepEachOwnerOnTheShardOfItsId() {
+		List<Integer> all = new ArrayList<>();
+		for (int shard = 0; shard < 3; shard++) {
+			List<Integer> ids = jdbc(shard).queryForList("SELECT id FROM owners", Integer.class);
+			int expected = shard;
+			assertThat(ids).isNotEmpty().allMatch(id -> this.shards.shardOf(id) == expected);
+			all.addAll(ids);
+		}
+		assertThat(all).doesNotHaveDuplicates().contains(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+	}
+
+	@Test
+	void shouldFindOwnerOnItsShard() {
+		for (int id = 1; id <= 10; id++) {
+			assertThat(this.owners.findById(id)).get().extracting(Owner::getId).isEqualTo(id);
+		}
+		Owner owner = this.owners.findById(2).orElseThrow();
+		assertThat(owner.getLastName()).isEqualTo("Davis");
+		assertThat(owner.getPet("Basil")).isNotNull();
+	}
+
+	@Test
+	void shouldMergePagesFromEveryShard() {
+		Page<Owner> page = this.owners.findByLastNameStartingWith("", PageRequest.of(1, 3));
+		assertThat(page.getTotalElements()).isEqualTo(10);
+		assertThat(page.getContent()).extracting(BaseEntity::getId).containsExactly(4, 5, 6);
+
+		Page<Owner> descending = this.owners.findByLastNameStartingWith("",
+				PageRequest.of(0, 4, Sort.by(Sort.Direction.DESC, "id")));
+		assertThat(descending.getContent()).extracting(BaseEntity::getId).containsExactly(10, 9, 8, 7);
+
+		Page<Owner> davis = this.owners.findByLastNameStartingWith("Davis", PageRequest.of(0, 5));
+		assertThat(davis.getTotalElements()).isEqualTo(2);
+		assertThat(davis.getContent()).extracting(Owner::getFirstName).containsExactly("Betty", "Harold");
+	}
+
+	@Test
+	void shouldRejectSortsTheShardsMayOrderDifferently() {
+		assertThatIllegalArgumentException()
+			.isThrownBy(() -> this.owners.findByLastNameStartingWith("", PageRequest.of(0, 4, Sort.by("lastName"))));
+	}
+
+	@Test
+	void shouldRefuseWritesInsideTheCallersTransaction() {
+		Owner owner = this.owners.findById(1).orElseThrow();
+
+		assertThatIllegalStateException().isThrownBy(() -> new TransactionTemplate(this.transactionManager)
+			.executeWithoutResult(status -> this.owners.save(owner)));
+	}
+
+	@Test
+	void shouldSaveNewOwnersOnTheShardsInTurn() {
+		Owner first = this.owners.save(owner("Alice"));
+		Owner second = this.owners.save(owner("Bob"));
+		try {
+			assertThat(this.shards.shardOf(first.getId())).isNotEqualTo(this.shards.shardOf(second.getId()));
+			for (Owner owner : List.of(first, second)) {
+				assertThat(jdbc(this.shards.shardOf(owner.getId()))
+					.queryForObject("SELECT first_name FROM owners WHERE id = ?", String.class, owner.getId()))
+					.isEqualTo(owner.getFirstName());
+				assertThat(this.owners.findById(owner.getId())).isPresent();
+			}
+		}
+		finally {
+			this.owners.delete(first);
+			this.owners.delete(second);
+		}
+	}
+
+	@Test
+	void shouldAddPetsOnTheShardOfTheirOwner() throws Exception {
+		this.mockMvc
+			.perform(post("/owners/{ownerId}/pets/new", 2).param("name", "Pebbles")
+				.param("type", "dog")
+				.param("birthDate", "2020-02-12"))
+			.andExpect(status().is3xxRedirection());
+
+		this.mockMvc.perform(get("/owners/{ownerId}", 2))
+			.andExpect(status().isOk())
+			.andExpect(content().string(Matchers.containsString("Pebbles")));
+		assertThat(jdbc(this.shards.shardOf(2)).queryForObject("SELECT COUNT(*) FROM pets WHERE name = 'Pebbles'",
+				Integer.class))
+			.isOne();
+	}
+
+	@Test
+	void shouldSearchEveryShard() throws Exception {
+		// Each statement once per shard
+		assertThatStatements(() -> this.mockMvc.perform(get("/owners").param("lastName", "Davis"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(
+					Matchers.allOf(Matchers.containsString("Betty Davis"), Matchers.containsString("Harold Davis")))))
+			.hasRepeatsAtMost(3);
+	}
+
+	@Test
+	void shouldRefuseShardsOnMySql() {
+		new ApplicationContextRunner().withUserConfiguration(OwnerShardConfiguration.class)
+			.withBean(DataSource.class,
+					() -> new EmbeddedDatabaseBuilder().generateUniqueName(true)
+						.setType(EmbeddedDatabaseType.H2)
+						.build())
+			.withBean(DataSourceProperties.class)
+			.withPropertyValues("petclinic.datasource.shards=jdbc:mysql://localhost/petclinic")
+			.run(context -> assertThat(context).hasFailed()
+				.getFailure()
+				.rootCause()
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("only supported on H2 and PostgreSQL"));
+	}
+
+	private JdbcTemplate jdbc(int shard) {
+		return new JdbcTemplate(this.shards.get(shard));
+	}
+
+	private static Owner owner(String firstName) {
+		Owner owner = new Owner();
+		owner.setFirstName(firstName);
+		owner.setLastName("Sharded");
+		owner.setAddress("1 Partition Way");
+		owner.setCity("Madison");
+		owner.setTelephone("6085550000");
+		return owner;
+	}
+
+}
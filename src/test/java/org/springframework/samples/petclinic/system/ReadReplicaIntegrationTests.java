@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.notification.NotificationDispatchScheduler;
+import org.springframework.samples.petclinic.notification.NotificationRetryScheduler;
+import org.springframework.samples.petclinic.notification.NotificationServiceManager;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Integration test for {@link ReadReplicaConfiguration}, with two in-memory replicas that
+ * never catch up with the primary, as if replication were far behind.
+ */
+@SpringBootTest(classes = PetClinicApplication.class,
+		properties = "petclinic.datasource.replicas=jdbc:h2:mem:replica-a;DB_CLOSE_DELAY=-1,"
+				+ "jdbc:h2:mem:replica-b;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+class ReadReplicaIntegrationTests {
+
+	private static final List<EmbeddedDatabase> replicas = new ArrayList<>();
+
+	private static final String INSERT_SCHEDULE = "INSERT INTO notification_schedules "
+			+ "(id, notification_preference, scheduled_time, status, visit_id, pet_id, message, attempt_count, "
+			+ "next_attempt_time) VALUES (?, 'EMAIL', DATEADD('MINUTE', -1, CURRENT_TIMESTAMP), ?, 1, 7, "
+			+ "'Reminder', 1, ?)";
+
+	private static final String DELETE_SCHEDULES = "DELETE FROM notification_schedules WHERE id IN (1000, 1001)";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private NotificationDispatchScheduler dispatchScheduler;
+
+	@Autowired
+	private NotificationRetryScheduler retryScheduler;
+
+	@MockitoSpyBean
+	private NotificationServiceManager notificationServiceManager;
+
+	@BeforeAll
+	static void createReplicas() {
+		for (String name : List.of("replica-a", "replica-b")) {
+			EmbeddedDatabase replica = new EmbeddedDatabaseBuilder().setName(name)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScripts("db/h2/schema.sql", "db/h2/data.sql")
+				.build();
+			new JdbcTemplate(replica).update("UPDATE owners SET last_name = 'Replicated' WHERE id = 2");
+			replicas.add(replica);
+		}
+	}
+
+	@AfterAll
+	static void shutdownReplicas() {
+		replicas.forEach(EmbeddedDatabase::shutdown);
+	}
+
+	@Test
+	void shouldReadOwnersFromReplicas() throws Exception {
+		this.mockMvc.perform(get("/owners/2"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(Matchers.containsString("Replicated")));
+	}
+
+	@Test
+	void shouldReadOwnWritesFromPrimary() throws Exception {
+		Cookie primary = this.mockMvc
+			.perform(post("/owners/1/edit").param("firstName", "George")
+				.param("lastName", "Bloggs")
+				.param("address", "110 W. Liberty St.")
+				.param("city", "Madison")
+				.param("telephone", "6085551023"))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(cookie().exists(ReadYourWritesInterceptor.COOKIE_NAME))
+			.andReturn()
+			.getResponse()
+			.getCookie(ReadYourWritesInterceptor.COOKIE_NAME);
+
+		this.mockMvc.perform(get("/owners/1").cookie(primary))
+			.andExpect(status().isOk())
+			.andExpect(content().string(Matchers.containsString("Bloggs")));
+		// Another browser reads from a replica that has not caught up
+		this.mockMvc.perform(get("/owners/1"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(Matchers.allOf(Matchers.containsString("Franklin"),
+					Matchers.not(Matchers.containsString("Bloggs")))));
+	}
+
+	@Test
+	void shouldNotResendNotificationsSentSinceReplicated() {
+		Timestamp due = Timestamp.valueOf(LocalDateTime.now().minusMinutes(1));
+		this.jdbcTemplate.update(INSERT_SCHEDULE, 1000, "SENT", null);
+		this.jdbcTemplate.update(INSERT_SCHEDULE, 1001, "SENT", due);
+		// The replicas have yet to see the reminder sent, and the retry succeed
+		for (EmbeddedDatabase replica : replicas) {
+			new JdbcTemplate(replica).update(INSERT_SCHEDULE, 1000, "PENDING", null);
+			new JdbcTemplate(replica).update(INSERT_SCHEDULE, 1001, "FAILED", due);
+		}
+		try {
+			this.dispatchScheduler.resync();
+			this.dispatchScheduler.dispatchDueNotifications();
+			this.retryScheduler.retryDueNotifications();
+
+			verify(this.notificationServiceManager, never()).processNotifications(any(), any());
+		}
+		finally {
+			this.jdbcTemplate.update(DELETE_SCHEDULES);
+			replicas.forEach(replica -> new JdbcTemplate(replica).update(DELETE_SCHEDULES));
+		}
+	}
+
+}
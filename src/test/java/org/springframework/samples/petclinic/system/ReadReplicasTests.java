@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Tests for {@link ReadReplicas}, on in-memory databases that each know their name and
+ * their lag, in seconds.
+ */
+class ReadReplicasTests {
+
+	private static final String LAG_QUERY = "SELECT lag FROM replica";
+
+	private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+	private DataSource primary;
+
+	private DataSource first;
+
+	private DataSource second;
+
+	@BeforeEach
+	void setup() {
+		this.primary = database("primary");
+		this.first = database("first");
+		this.second = database("second");
+	}
+
+	@AfterEach
+	void shutdown() {
+		ReadReplicas.release();
+		this.databases.forEach(EmbeddedDatabase::shutdown);
+	}
+
+	@Test
+	void shouldReadFromReplicasInTurn() throws SQLException {
+		DataSource reads = new ReadReplicas(List.of(this.first, this.second), Duration.ofSeconds(5), LAG_QUERY)
+			.readOnlyDataSource(this.primary);
+
+		assertThat(List.of(name(reads), name(reads), name(reads), name(reads))).containsExactly("first", "second",
+				"first", "second");
+	}
+
+	@Test
+	void shouldSkipReplicaThatLagsBehind() throws SQLException {
+		ReadReplicas replicas = new ReadReplicas(List.of(this.first, this.second), Duration.ofSeconds(5), LAG_QUERY);
+		DataSource reads = replicas.readOnlyDataSource(this.primary);
+		setLag(this.first, 30);
+
+		replicas.checkReplicas();
+
+		assertThat(List.of(name(reads), name(reads), name(reads))).containsOnly("second");
+
+		setLag(this.first, 0.5);
+		replicas.checkReplicas();
+
+		assertThat(List.of(name(reads), name(reads))).containsExactlyInAnyOrder("first", "second");
+	}
+
+	@Test
+	void shouldReadFromPrimaryWhenNoReplicaIsUsable() throws SQLException {
+		ReadReplicas replicas = new ReadReplicas(List.of(this.first, unavailable()), Duration.ofSeconds(5), LAG_QUERY);
+		DataSource reads = replicas.readOnlyDataSource(this.primary);
+		setLag(this.first, 30);
+		replicas.checkReplicas();
+
+		assertThat(name(reads)).isEqualTo("primary");
+	}
+
+	@Test
+	void shouldSkipReplicaThatFailsToConnect() throws SQLException {
+		DataSource reads = new ReadReplicas(List.of(unavailable(), this.second), Duration.ofSeconds(5), LAG_QUERY)
+			.readOnlyDataSource(this.primary);
+
+		assertThat(List.of(name(reads), name(reads), name(reads))).containsOnly("second");
+	}
+
+	@Test
+	void shouldReadFromPrimaryWhenPinned() throws SQLException {
+		DataSource reads = new ReadReplicas(List.of(this.first, this.second), Duration.ofSeconds(5), LAG_QUERY)
+			.readOnlyDataSource(this.primary);
+
+		ReadReplicas.pinToPrimary();
+
+		assertThat(name(reads)).isEqualTo("primary");
+
+		ReadReplicas.release();
+
+		assertThat(name(reads)).isNotEqualTo("primary");
+	}
+
+	private DataSource database(String name) {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder().generateUniqueName(true)
+			.setType(EmbeddedDatabaseType.H2)
+			.build();
+		this.databases.add(database);
+		JdbcTemplate jdbc = new JdbcTemplate(database);
+		jdbc.execute("CREATE TABLE replica (name VARCHAR(30), lag DOUBLE)");
+		jdbc.update("INSERT INTO replica VALUES (?, 0)", name);
+		return database;
+	}
+
+	private static void setLag(DataSource replica, double seconds) {
+		new JdbcTemplate(replica).update("UPDATE replica SET lag = ?", seconds);
+	}
+
+	private static String name(DataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+				.queryForObject("SELECT name FROM replica", String.class);
+		}
+	}
+
+	private static DataSource unavailable() {
+		return new AbstractDataSource() {
+
+			@Override
+			public Connection getConnection() throws SQLException {
+				throw new SQLException("Connection refused");
+			}
+
+			@Override
+			public Connection getConnection(String username, String password) throws SQLException {
+				return getConnection();
+			}
+
+		};
+	}
+
+}
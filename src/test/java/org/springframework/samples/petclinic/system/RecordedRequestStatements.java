@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.system.StatementCountingFilter.RequestStatements;
+
+/**
+ * Keeps the SQL statements of the last request to each path, for tests that call the
+ * application over HTTP. Import it into the test's context and assert on the result with
+ * {@link SqlStatementAssert}.
+ */
+@TestComponent
+public class RecordedRequestStatements {
+
+	private final Map<String, SqlStatementCounter> requests = new ConcurrentHashMap<>();
+
+	@EventListener
+	void record(RequestStatements request) {
+		this.requests.put(request.method() + " " + request.path(), request.statements());
+	}
+
+	/**
+	 * Returns the statements of the last request with the given method and path, without
+	 * the query string.
+	 */
+	public SqlStatementCounter get(String method, String path) {
+		SqlStatementCounter statements = this.requests.get(method + " " + path);
+		if (statements == null) {
+			throw new IllegalStateException("No " + method + " request to " + path + " recorded");
+		}
+		return statements;
+	}
+
+}
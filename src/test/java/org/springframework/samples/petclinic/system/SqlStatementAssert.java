@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+
+import org.assertj.core.api.AbstractAssert;
+import org.springframework.util.function.ThrowingSupplier;
+
+/**
+ * Assertions on the SQL statements that an action or request ran, to fail tests on N+1
+ * query regressions, e.g. <pre class="code">
+ * SqlStatementAssert.assertThatStatements(() -&gt; mockMvc.perform(get("/owners/1")))
+ * 	.hasCountAtMost(2)
+ * 	.hasNoRepeats();
+ * </pre> Requests served over HTTP run on other threads; their statements are picked up
+ * by {@link RecordedRequestStatements}.
+ */
+public class SqlStatementAssert extends AbstractAssert<SqlStatementAssert, SqlStatementCounter> {
+
+	private SqlStatementAssert(SqlStatementCounter actual) {
+		super(actual, SqlStatementAssert.class);
+	}
+
+	public static SqlStatementAssert assertThatStatements(SqlStatementCounter actual) {
+		return new SqlStatementAssert(actual);
+	}
+
+	/**
+	 * Runs the given action on the current thread and asserts on the statements it ran.
+	 */
+	public static SqlStatementAssert assertThatStatements(ThrowingSupplier<?> action) {
+		SqlStatementCounter counter = SqlStatementCounter.start();
+		try {
+			action.get();
+		}
+		finally {
+			counter.stop();
+		}
+		return new SqlStatementAssert(counter);
+	}
+
+	public SqlStatementAssert hasCountAtMost(int max) {
+		isNotNull();
+		if (this.actual.getCount() > max) {
+			failWithMessage("Expected at most %d statements but ran %s", max, this.actual);
+		}
+		return this;
+	}
+
+	/**
+	 * Asserts that no statement was run more than the given number of times.
+	 */
+	public SqlStatementAssert hasRepeatsAtMost(int times) {
+		isNotNull();
+		for (Map.Entry<String, Integer> fingerprint : this.actual.getFingerprints().entrySet()) {
+			if (fingerprint.getValue() > times) {
+				failWithMessage("Expected no statement to run more than %d times, likely an N+1 query, but ran %s",
+						times, this.actual);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Asserts that every statement was run once.
+	 */
+	public SqlStatementAssert hasNoRepeats() {
+		return hasRepeatsAtMost(1);
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * Integration test checking that no request creates an HTTP session, so that requests can
+ * go to any instance of the application.
+ */
+@SpringBootTest(classes = PetClinicApplication.class, webEnvironment = RANDOM_PORT)
+@Import(StatelessWebIntegrationTests.Config.class)
+class StatelessWebIntegrationTests {
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private SessionCounter sessions;
+
+	@Autowired
+	@Qualifier("requestMappingHandlerMapping")
+	private RequestMappingHandlerMapping handlerMapping;
+
+	@Test
+	void shouldServeEveryPageWithoutSession() throws Exception {
+		List<String> paths = new ArrayList<>();
+		for (RequestMappingInfo mapping : this.handlerMapping.getHandlerMethods().keySet()) {
+			if (mapping.getMethodsCondition().getMethods().contains(RequestMethod.GET)) {
+				mapping.getPatternValues().forEach((pattern) -> paths.add(pattern.replaceAll("\\{[^}]+}", "1")));
+			}
+		}
+		paths.add("/missing");
+		assertThat(paths).contains("/", "/owners/1", "/owners/1/pets/1/edit", "/vets.html", "/oups");
+
+		for (String path : paths) {
+			HttpResponse<String> response = send(HttpRequest.newBuilder(uri(path)));
+			assertThat(response.headers().allValues("Set-Cookie")).as(path)
+				.noneMatch((cookie) -> cookie.startsWith("JSESSIONID"));
+		}
+
+		assertThat(this.sessions.created).hasValue(0);
+	}
+
+	@Test
+	void shouldRememberLanguageWithoutSession() throws Exception {
+		HttpResponse<String> changed = send(HttpRequest.newBuilder(uri("/vets.html?lang=de")));
+		String cookie = cookie(changed, WebConfiguration.LOCALE_COOKIE_NAME);
+
+		HttpResponse<String> next = send(HttpRequest.newBuilder(uri("/owners/find")).header("Cookie", cookie));
+
+		assertThat(next.body()).contains("Besitzer");
+		assertThat(this.sessions.created).hasValue(0);
+	}
+
+	@Test
+	void shouldShowMessageAfterSaveWithoutSession() throws Exception {
+		HttpResponse<String> saved = send(HttpRequest.newBuilder(uri("/owners/1/edit"))
+			.header("Content-Type", "application/x-www-form-urlencoded")
+			.POST(HttpRequest.BodyPublishers.ofString("firstName=George&lastName=Franklin"
+					+ "&address=110+W.+Liberty+St.&city=Madison&telephone=6085551023")));
+		assertThat(saved.statusCode()).isEqualTo(302);
+		String cookie = cookie(saved, CookieFlashMapManager.COOKIE_NAME);
+
+		HttpResponse<String> details = send(HttpRequest.newBuilder(uri("/owners/1")).header("Cookie", cookie));
+
+		assertThat(details.body()).contains("Owner Values Updated");
+		assertThat(cookie(details, CookieFlashMapManager.COOKIE_NAME)).endsWith("=");
+		assertThat(this.sessions.created).hasValue(0);
+	}
+
+	@Test
+	void shouldIgnoreForgedFlashAttributes() throws Exception {
+		String forged = "[{\"path\":\"/owners/1/edit\",\"expires\":" + (System.currentTimeMillis() + 60_000)
+				+ ",\"attributes\":{\"owner\":\"forged\",\"message\":\"Hello\"}}]";
+		String cookie = CookieFlashMapManager.COOKIE_NAME + "="
+				+ Base64.getUrlEncoder().withoutPadding().encodeToString(forged.getBytes(StandardCharsets.UTF_8));
+
+		HttpResponse<String> edit = send(HttpRequest.newBuilder(uri("/owners/1/edit")).header("Cookie", cookie));
+
+		assertThat(edit.statusCode()).isEqualTo(200);
+		assertThat(edit.body()).contains("Franklin").doesNotContain("forged");
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + this.port + path);
+	}
+
+	private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+		return this.client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static String cookie(HttpResponse<?> response, String name) {
+		return response.headers()
+			.allValues("Set-Cookie")
+			.stream()
+			.filter((cookie) -> cookie.startsWith(name + "="))
+			.map((cookie) -> cookie.split(";", 2)[0])
+			.findFirst()
+			.orElseThrow();
+	}
+
+	@TestConfiguration
+	static class Config {
+
+		@Bean
+		SessionCounter sessionCounter() {
+			return new SessionCounter();
+		}
+
+	}
+
+	/**
+	 * Counts the HTTP sessions created by the application.
+	 */
+	static class SessionCounter implements HttpSessionListener {
+
+		private final AtomicInteger created = new AtomicInteger();
+
+		@Override
+		public void sessionCreated(HttpSessionEvent event) {
+			this.created.incrementAndGet();
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Tests for {@link StatementCountingDataSource} and {@link SqlStatementCounter}.
+ */
+class StatementCountingDataSourceTests {
+
+	private EmbeddedDatabase database;
+
+	private JdbcTemplate jdbc;
+
+	@BeforeEach
+	void setup() {
+		this.database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2).build();
+		this.jdbc = new JdbcTemplate(new StatementCountingDataSource(this.database));
+		this.jdbc.execute("CREATE TABLE pets (id INTEGER, name VARCHAR(30))");
+	}
+
+	@AfterEach
+	void shutdown() {
+		this.database.shutdown();
+	}
+
+	@Test
+	void shouldCountStatementsByFingerprint() {
+		SqlStatementCounter counter = SqlStatementCounter.start();
+		try {
+			for (int id = 1; id <= 3; id++) {
+				this.jdbc.update("INSERT INTO pets VALUES (?, ?)", id, "Leo");
+				this.jdbc.queryForList("SELECT name FROM pets WHERE id = " + id, String.class);
+			}
+			new NamedParameterJdbcTemplate(this.jdbc).queryForList("SELECT name FROM pets WHERE id IN (:ids)",
+					Map.of("ids", List.of(1, 2)), String.class);
+			this.jdbc.queryForList("SELECT name FROM pets WHERE name = 'Leo' AND id IN (1, 2, 3)", String.class);
+		}
+		finally {
+			counter.stop();
+		}
+
+		assertThat(counter.getCount()).isEqualTo(8);
+		assertThat(counter.getMaxRepeats()).isEqualTo(3);
+		assertThat(counter.getFingerprints()).containsExactly(Map.entry("INSERT INTO pets VALUES (?, ?)", 3),
+				Map.entry("SELECT name FROM pets WHERE id = ?", 3),
+				Map.entry("SELECT name FROM pets WHERE id IN (...)", 1),
+				Map.entry("SELECT name FROM pets WHERE name = ? AND id IN (...)", 1));
+		assertThat(counter.getTime()).isPositive();
+	}
+
+	@Test
+	void shouldCountTowardsEveryCounterStarted() {
+		SqlStatementCounter outer = SqlStatementCounter.start();
+		SqlStatementCounter inner = SqlStatementCounter.start();
+		this.jdbc.queryForList("SELECT name FROM pets", String.class);
+		inner.stop();
+		this.jdbc.queryForList("SELECT id FROM pets", Integer.class);
+		outer.stop();
+		this.jdbc.queryForList("SELECT id FROM pets", Integer.class);
+
+		assertThat(inner.getCount()).isOne();
+		assertThat(outer.getCount()).isEqualTo(2);
+		assertThat(SqlStatementCounter.current()).isNull();
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.system.SyntheticDataGenerator.Spec;
+import org.springframework.samples.petclinic.system.SyntheticDataGenerator.Summary;
+
+/**
+ * Tests for {@link SyntheticDataGenerator}, each on fresh in-memory databases with the
+ * sample schema and data.
+ */
+class SyntheticDataGeneratorTests {
+
+	private static final LocalDate REFERENCE_DATE = LocalDate.of(2024, 6, 1);
+
+	private final List<EmbeddedDatabase> databases = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		this.databases.forEach(EmbeddedDatabase::shutdown);
+	}
+
+	@Test
+	void shouldGenerateTheSameRowsForTheSameSeed() {
+		JdbcTemplate first = generate(new Spec(300, 10, 7, REFERENCE_DATE));
+		JdbcTemplate second = generate(new Spec(300, 10, 7, REFERENCE_DATE));
+
+		for (String table : List.of("owners", "pets", "visits", "notification_schedules", "vets")) {
+			assertThat(dump(second, table)).as(table).isEqualTo(dump(first, table));
+		}
+		assertThat(second.queryForList("SELECT * FROM vet_specialties ORDER BY vet_id, specialty_id"))
+			.isEqualTo(first.queryForList("SELECT * FROM vet_specialties ORDER BY vet_id, specialty_id"));
+	}
+
+	@Test
+	void shouldGenerateDifferentRowsForAnotherSeed() {
+		JdbcTemplate first = generate(new Spec(50, 0, 7, REFERENCE_DATE));
+		JdbcTemplate second = generate(new Spec(50, 0, 8, REFERENCE_DATE));
+
+		assertThat(dump(second, "owners")).hasSameSizeAs(dump(first, "owners")).isNotEqualTo(dump(first, "owners"));
+	}
+
+	@Test
+	void shouldAddTheRowsItReports() {
+		JdbcTemplate jdbcTemplate = jdbcTemplate();
+		int owners = count(jdbcTemplate, "owners");
+		int pets = count(jdbcTemplate, "pets");
+		int visits = count(jdbcTemplate, "visits");
+		int schedules = count(jdbcTemplate, "notification_schedules");
+		int vets = count(jdbcTemplate, "vets");
+
+		// More than one chunk of owners
+		Summary summary = new SyntheticDataGenerator(this.databases.get(0))
+			.generate(new Spec(2500, 20, 42, REFERENCE_DATE));
+
+		assertThat(count(jdbcTemplate, "owners")).isEqualTo(owners + 2500);
+		assertThat(count(jdbcTemplate, "pets")).isEqualTo(pets + summary.pets());
+		assertThat(count(jdbcTemplate, "visits")).isEqualTo(visits + summary.visits());
+		assertThat(count(jdbcTemplate, "notification_schedules"))
+			.isEqualTo(schedules + summary.notificationSchedules());
+		assertThat(count(jdbcTemplate, "vets")).isEqualTo(vets + 20);
+		assertThat(summary.pets()).isBetween(2500 * 3 / 2, 2500 * 2);
+		assertThat(summary.notificationSchedules()).isPositive();
+	}
+
+	@Test
+	void shouldGenerateConsistentRows() {
+		JdbcTemplate jdbcTemplate = generate(new Spec(500, 10, 42, REFERENCE_DATE));
+
+		assertThat(jdbcTemplate.queryForList("SELECT COUNT(*) FROM pets GROUP BY owner_id", Integer.class))
+			.allSatisfy(pets -> assertThat(pets).isBetween(1, 6));
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM visits v JOIN pets p ON v.pet_id = p.id WHERE v.visit_date < p.birth_date",
+				Integer.class))
+			.isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_schedules s "
+				+ "JOIN pets p ON s.pet_id = p.id JOIN owners o ON p.owner_id = o.id "
+				+ "WHERE o.notification_preference = 'NONE' OR o.notification_preference <> s.notification_preference",
+				Integer.class))
+			.isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM notification_schedules s "
+						+ "JOIN visits v ON s.visit_id = v.id WHERE s.status = 'PENDING' AND v.visit_date <= ?",
+				Integer.class, REFERENCE_DATE))
+			.isZero();
+	}
+
+	@Test
+	void shouldLetTheApplicationInsertAfterTheGeneratedIds() {
+		JdbcTemplate jdbcTemplate = generate(new Spec(100, 5, 42, REFERENCE_DATE));
+		int lastOwnerId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class);
+
+		jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "VALUES ('New', 'Owner', '1 Main St.', 'Madison', '6085550000')");
+
+		assertThat(jdbcTemplate.queryForObject("SELECT id FROM owners WHERE last_name = 'Owner'", Integer.class))
+			.isEqualTo(lastOwnerId + 1);
+	}
+
+	private JdbcTemplate generate(Spec spec) {
+		JdbcTemplate jdbcTemplate = jdbcTemplate();
+		new SyntheticDataGenerator(this.databases.get(this.databases.size() - 1)).generate(spec);
+		return jdbcTemplate;
+	}
+
+	private JdbcTemplate jdbcTemplate() {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder().generateUniqueName(true)
+			.setType(EmbeddedDatabaseType.H2)
+			.addScripts("db/h2/schema.sql", "db/h2/data.sql")
+			.build();
+		this.databases.add(database);
+		return new JdbcTemplate(database);
+	}
+
+	private static List<Map<String, Object>> dump(JdbcTemplate jdbcTemplate, String table) {
+		return jdbcTemplate.queryForList("SELECT * FROM " + table + " ORDER BY id");
+	}
+
+	private static int count(JdbcTemplate jdbcTemplate, String table) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+	}
+
+}
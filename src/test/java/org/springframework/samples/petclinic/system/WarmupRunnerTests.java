@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Integration test for {@link WarmupRunner}.
+ */
+@SpringBootTest(classes = PetClinicApplication.class, webEnvironment = RANDOM_PORT,
+		properties = { "petclinic.warmup.enabled=true", "petclinic.warmup.iterations=2" })
+@Import(WarmupRunnerTests.Config.class)
+class WarmupRunnerTests {
+
+	@Autowired
+	private ReadinessRecorder recorder;
+
+	@Autowired
+	private ApplicationAvailability availability;
+
+	@Test
+	void shouldServeWarmupWhileRefusingTraffic() {
+		assertThat(this.recorder.requests).extracting(Map.Entry::getKey).contains("/owners/1", "/vets.html");
+		assertThat(this.recorder.statuses).contains(200).doesNotContain(500);
+		assertThat(this.recorder.requests).extracting(Map.Entry::getValue)
+			.containsOnly(ReadinessState.REFUSING_TRAFFIC);
+		assertThat(this.availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+	}
+
+	@TestConfiguration
+	static class Config {
+
+		@Bean
+		ReadinessRecorder readinessRecorder(ApplicationAvailability availability) {
+			return new ReadinessRecorder(availability);
+		}
+
+	}
+
+	/**
+	 * Records the readiness state of the application when each request was received, and
+	 * the status of the response.
+	 */
+	static class ReadinessRecorder extends OncePerRequestFilter {
+
+		private final ApplicationAvailability availability;
+
+		private final List<Map.Entry<String, ReadinessState>> requests = new CopyOnWriteArrayList<>();
+
+		private final List<Integer> statuses = new CopyOnWriteArrayList<>();
+
+		ReadinessRecorder(ApplicationAvailability availability) {
+			this.availability = availability;
+		}
+
+		@Override
+		protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+				throws ServletException, IOException {
+			this.requests.add(Map.entry(request.getRequestURI(), this.availability.getReadinessState()));
+			chain.doFilter(request, response);
+			this.statuses.add(response.getStatus());
+		}
+
+	}
+
+}